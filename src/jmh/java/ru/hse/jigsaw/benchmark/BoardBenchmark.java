@@ -0,0 +1,141 @@
+package ru.hse.jigsaw.benchmark;
+
+import javafx.scene.layout.ColumnConstraints;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.RowConstraints;
+import org.openjdk.jmh.annotations.*;
+import ru.hse.jigsaw.model.board.Board;
+import ru.hse.jigsaw.model.board.PlacementIndex;
+import ru.hse.jigsaw.model.board.ShapeMask;
+import ru.hse.jigsaw.model.shape.DragSession;
+import ru.hse.jigsaw.model.shape.Shape;
+import ru.hse.jigsaw.model.shape.ShapeCatalog;
+import ru.hse.jigsaw.model.shape.ShapeSequence;
+import ru.hse.jigsaw.model.shape.Tile;
+import ru.hse.jigsaw.utils.LayoutDesigner;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции над заполненной игровой зоной: проверка размещения фигуры при перетаскивании
+ * и выделение её силуэта. Треть ячеек зоны занята блоками уже размещённых фигур — как в представлении,
+ * так и в модели зоны.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+    private static final int SHAPES_COUNT = 64;
+
+    @Param({"9", "16", "32", "64"})
+    public int boardSize;
+
+    private GridPane grid;
+    private Board board;
+    private Tile[] emptyTiles;
+    private final String[] encodedShapes = new String[SHAPES_COUNT];
+    private final ShapeMask[] shapeMasks = new ShapeMask[SHAPES_COUNT];
+    private Shape highlightedShape;
+    private Shape indexedShape;
+    private DragSession hoverSession;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        grid = new GridPane();
+        for (int line = 0; line < boardSize; line++) {
+            grid.getRowConstraints().add(new RowConstraints());
+            grid.getColumnConstraints().add(new ColumnConstraints());
+        }
+
+        board = new Board(boardSize, boardSize);
+        LayoutDesigner.setBoard(grid, board);
+        ShapeMask block = ShapeMask.of(new int[][]{{0, 0}}, boardSize);
+
+        Random generator = new Random(42);
+        List<Tile> empty = new ArrayList<>();
+        for (int row = 0; row < boardSize; row++) {
+            for (int column = 0; column < boardSize; column++) {
+                Tile tile = new Tile(row, column, null, LayoutDesigner.EMPTY_CELL_STYLE_CLASS);
+                if (generator.nextInt(3) == 0) {
+                    tile.getStyleClass().add(LayoutDesigner.GAME_BLOCK_STYLE_CLASS);
+                    board.place(block, row, column);
+                } else {
+                    empty.add(tile);
+                }
+                LayoutDesigner.addCell(grid, tile);
+            }
+        }
+        emptyTiles = empty.toArray(Tile[]::new);
+
+        ShapeSequence sequence = ShapeCatalog.createSequence(42);
+        for (int shapeIndex = 0; shapeIndex < SHAPES_COUNT; shapeIndex++) {
+            encodedShapes[shapeIndex] = sequence.getEncodedShape(shapeIndex);
+            shapeMasks[shapeIndex] = sequence.getShape(shapeIndex).getMask(boardSize);
+        }
+        highlightedShape = sequence.getShape(0);
+
+        indexedShape = sequence.getShape(1);
+        LayoutDesigner.indexPlacements(grid, indexedShape);
+        Tile origin = indexedShape.getTiles().get(0);
+        hoverSession = DragSession.start(this, indexedShape.copy(), origin.getRow(), origin.getColumn());
+    }
+
+    /**
+     * Прежняя проверка при наведении, выполнявшаяся до появления {@link DragSession}: разбор фигуры
+     * из данных перетаскивания при каждом перемещении курсора и перенос её блоков на свободные ячейки зоны.
+     */
+    @Benchmark
+    public boolean dragOverPlacementCheck() throws ParseException {
+        index++;
+        Shape shape = Shape.parse(encodedShapes[index % SHAPES_COUNT]);
+        Tile target = emptyTiles[index % emptyTiles.length];
+        return target.moveToDropPosition(shape, 0, 0);
+    }
+
+    /**
+     * Проверка размещения по модели игровой зоны без разбора фигуры.
+     */
+    @Benchmark
+    public boolean boardPlacementCheck() {
+        index++;
+        Tile target = emptyTiles[index % emptyTiles.length];
+        return board.canPlace(shapeMasks[index % SHAPES_COUNT], target.getRow(), target.getColumn());
+    }
+
+    /**
+     * Наведение на ячейку фигуры, для которой построен индекс размещений, и отвод курсора — всё, что выполняют
+     * {@link Tile#onDragOver} и {@link Tile#onDragExited}: проверка размещения, выделение силуэта и его сброс.
+     */
+    @Benchmark
+    public boolean hoverAndLeave() {
+        index++;
+        Tile target = emptyTiles[index % emptyTiles.length];
+        boolean isAccepted = target.dragOver(hoverSession);
+        LayoutDesigner.deHighlightGrid(grid);
+        return isAccepted;
+    }
+
+    /**
+     * Построение индекса размещений, выполняемое при появлении новой фигуры.
+     */
+    @Benchmark
+    public PlacementIndex buildPlacementIndex() {
+        index++;
+        return new PlacementIndex(board, shapeMasks[index % SHAPES_COUNT]);
+    }
+
+    @Benchmark
+    public GridPane highlightAndDeHighlight() {
+        LayoutDesigner.highlightShapePosition(highlightedShape, grid);
+        LayoutDesigner.deHighlightGrid(grid);
+        return grid;
+    }
+}
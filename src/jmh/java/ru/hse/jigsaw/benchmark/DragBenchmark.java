@@ -0,0 +1,95 @@
+package ru.hse.jigsaw.benchmark;
+
+import javafx.scene.layout.ColumnConstraints;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.RowConstraints;
+import org.openjdk.jmh.annotations.*;
+import ru.hse.jigsaw.model.board.Board;
+import ru.hse.jigsaw.model.shape.DragSession;
+import ru.hse.jigsaw.model.shape.Shape;
+import ru.hse.jigsaw.model.shape.ShapeCatalog;
+import ru.hse.jigsaw.model.shape.ShapeCodec;
+import ru.hse.jigsaw.model.shape.Tile;
+import ru.hse.jigsaw.utils.LayoutDesigner;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработка наведения перетаскиваемой фигуры на ячейку игровой зоны 9x9 с последующим отводом курсора:
+ * с разбором данных перетаскивания при каждом наведении и с сеансом перетаскивания.
+ * Запускается с {@code -prof gc}, чтобы сравнить объём выделяемой памяти.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DragBenchmark {
+    private static final int BOARD_SIZE = 9;
+
+    private GridPane grid;
+    private Tile[] targets;
+    private String payload;
+    private DragSession session;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        grid = new GridPane();
+        for (int line = 0; line < BOARD_SIZE; line++) {
+            grid.getRowConstraints().add(new RowConstraints());
+            grid.getColumnConstraints().add(new ColumnConstraints());
+        }
+        LayoutDesigner.setBoard(grid, new Board(BOARD_SIZE, BOARD_SIZE));
+
+        List<Tile> cells = new ArrayList<>();
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int column = 0; column < BOARD_SIZE; column++) {
+                Tile tile = new Tile(row, column, null, LayoutDesigner.EMPTY_CELL_STYLE_CLASS);
+                LayoutDesigner.addCell(grid, tile);
+                cells.add(tile);
+            }
+        }
+        targets = cells.toArray(Tile[]::new);
+
+        Shape nestShape = ShapeCatalog.createSequence(42).getShape(0);
+        LayoutDesigner.indexPlacements(grid, nestShape);
+
+        Tile source = nestShape.getTiles().get(0);
+        payload = ShapeCodec.encodeDragPayload(nestShape.getEncodedShape(), source.getRow(), source.getColumn());
+        session = DragSession.start(source, nestShape.copy(), source.getRow(), source.getColumn());
+    }
+
+    /**
+     * Прежняя обработка: данные перетаскивания разбираются и фигура создаётся заново при каждом наведении.
+     */
+    @Benchmark
+    public boolean hoverParsingPayload() throws ParseException {
+        Tile target = nextTarget();
+        ShapeCodec.DragPayload dragPayload = ShapeCodec.decodeDragPayload(payload);
+        Shape shape = Shape.parse(dragPayload.encodedShape());
+
+        boolean isAccepted = target.moveToDropPosition(shape, dragPayload.originRow(), dragPayload.originColumn());
+        if (isAccepted) {
+            LayoutDesigner.highlightShapePosition(shape, grid);
+        }
+        LayoutDesigner.deHighlightGrid(grid);
+        return isAccepted;
+    }
+
+    @Benchmark
+    public boolean hoverWithSession() {
+        boolean isAccepted = nextTarget().dragOver(session);
+        LayoutDesigner.deHighlightGrid(grid);
+        return isAccepted;
+    }
+
+    private Tile nextTarget() {
+        index = (index + 1) % targets.length;
+        return targets[index];
+    }
+}
@@ -0,0 +1,71 @@
+package ru.hse.jigsaw.benchmark;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import ru.hse.jigsaw.model.journal.MatchEventType;
+import ru.hse.jigsaw.model.journal.MatchJournal;
+import ru.hse.jigsaw.model.net.Message;
+import ru.hse.jigsaw.model.net.MessageCodecs;
+import ru.hse.jigsaw.model.shape.ShapeCatalog;
+import ru.hse.jigsaw.model.shape.ShapeSequence;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Ответ на запрос {@code get_shape} в том виде, в каком его формирует игровая сессия, с записью
+ * выданной фигуры в журнал матчей и без неё.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatchJournalBenchmark {
+    @Param({"false", "true"})
+    public boolean isRecorded;
+
+    private Path directory;
+    private MatchJournal journal;
+    private long sessionId;
+    private ShapeSequence sequence;
+    private int index = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("match-journal");
+        journal = MatchJournal.open(directory, 64 * 1024 * 1024);
+        sessionId = journal.newSessionId();
+        sequence = ShapeCatalog.createSequence(42);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        System.out.printf("%nОтброшено записей журнала: %d%n", journal.getDroppedEventsCount());
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer serveShape() {
+        index = (index + 1) & 1023;
+        if (isRecorded) {
+            journal.record(sessionId, MatchEventType.SHAPE_SERVED, null,
+                    new JSONObject().put("from", index).put("count", 1));
+        }
+
+        String body = new JSONObject().put("shape", sequence.getEncodedShape(index)).toString();
+        return MessageCodecs.JSON.encode(new Message("get_shape", body, 1));
+    }
+}
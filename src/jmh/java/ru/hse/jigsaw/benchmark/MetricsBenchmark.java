@@ -0,0 +1,32 @@
+package ru.hse.jigsaw.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.hse.jigsaw.model.metrics.LatencyHistograms;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость учёта задержки запроса, который сервер выполняет при обработке каждого сообщения,
+ * когда метрики одновременно пишут потоки на всех процессорах.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    private final LatencyHistograms histograms = new LatencyHistograms();
+
+    @Benchmark
+    public long timeRequest() {
+        return System.nanoTime();
+    }
+
+    @Benchmark
+    public void recordRequest() {
+        long startNanos = System.nanoTime();
+        histograms.record("get_shape", System.nanoTime() - startNanos);
+    }
+}
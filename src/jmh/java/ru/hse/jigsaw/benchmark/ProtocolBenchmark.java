@@ -0,0 +1,67 @@
+package ru.hse.jigsaw.benchmark;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import ru.hse.jigsaw.model.net.Message;
+import ru.hse.jigsaw.model.net.MessageCodec;
+import ru.hse.jigsaw.model.net.MessageCodecs;
+import ru.hse.jigsaw.model.shape.ShapeCatalog;
+import ru.hse.jigsaw.model.shape.ShapeSequence;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кодирование и декодирование сообщений протокола в том виде, в каком их формирует сервер при ответе на запрос:
+ * построение тела ответа в JSON и кодирование сообщения выбранным форматом.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProtocolBenchmark {
+    @Param({"json", "binary"})
+    public String codecName;
+
+    /**
+     * Количество фигур в ответе {@code get_shapes}.
+     */
+    @Param({"1", "16"})
+    public int shapesCount;
+
+    private MessageCodec codec;
+    private ShapeSequence sequence;
+    private ByteBuffer encodedResponse;
+
+    @Setup
+    public void setUp() {
+        codec = MessageCodecs.find(codecName);
+        sequence = ShapeCatalog.createSequence(42);
+        encodedResponse = codec.encode(buildResponse());
+    }
+
+    @Benchmark
+    public ByteBuffer encodeResponse() {
+        return codec.encode(buildResponse());
+    }
+
+    @Benchmark
+    public JSONObject decodeResponse() throws ProtocolException {
+        Message message = codec.decode(encodedResponse.duplicate());
+        return new JSONObject(message.body());
+    }
+
+    private Message buildResponse() {
+        JSONArray encodedShapes = new JSONArray();
+        for (int index = 0; index < shapesCount; index++) {
+            encodedShapes.put(sequence.getEncodedShape(index));
+        }
+
+        String body = new JSONObject().put("from", 0).put("shapes", encodedShapes).toString();
+        return new Message("get_shapes", body, 1);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.hse.jigsaw.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.hse.jigsaw.model.shape.Shape;
+import ru.hse.jigsaw.model.shape.ShapeCatalog;
+import ru.hse.jigsaw.model.shape.ShapeCodec;
+import ru.hse.jigsaw.model.shape.ShapeSequence;
+import ru.hse.jigsaw.utils.LayoutDesigner;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Создание фигур: разбор компактного и прежнего строковых представлений, конструктор, выбор паттерна и генерация случайной фигуры.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShapeBenchmark {
+    private static final int SHAPES_COUNT = 64;
+
+    private final String[] encodedShapes = new String[SHAPES_COUNT];
+    private final String[] legacyEncodedShapes = new String[SHAPES_COUNT];
+    private final String[] shapesData = new String[SHAPES_COUNT];
+    private final ShapeCatalog catalog = ShapeCatalog.getDefault();
+    private long randomValue;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        ShapeSequence sequence = ShapeCatalog.createSequence(42);
+        for (int shapeIndex = 0; shapeIndex < SHAPES_COUNT; shapeIndex++) {
+            encodedShapes[shapeIndex] = sequence.getEncodedShape(shapeIndex);
+            shapesData[shapeIndex] = catalog.getShapeData(shapeIndex % catalog.size());
+            legacyEncodedShapes[shapeIndex] = String.format("[%s$%s$%s]", shapesData[shapeIndex], "#00ffff",
+                    ShapeCatalog.GAME_BLOCK_STYLE_CLASS);
+        }
+    }
+
+    @Benchmark
+    public Shape parse() throws ParseException {
+        return Shape.parse(encodedShapes[nextIndex()]);
+    }
+
+    @Benchmark
+    public ShapeCodec.ShapeCode decode() throws ParseException {
+        return ShapeCodec.decode(encodedShapes[nextIndex()]);
+    }
+
+    @Benchmark
+    public ShapeCodec.ShapeCode decodeLegacy() throws ParseException {
+        return ShapeCodec.decode(legacyEncodedShapes[nextIndex()]);
+    }
+
+    @Benchmark
+    public Shape construct() {
+        return new Shape(shapesData[nextIndex()], "#00ffff", ShapeCatalog.GAME_BLOCK_STYLE_CLASS);
+    }
+
+    @Benchmark
+    public Shape generateShape() {
+        return LayoutDesigner.generateShape();
+    }
+
+    /**
+     * Выбор паттерна с учётом весов, предшествующий созданию фигуры.
+     */
+    @Benchmark
+    public int pickPattern() {
+        randomValue += 0x9e3779b97f4a7c15L;
+        return catalog.pick(randomValue);
+    }
+
+    private int nextIndex() {
+        index = (index + 1) % SHAPES_COUNT;
+        return index;
+    }
+}
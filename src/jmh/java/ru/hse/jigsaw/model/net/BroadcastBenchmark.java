@@ -0,0 +1,105 @@
+package ru.hse.jigsaw.model.net;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.*;
+import ru.hse.jigsaw.model.metrics.MBeans;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость рассылки события в зависимости от количества получателей: кодирование один раз
+ * с передачей одних и тех же байтов всем соединениям ({@link Server#broadcast(Message, java.util.Collection)})
+ * и кодирование для каждого получателя отдельно ({@link Server.ClientHandler#offerEvent(Message)}).
+ * <p>
+ * Находится в пакете сервера, чтобы обращаться к соединениям напрямую: получатели — соединения без сокетов,
+ * которые сразу забирают сообщение из своей очереди, поэтому измеряется только работа рассылающего потока.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-D" + MBeans.JMX_ENABLED_PROPERTY + "=false")
+@State(Scope.Thread)
+public class BroadcastBenchmark {
+    @Param({"json", "binary"})
+    public String codecName;
+
+    @Param({"1", "8", "64", "512"})
+    public int recipientsCount;
+
+    private Server server;
+    private List<Server.ClientHandler> recipients;
+    private Message event;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new Server(new ServerSocket(0));
+
+        MessageCodec codec = MessageCodecs.find(codecName);
+        recipients = new ArrayList<>(recipientsCount);
+        for (int index = 0; index < recipientsCount; index++) {
+            DrainingClientHandler recipient = new DrainingClientHandler(server);
+            recipient.outboundCodec = codec;
+            recipients.add(recipient);
+        }
+
+        JSONArray joined = new JSONArray();
+        for (int index = 0; index < 4; index++) {
+            joined.put(new JSONObject().put("id", Integer.toString(index)).put("nickname", "player" + index));
+        }
+        String body = new JSONObject().put("from_version", 7).put("version", 8)
+                .put("joined", joined).put("left", new JSONArray().put("3")).toString();
+        event = new Message("membership_changed", body);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.shutdown();
+    }
+
+    @Benchmark
+    public List<Server.ClientHandler> encodeOnce() {
+        return server.broadcast(event, recipients);
+    }
+
+    @Benchmark
+    public int encodePerRecipient() {
+        int slowConsumersCount = 0;
+        for (Server.ClientHandler recipient : recipients) {
+            if (!recipient.offerEvent(event)) {
+                slowConsumersCount++;
+            }
+        }
+
+        return slowConsumersCount;
+    }
+
+    /**
+     * Соединение, которое сразу извлекает поставленное в очередь сообщение, как если бы оно было отправлено.
+     */
+    private static final class DrainingClientHandler extends Server.ClientHandler {
+        DrainingClientHandler(Server server) {
+            super(server);
+        }
+
+        @Override
+        void onMessageQueued() {
+            outboundQueue.poll();
+        }
+
+        @Override
+        void releaseResources() {
+            outboundQueue.close();
+        }
+
+        @Override
+        void abortResources() {
+            outboundQueue.close();
+        }
+    }
+}
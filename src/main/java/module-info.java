@@ -4,6 +4,9 @@ module ru.hse {
     requires javafx.fxml;
     requires org.json;
     requires java.logging;
+    requires java.management;
+    requires jdk.management;
+    requires jdk.jfr;
 
     opens ru.hse.jigsaw to javafx.fxml;
     exports ru.hse.jigsaw;
@@ -11,12 +14,18 @@ module ru.hse {
     opens ru.hse.jigsaw.controller to javafx.fxml;
     exports ru.hse.jigsaw.view;
     opens ru.hse.jigsaw.view to javafx.fxml;
+    exports ru.hse.jigsaw.model.board;
     exports ru.hse.jigsaw.model.shape;
     opens ru.hse.jigsaw.model.shape to javafx.fxml;
     exports ru.hse.jigsaw.model.stopwatch;
     opens ru.hse.jigsaw.model.stopwatch to javafx.fxml;
     exports ru.hse.jigsaw.utils;
     opens ru.hse.jigsaw.utils to javafx.fxml;
+    exports ru.hse.jigsaw.model.metrics;
     exports ru.hse.jigsaw.model.net;
     opens ru.hse.jigsaw.model.net to javafx.fxml;
+    exports ru.hse.jigsaw.model.session;
+    exports ru.hse.jigsaw.model.journal;
+    exports ru.hse.jigsaw.server;
+    exports ru.hse.jigsaw.loadtest;
 }
\ No newline at end of file
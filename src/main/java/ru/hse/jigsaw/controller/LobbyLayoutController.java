@@ -28,6 +28,11 @@ public class LobbyLayoutController implements Initializable {
     @FXML
     private Label sessionDurationLabel;
 
+    /**
+     * Строки таблицы игроков по идентификаторам.
+     */
+    private final Map<String, PlayerInfo> playersById = new HashMap<>();
+
     public TableView<PlayerInfo> getPlayersTable() {
         return listOfPlayers;
     }
@@ -38,41 +43,82 @@ public class LobbyLayoutController implements Initializable {
         sessionDurationLabel.setText(String.format("ВРЕМЯ СЕССИИ:\t%s", sessionDurationText));
     }
 
-    public void updateLobbyWhileWaiting(JSONArray activeClients) {
+    /**
+     * Полностью заменяет список игроков, ожидающих старта.
+     *
+     * @param members участники лобби: идентификатор — никнейм;
+     */
+    public void showMembers(Map<String, String> members) {
         List<PlayerInfo> items = new ArrayList<>();
-        for (int index = 0; index < activeClients.length(); index++) {
-            JSONObject activeClientContainer = activeClients.getJSONObject(index);
-
-            String id = activeClientContainer.getString("id");
-            String nickname = activeClientContainer.getString("nickname");
-            String status = "Ожидает старта";
-
-            items.add(new PlayerInfo(id, nickname, status, Duration.ZERO, 0));
+        playersById.clear();
+        for (Map.Entry<String, String> member : members.entrySet()) {
+            PlayerInfo playerInfo = new PlayerInfo(member.getKey(), member.getValue(), "Ожидает старта",
+                    Duration.ZERO, 0);
+            items.add(playerInfo);
+            playersById.put(member.getKey(), playerInfo);
         }
 
         listOfPlayers.setItems(FXCollections.observableList(items));
     }
 
-    public void updateLobbyAfterGameStarted(JSONArray activeClients) {
-        Set<String> activeIds = new HashSet<>();
-        for (int activeClientIndex = 0; activeClientIndex < activeClients.length(); activeClientIndex++) {
-            activeIds.add(activeClients.getJSONObject(activeClientIndex).getString("id"));
+    /**
+     * Добавляет в список ожидающих старта подключившихся игроков и удаляет отключившихся.
+     * Уже учтённые изменения игнорируются.
+     *
+     * @param joined подключившиеся игроки — объекты с полями {@code id} и {@code nickname};
+     * @param left   идентификаторы отключившихся игроков;
+     */
+    public void applyMembershipChanges(JSONArray joined, JSONArray left) {
+        for (int index = 0; index < joined.length(); index++) {
+            JSONObject activeClientContainer = joined.getJSONObject(index);
+
+            String id = activeClientContainer.getString("id");
+            if (!playersById.containsKey(id)) {
+                String nickname = activeClientContainer.getString("nickname");
+                PlayerInfo playerInfo = new PlayerInfo(id, nickname, "Ожидает старта", Duration.ZERO, 0);
+                listOfPlayers.getItems().add(playerInfo);
+                playersById.put(id, playerInfo);
+            }
+        }
+
+        for (int index = 0; index < left.length(); index++) {
+            PlayerInfo playerInfo = playersById.remove(left.getString(index));
+            if (playerInfo != null) {
+                listOfPlayers.getItems().remove(playerInfo);
+            }
         }
+    }
 
-        int registeredPlayersCount = listOfPlayers.getItems().size();
-        for (int playerIndex = 0; playerIndex < registeredPlayersCount; playerIndex++) {
-            if (!activeIds.contains(listOfPlayers.getItems().get(playerIndex).getId())) {
-                String newStatus = "Покинул(-а) лобби";
-                PlayerInfo info = listOfPlayers.getItems().get(playerIndex);
-                info.setStatus(newStatus);
-                listOfPlayers.getItems().set(playerIndex, info);
+    /**
+     * Отмечает покинувших лобби игроков после начала игры.
+     *
+     * @param left идентификаторы отключившихся игроков;
+     */
+    public void markLeftPlayers(Collection<String> left) {
+        for (String id : left) {
+            PlayerInfo info = playersById.get(id);
+            if (info != null) {
+                info.setStatus("Покинул(-а) лобби");
+                int playerIndex = listOfPlayers.getItems().indexOf(info);
+                if (playerIndex >= 0) {
+                    listOfPlayers.getItems().set(playerIndex, info);
+                }
             }
         }
     }
 
     public void updateInfo(PlayerInfo[] playersInfo) {
-        for (int playerIndex = 0; playerIndex < playersInfo.length; playerIndex++) {
-            listOfPlayers.getItems().set(playerIndex, playersInfo[playerIndex]);
+        if (listOfPlayers.getItems().size() != playersInfo.length) {
+            listOfPlayers.setItems(FXCollections.observableArrayList(playersInfo));
+        } else {
+            for (int playerIndex = 0; playerIndex < playersInfo.length; playerIndex++) {
+                listOfPlayers.getItems().set(playerIndex, playersInfo[playerIndex]);
+            }
+        }
+
+        playersById.clear();
+        for (PlayerInfo playerInfo : playersInfo) {
+            playersById.put(playerInfo.getId(), playerInfo);
         }
     }
 
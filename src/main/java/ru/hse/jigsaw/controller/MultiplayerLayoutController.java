@@ -13,7 +13,6 @@ import ru.hse.jigsaw.view.MultiplayerLayout;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.URL;
 import java.time.Duration;
@@ -99,8 +98,7 @@ public class MultiplayerLayoutController implements Initializable {
                 sessionDuration = Duration.ofSeconds(Math.round(sessionDurationSlider.getValue()));
                 numberOfPlayers = playersCountSpinner.getValue();
 
-                ServerSocket serverSocket = new ServerSocket(port);
-                server = new Server(serverSocket);
+                server = Server.open(port);
                 server.run();
             } catch (IOException exception) {
                 throw new UncheckedIOException(exception);
@@ -17,9 +17,14 @@ import java.time.Duration;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import ru.hse.jigsaw.App;
+import ru.hse.jigsaw.model.board.Board;
 import ru.hse.jigsaw.model.net.Client;
+import ru.hse.jigsaw.model.net.LobbyMembership;
 import ru.hse.jigsaw.model.net.Server;
+import ru.hse.jigsaw.model.net.ShapePrefetcher;
+import ru.hse.jigsaw.model.session.GameSession;
 import ru.hse.jigsaw.model.shape.Shape;
+import ru.hse.jigsaw.model.shape.ShapeSequence;
 import ru.hse.jigsaw.model.shape.Tile;
 import ru.hse.jigsaw.model.stopwatch.Stopwatch;
 import ru.hse.jigsaw.utils.LayoutDesigner;
@@ -34,16 +39,21 @@ import java.text.ParseException;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.ResourceBundle;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Controller-класс основного окна приложения.
  */
 public class PrimaryLayoutController implements Initializable {
+    /**
+     * Наибольшее время ожидания ответа сервера на запрос.
+     */
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
     @FXML
     private GridPane layout;
 
@@ -95,6 +105,17 @@ public class PrimaryLayoutController implements Initializable {
     private Server server;
     private Client client;
 
+    /**
+     * Последовательность фигур сетевой игры, восстановленная по зерну, полученному от сервера.
+     */
+    private ShapeSequence shapeSequence;
+
+    /**
+     * Заранее запрошенные у сервера фигуры сетевой игры. Используется, если сервер не передал
+     * зерно последовательности фигур.
+     */
+    private ShapePrefetcher shapePrefetcher;
+
     private int numberOfPlayers;
     private Duration sessionDuration;
 
@@ -103,6 +124,12 @@ public class PrimaryLayoutController implements Initializable {
 
     private PlayerInfo[] playersInfo;
 
+    /**
+     * Состав лобби, поддерживаемый по событиям сервера.
+     */
+    private LobbyMembership membership;
+    private boolean isMultiplayerGameStarted;
+
     @FXML
     private void onGameStarted() {
         if (lobby != null && lobby.isShowing()) {
@@ -158,19 +185,18 @@ public class PrimaryLayoutController implements Initializable {
     }
 
     private void onMultiplayerGameStarted() {
-        client.removeMessageHandler("clients_list_changed");
-        client.addMessageHandler("clients_list_changed", data -> {
-            JSONArray activeClients = new JSONObject(data).getJSONArray("clients_list");
-            lobbyInfo.controller().updateLobbyAfterGameStarted(activeClients);
-
-            if (server != null) {
-                TableView<PlayerInfo> playersTable = lobbyInfo.controller().getPlayersTable();
-                if (activeClients.length() < 2 ||
-                        playersTable.getItems().stream().noneMatch(info -> "Играет".equals(info.getStatus()))) {
-                    playersInfo[0].setStatus("Ожидает результатов");
-                    server.sendEvent("game_over");
-                }
+        isMultiplayerGameStarted = true;
+
+        client.removeMessageHandler("membership_changed");
+        client.addMessageHandler("membership_changed", data -> {
+            JSONObject delta = new JSONObject(data);
+            if (!membership.apply(delta)) {
+                client.sendRequest("get_clients_list");
+                return;
             }
+
+            List<String> leftIds = delta.getJSONArray("left").toList().stream().map(Object::toString).toList();
+            Platform.runLater(() -> lobbyInfo.controller().markLeftPlayers(leftIds));
         });
 
         client.sendRequest("get_clients_list");
@@ -182,10 +208,15 @@ public class PrimaryLayoutController implements Initializable {
         stopwatch.start();
         startBackgroundMusic();
 
-        client.sendRequest("get_shape", Integer.toString(shapesCount));
+        shapePrefetcher = shapeSequence == null ? new ShapePrefetcher(client, shapesCount, REQUEST_TIMEOUT) : null;
+        placeNextShape();
     }
 
     private void showLobby() {
+        isMultiplayerGameStarted = false;
+        playersInfo = null;
+        membership = new LobbyMembership();
+
         startSingleplayerGameButton.setDisable(true);
         startMultiplayerGameButton.setDisable(true);
         endGameButton.setDisable(false);
@@ -213,17 +244,14 @@ public class PrimaryLayoutController implements Initializable {
     }
 
     private void prepareClient() {
-        client.addMessageHandler("connection_closed", data ->
-                Platform.runLater(() -> {
-                    if (lobby != null && lobby.isShowing()) {
-                        showAlertError("Соединение с сервером разорвано.", "Ошибка подключения!");
-                        lobby.close();
-                    }
-                }));
+        client.addMessageHandler("connection_closed", data -> Platform.runLater(this::resumeSession));
 
         client.addMessageHandler("game_started", data ->
                 Platform.runLater(() -> {
-                    sessionDuration = Duration.parse(new JSONObject(data).getString("session_duration"));
+                    JSONObject container = new JSONObject(data);
+                    sessionDuration = Duration.parse(container.getString("session_duration"));
+                    shapeSequence = container.has("shape_seed")
+                            ? LayoutDesigner.createShapeSequence(container.getLong("shape_seed")) : null;
                     onMultiplayerGameStarted();
                 }));
 
@@ -243,26 +271,35 @@ public class PrimaryLayoutController implements Initializable {
             });
         });
 
-        client.addMessageHandler("get_shape", data -> {
-            try {
-                Shape shape = Shape.parse(new JSONObject(data).getString("shape"));
-                Platform.runLater(() -> placeNewShape(shape));
-            } catch (ParseException exception) {
-                showAlertError("Полученные с сервера данные повреждены.", "Ошибка представления!");
+        client.addMessageHandler("membership_changed", data -> {
+            JSONObject delta = new JSONObject(data);
+            if (!membership.apply(delta)) {
+                client.sendRequest("get_clients_list");
+                return;
             }
-        });
 
-        client.addMessageHandler("clients_list_changed", data -> {
-            lobbyInfo.controller().updateLobbyWhileWaiting(new JSONObject(data).getJSONArray("clients_list"));
-            if (server != null) {
-                if (lobbyInfo.controller().getPlayersTable().getItems().size() == numberOfPlayers) {
-                    server.sendEvent("game_started");
-                }
-            }
+            Platform.runLater(() -> lobbyInfo.controller().applyMembershipChanges(
+                    delta.getJSONArray("joined"), delta.getJSONArray("left")));
         });
 
         client.addMessageHandler("get_clients_list", data -> {
-            JSONArray jsonArray = new JSONObject(data).getJSONArray("clients_list");
+            JSONObject snapshot = new JSONObject(data);
+            membership.reset(snapshot);
+
+            if (!isMultiplayerGameStarted) {
+                Map<String, String> members = membership.getMembers();
+                Platform.runLater(() -> lobbyInfo.controller().showMembers(members));
+                return;
+            }
+
+            JSONArray jsonArray = snapshot.getJSONArray("clients_list");
+            if (playersInfo != null) {
+                /* Восстановление после пропущенного изменения состава: отмечаются вышедшие игроки. */
+                List<String> leftIds = Arrays.stream(playersInfo).map(PlayerInfo::getId)
+                        .filter(id -> !membership.contains(id)).toList();
+                Platform.runLater(() -> lobbyInfo.controller().markLeftPlayers(leftIds));
+                return;
+            }
 
             numberOfPlayers = jsonArray.length();
 
@@ -283,8 +320,13 @@ public class PrimaryLayoutController implements Initializable {
 
         client.addMessageHandler("players_info_changed", data -> {
             JSONArray newStatuses = new JSONObject(data).getJSONArray("players_info");
-            for (int playerIndex = 0; playerIndex < newStatuses.length(); playerIndex++) {
-                playersInfo[playerIndex].setStatus(newStatuses.getJSONObject(playerIndex).getString("status"));
+            for (int index = 0; index < newStatuses.length(); index++) {
+                JSONObject newStatus = newStatuses.getJSONObject(index);
+                for (PlayerInfo playerInfo : playersInfo) {
+                    if (Objects.equals(playerInfo.getId(), newStatus.getString("id"))) {
+                        playerInfo.setStatus(newStatus.getString("status"));
+                    }
+                }
             }
 
             lobbyInfo.controller().updateInfo(playersInfo);
@@ -296,98 +338,73 @@ public class PrimaryLayoutController implements Initializable {
         }));
 
         client.register();
-        client.addMessageHandler("get_game_duration", data -> Platform.runLater(() -> lobbyInfo.controller()
-                .setSessionDuration(Duration.parse(new JSONObject(data).getString("game_duration")))));
-        client.sendRequest("get_game_duration");
+        client.sendRequest("get_clients_list");
+        client.request("get_game_duration", REQUEST_TIMEOUT).thenAccept(data -> Platform.runLater(() ->
+                lobbyInfo.controller().setSessionDuration(Duration.parse(data.getString("game_duration")))));
     }
 
-    private void prepareServer() {
-        Shape[] shapes = new Shape[mainGrid.getRowCount() * mainGrid.getColumnCount()];
-        for (int index = 0; index < shapes.length; index++) {
-            shapes[index] = LayoutDesigner.generateShape();
+    /**
+     * Переподключается к серверу после разрыва соединения. Восстановленная сессия сохраняет идентификатор
+     * игрока, а пропущенные события передаются тем же обработчикам; если сессию восстановить не удалось,
+     * лобби закрывается.
+     */
+    private void resumeSession() {
+        if (lobby == null || !lobby.isShowing() || client == null) {
+            return;
         }
 
-        server.addEvent("game_over", () -> {
-            for (int playerIndex = 0; playerIndex < numberOfPlayers; playerIndex++) {
-                if ("Играет".equals(playersInfo[playerIndex].getStatus())) {
-                    return new JSONObject();
+        Client droppedClient = client;
+        droppedClient.resume(REQUEST_TIMEOUT).whenComplete((resumedClient, exception) -> Platform.runLater(() -> {
+            boolean isResumed = exception == null && resumedClient.isSessionResumed();
+            if (client != droppedClient || !isResumed) {
+                if (resumedClient != null) {
+                    resumedClient.closeConnection();
                 }
-            }
-
-            PlayerInfo winnerInfo = Arrays.stream(playersInfo).filter(info ->
-                    "Ожидает результатов".equals(info.getStatus())).sorted().toList().get(0);
-            for (PlayerInfo playerInfo : playersInfo) {
-                if (winnerInfo.equals(playerInfo)) {
-                    playerInfo.setStatus("Победитель");
-                } else {
-                    if ("Ожидает результатов".equals(playerInfo.getStatus())) {
-                        playerInfo.setStatus("Участник");
-                    }
+                if (client == droppedClient && lobby.isShowing()) {
+                    showAlertError("Соединение с сервером разорвано.", "Ошибка подключения!");
+                    lobby.close();
                 }
+                return;
             }
 
-            server.sendEvent("players_info_changed");
-
-            return new JSONObject();
-        });
-
-        server.addEvent("game_started", () -> {
-            server.closeRegistration();
-            ExecutorService executorService = Executors.newSingleThreadExecutor();
-            executorService.submit(() -> {
-                try {
-                    TimeUnit.SECONDS.sleep(sessionDuration.toSeconds());
-                    server.sendEvent("game_over");
-                } catch (InterruptedException exception) {
-                    exception.printStackTrace();
-                }
-            });
-            return new JSONObject().put("session_duration", sessionDuration);
-        });
-
-        server.addEvent("players_info_changed", () ->
-                new JSONObject().put("players_info", new JSONArray(playersInfo)));
-
-        server.addResponse("get_shape", data -> {
-            int figureIndex = Integer.parseInt(data);
-            return new JSONObject().put("shape", shapes[figureIndex].getEncodedShape());
-        });
-
-        server.addResponse("get_game_duration", data ->
-                new JSONObject().put("game_duration", sessionDuration.toString()));
-
-        server.addResponse("player_finished", data -> {
-            JSONObject container = new JSONObject(data);
-
-            String playerId = container.getString("id");
-            Duration gameDuration = Duration.parse(container.getString("game_duration"));
-            int placedShapesCount = container.getInt("placed_shapes_count");
-
-            int playerIndex = -1;
-            for (int index = 0; index < numberOfPlayers; index++) {
-                if (Objects.equals(playersInfo[index].getId(), playerId)) {
-                    playerIndex = index;
-                    break;
-                }
+            client = resumedClient;
+            if (shapePrefetcher != null) {
+                shapePrefetcher = new ShapePrefetcher(client, shapesCount, REQUEST_TIMEOUT);
+            }
+            if (!client.isReplayComplete()) {
+                client.sendRequest("get_clients_list");
             }
+        }));
+    }
 
-            if ("Играет".equals(playersInfo[playerIndex].getStatus())) {
-                playersInfo[playerIndex].setStatus("Ожидает результатов");
-                playersInfo[playerIndex].setGameDuration(gameDuration);
-                playersInfo[playerIndex].setPlacedShapesCount(placedShapesCount);
+    /**
+     * Помещает в зону генерации очередную фигуру сетевой игры. Фигура вычисляется локально по зерну
+     * последовательности, а без него — берётся из заранее запрошенных у сервера фигур.
+     */
+    private void placeNextShape() {
+        if (shapeSequence != null) {
+            placeNewShape(shapeSequence.getShape(shapesCount));
+            return;
+        }
 
-                if (Arrays.stream(playersInfo).allMatch(info -> "Ожидает результатов".equals(info.getStatus()) ||
-                        "Покинул(-а) лобби".equals(info.getStatus()))) {
-                    server.sendEvent("game_over");
-                } else {
-                    server.sendEvent("players_info_changed");
-                }
+        shapePrefetcher.next().thenAcceptAsync(encodedShape -> {
+            try {
+                placeNewShape(Shape.parse(encodedShape));
+            } catch (ParseException exception) {
+                showAlertError("Полученные с сервера данные повреждены.", "Ошибка представления!");
             }
-
-            return new JSONObject();
+        }, Platform::runLater).exceptionally(exception -> {
+            if (exception.getCause() instanceof TimeoutException) {
+                Platform.runLater(() -> showAlertError("Сервер не ответил на запрос фигуры.", "Ошибка подключения!"));
+            }
+            return null;
         });
     }
 
+    private void prepareServer() {
+        new GameSession(server.getDefaultRoom(), numberOfPlayers, sessionDuration).install();
+    }
+
     @FXML
     private void onGameOver() {
         endGameButton.setDisable(true);
@@ -436,7 +453,7 @@ public class PrimaryLayoutController implements Initializable {
 
         /* Генерация новой фигуры. */
         if (client != null) {
-            client.sendRequest("get_shape", Integer.toString(shapesCount + 1));
+            placeNextShape();
         } else {
             Shape shape = LayoutDesigner.generateShape();
             placeNewShape(shape);
@@ -449,6 +466,7 @@ public class PrimaryLayoutController implements Initializable {
         updateGameGrid(nestGrid, false);
 
         LayoutDesigner.placeShape(shape, nestGrid);
+        LayoutDesigner.indexPlacements(mainGrid, shape);
         setShapesCount(shapesCount + 1);
         nestShape = shape;
     }
@@ -471,6 +489,7 @@ public class PrimaryLayoutController implements Initializable {
 
     private void updateGameGrid(GridPane gameGrid, boolean allowDrop) {
         gameGrid.getChildren().clear();
+        LayoutDesigner.setBoard(gameGrid, new Board(gameGrid.getRowCount(), gameGrid.getColumnCount()));
 
         for (int row = 0; row < gameGrid.getRowCount(); row++) {
             for (int column = 0; column < gameGrid.getColumnCount(); column++) {
@@ -483,7 +502,7 @@ public class PrimaryLayoutController implements Initializable {
                     unfilledTile.setOnDragDone(this::onShapeDragDone);
                 }
 
-                gameGrid.add(unfilledTile, column, row);
+                LayoutDesigner.addCell(gameGrid, unfilledTile);
             }
         }
     }
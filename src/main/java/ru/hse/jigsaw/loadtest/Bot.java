@@ -0,0 +1,156 @@
+package ru.hse.jigsaw.loadtest;
+
+import org.json.JSONObject;
+import ru.hse.jigsaw.model.net.Client;
+import ru.hse.jigsaw.model.net.LobbyMembership;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Имитация игрока: регистрируется в комнате, дожидается начала игры, запрашивает фигуры,
+ * сообщает результат и завершает работу, получив {@code game_over}.
+ */
+final class Bot {
+    private final LoadStatistics statistics;
+    private final int shapesCount;
+    private final Duration timeout;
+    private final Client client;
+
+    private final LobbyMembership membership = new LobbyMembership();
+    private final AtomicBoolean isFinishReported = new AtomicBoolean();
+    private final CompletableFuture<Void> started = new CompletableFuture<>();
+    private final CompletableFuture<Void> completed = new CompletableFuture<>();
+    private final long connectStartNanos;
+
+    /**
+     * @param host        адрес сервера;
+     * @param port        порт сервера;
+     * @param nickname    никнейм игрока;
+     * @param shapesCount количество фигур, запрашиваемых за игру;
+     * @param timeout     наибольшее время ожидания ответа сервера;
+     * @param statistics  накопитель измерений;
+     * @throws IOException в случае, если не удалось подключиться к серверу.
+     */
+    Bot(String host, int port, String nickname, int shapesCount, Duration timeout, LoadStatistics statistics)
+            throws IOException {
+        this.statistics = statistics;
+        this.shapesCount = shapesCount;
+        this.timeout = timeout;
+
+        connectStartNanos = System.nanoTime();
+        client = new Client(new Socket(host, port), nickname);
+
+        client.addMessageHandler("game_started", body -> {
+            statistics.recordEvent("game_started");
+            started.complete(null);
+        });
+        client.addMessageHandler("game_over", body -> {
+            statistics.recordEvent("game_over");
+            if (started.isDone()) {
+                reportFinish().whenComplete((response, exception) -> completed.complete(null));
+            }
+        });
+        client.addMessageHandler("players_info_changed", body -> statistics.recordEvent("players_info_changed"));
+        client.addMessageHandler("membership_changed", body -> {
+            statistics.recordEvent("membership_changed");
+            if (!membership.apply(new JSONObject(body))) {
+                fetchMembers();
+            }
+        });
+        client.addMessageHandler("connection_closed", body -> {
+            started.completeExceptionally(new IOException("Connection is closed"));
+            completed.complete(null);
+        });
+    }
+
+    /**
+     * Регистрирует игрока в новой комнате.
+     *
+     * @return результат, завершающийся после регистрации.
+     */
+    CompletableFuture<Void> joinNewRoom() {
+        client.registerInNewRoom();
+        return fetchMembers();
+    }
+
+    /**
+     * @param roomId идентификатор комнаты;
+     * @return результат, завершающийся после регистрации.
+     */
+    CompletableFuture<Void> join(String roomId) {
+        client.register(roomId);
+        return fetchMembers();
+    }
+
+    String getRoomId() {
+        return client.getRoomId();
+    }
+
+    /**
+     * Играет после начала игры.
+     *
+     * @return результат, завершающийся после окончания игры или разрыва соединения.
+     */
+    CompletableFuture<Void> play() {
+        started.thenRun(() -> requestShape(0));
+        return completed;
+    }
+
+    void close() {
+        if (client.isConnected()) {
+            client.closeConnection();
+        }
+    }
+
+    /**
+     * Запрашивает полный состав комнаты. Первый ответ после регистрации отмечает окончание установки соединения.
+     */
+    private CompletableFuture<Void> fetchMembers() {
+        return request("get_clients_list", "").thenAccept(snapshot -> {
+            if (membership.getVersion() < 0) {
+                statistics.recordConnectionSetup(System.nanoTime() - connectStartNanos);
+            }
+            membership.reset(snapshot);
+        });
+    }
+
+    private void requestShape(int index) {
+        if (index >= shapesCount) {
+            reportFinish();
+            return;
+        }
+
+        request("get_shape", Integer.toString(index)).whenComplete((response, exception) -> {
+            if (exception == null) {
+                requestShape(index + 1);
+            }
+        });
+    }
+
+    private CompletableFuture<JSONObject> reportFinish() {
+        if (!isFinishReported.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(new JSONObject());
+        }
+
+        JSONObject container = new JSONObject();
+        container.put("id", client.getId());
+        container.put("game_duration", Duration.ofNanos(System.nanoTime() - connectStartNanos).toString());
+        container.put("placed_shapes_count", shapesCount);
+        return request("player_finished", container.toString());
+    }
+
+    private CompletableFuture<JSONObject> request(String key, String body) {
+        long startNanos = System.nanoTime();
+        return client.request(key, body, timeout).whenComplete((response, exception) -> {
+            if (exception == null) {
+                statistics.recordResponse(key, System.nanoTime() - startNanos);
+            } else {
+                statistics.recordFailure(key);
+            }
+        });
+    }
+}
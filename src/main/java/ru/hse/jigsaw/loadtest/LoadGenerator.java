@@ -0,0 +1,445 @@
+package ru.hse.jigsaw.loadtest;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import ru.hse.jigsaw.model.journal.MatchJournal;
+import ru.hse.jigsaw.model.net.Message;
+import ru.hse.jigsaw.model.net.MessageCodecs;
+import ru.hse.jigsaw.model.net.Server;
+import ru.hse.jigsaw.model.net.ThreadMode;
+import ru.hse.jigsaw.model.session.GameSession;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный тест сетевого протокола. Запускает на петлевом интерфейсе сервер и заданное количество
+ * ботов — имитаций {@link ru.hse.jigsaw.model.net.Client}, играющих по комнатам, и печатает пропускную
+ * способность, перцентили задержек по ключам сообщений, время установки соединения, а также наибольший
+ * объём занятой кучи и количество потоков.
+ * <p>
+ * Параметры передаются аргументами вида {@code --ключ=значение}:
+ * <ul>
+ *     <li>{@code bots} — количество ботов (1000);</li>
+ *     <li>{@code roomSize} — количество игроков в комнате, включая зависших (4);</li>
+ *     <li>{@code stalledPerRoom} — количество зависших клиентов в каждой комнате, которые регистрируются,
+ *     но не читают сообщения сервера (0);</li>
+ *     <li>{@code shapes} — количество фигур, запрашиваемых ботом за игру (50);</li>
+ *     <li>{@code sessionDuration} — длительность игровой сессии в секундах (30);</li>
+ *     <li>{@code requestTimeout} — наибольшее время ожидания ответа в секундах (10);</li>
+ *     <li>{@code connectParallelism} — количество одновременно заполняемых комнат (64);</li>
+ *     <li>{@code port} — порт сервера (5600);</li>
+ *     <li>{@code external} — {@code true}, чтобы не запускать сервер, а подключиться к уже запущенному
+ *     на петлевом интерфейсе, например к {@link ru.hse.jigsaw.server.DedicatedServer} с {@code maxPlayers},
+ *     равным {@code roomSize} (false);</li>
+ *     <li>{@code matchLog} — каталог журнала матчей, в который запущенный сервер записывает игры
+ *     (без записи);</li>
+ *     <li>{@code transport} — транспорт запускаемого сервера: {@code blocking}, {@code nio} или {@code compare},
+ *     чтобы провести одинаковый тест сначала с блокирующим, затем с неблокирующим транспортом на портах
+ *     {@code port} и {@code port + 1} и сравнить количество соединений на ядро и 99-й перцентиль задержки
+ *     ответов (выбирается свойством {@link Server#NIO_MODE_PROPERTY});</li>
+ *     <li>{@code checkVirtualThreads} — {@code true}, чтобы тест завершался неудачей, если соединения
+ *     обслуживаются не виртуальными потоками или хотя бы один виртуальный поток заблокировался, не освободив
+ *     поток-носитель (событие JFR {@code jdk.VirtualThreadPinned}, Java 21 и новее); используется длительным
+ *     тестом профиля {@code soak} (false).</li>
+ * </ul>
+ * Сервер запускается в том же процессе, поэтому объём кучи, количество потоков и загрузка процессора
+ * включают ботов; для тысяч ботов рекомендуется {@code -Djigsaw.threads=virtual}. Количество соединений
+ * на ядро — число одновременно открытых соединений, делённое на среднее количество ядер, занятых процессом
+ * во время теста. При сравнении оба теста выполняются в одной JVM, и второй, неблокирующий, начинается
+ * с уже скомпилированным JIT кодом ботов.
+ */
+public final class LoadGenerator {
+    private static final String HOST = "localhost";
+
+    private static final String BLOCKING_TRANSPORT = "blocking";
+    private static final String NIO_TRANSPORT = "nio";
+    private static final String COMPARE_TRANSPORTS = "compare";
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String transport = options.get("transport");
+        int port = getInt(options, "port", 5600);
+
+        if (!COMPARE_TRANSPORTS.equals(transport)) {
+            System.exit(run(options, transport, port).isSuccessful() ? 0 : 1);
+        }
+
+        if (Boolean.parseBoolean(options.getOrDefault("external", "false"))) {
+            throw new IllegalArgumentException("Transports can only be compared on an in-process server");
+        }
+
+        RunSummary blockingSummary = run(options, BLOCKING_TRANSPORT, port);
+        System.out.println();
+        RunSummary nioSummary = run(options, NIO_TRANSPORT, port + 1);
+
+        System.out.println();
+        System.out.printf("Сравнение транспортов (доступно ядер: %d):%n", Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-10s %12s %12s %16s %16s%n",
+                "транспорт", "соединений", "занято ядер", "соединений/ядро", "p99 ответов, мс");
+        for (RunSummary summary : List.of(blockingSummary, nioSummary)) {
+            System.out.printf("%-10s %12d %12.2f %16.1f %16.3f%n", summary.transport(), summary.connectionsCount(),
+                    summary.cpuCores(), summary.connectionsCount() / summary.cpuCores(),
+                    summary.responseLatencyP99Nanos() / 1e6);
+        }
+        System.exit(blockingSummary.isSuccessful() && nioSummary.isSuccessful() ? 0 : 1);
+    }
+
+    /**
+     * Проводит нагрузочный тест и печатает его отчёт.
+     *
+     * @param options   параметры теста;
+     * @param transport транспорт запускаемого сервера или {@code null} для выбора системными свойствами;
+     * @param port      порт сервера;
+     * @return итоги теста.
+     */
+    private static RunSummary run(Map<String, String> options, String transport, int port) throws Exception {
+        int botsCount = getInt(options, "bots", 1000);
+        int roomSize = getInt(options, "roomSize", 4);
+        int stalledPerRoom = getInt(options, "stalledPerRoom", 0);
+        int shapesCount = getInt(options, "shapes", 50);
+        Duration sessionDuration = Duration.ofSeconds(getInt(options, "sessionDuration", 30));
+        Duration requestTimeout = Duration.ofSeconds(getInt(options, "requestTimeout", 10));
+        int connectParallelism = getInt(options, "connectParallelism", 64);
+        boolean isExternal = Boolean.parseBoolean(options.getOrDefault("external", "false"));
+        String matchLogPath = options.get("matchLog");
+        boolean isVirtualThreadsCheck = Boolean.parseBoolean(options.getOrDefault("checkVirtualThreads", "false"));
+
+        if (isVirtualThreadsCheck
+                && (ThreadMode.fromSystemProperty() != ThreadMode.VIRTUAL || !ThreadMode.VIRTUAL.isSupported())) {
+            throw new IllegalStateException(String.format("Virtual threads are not in use: run on Java 21 or later "
+                    + "with -D%s=virtual (current Java %s)", ThreadMode.THREAD_MODE_PROPERTY, Runtime.version()));
+        }
+
+        int botsPerRoom = roomSize - stalledPerRoom;
+        if (botsPerRoom < 1 || stalledPerRoom < 0 || botsCount < botsPerRoom) {
+            throw new IllegalArgumentException("Each room must hold at least one bot");
+        }
+        int roomsCount = botsCount / botsPerRoom;
+
+        Server server = null;
+        MatchJournal journal = null;
+        if (!isExternal) {
+            MatchJournal serverJournal = matchLogPath != null ? MatchJournal.open(Path.of(matchLogPath)) : null;
+            server = openServer(transport, port, roomsCount * roomSize);
+            server.setRoomInitializer(room ->
+                    new GameSession(room, roomSize, sessionDuration, serverJournal).install());
+            journal = serverJournal;
+            server.run();
+        }
+
+        LoadStatistics statistics = new LoadStatistics();
+        ResourceSampler sampler = new ResourceSampler();
+        PinningRecorder pinningRecorder = isVirtualThreadsCheck ? new PinningRecorder() : null;
+        List<Bot> bots = Collections.synchronizedList(new ArrayList<>());
+        List<Socket> stalledSockets = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> games = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failedRoomsCount = new AtomicInteger();
+
+        if (transport != null) {
+            System.out.printf("Транспорт сервера: %s.%n", transport);
+        }
+        System.out.printf("Ботов: %d в %d комнатах по %d игрока(-ов), зависших клиентов в комнате: %d.%n",
+                roomsCount * botsPerRoom, roomsCount, roomSize, stalledPerRoom);
+        if (pinningRecorder != null) {
+            pinningRecorder.start();
+        }
+        sampler.start();
+        long startNanos = System.nanoTime();
+
+        ExecutorService roomFiller = Executors.newFixedThreadPool(connectParallelism);
+        for (int roomIndex = 0; roomIndex < roomsCount; roomIndex++) {
+            int currentRoomIndex = roomIndex;
+            roomFiller.execute(() -> {
+                try {
+                    Bot owner = new Bot(HOST, port, "bot" + currentRoomIndex + "_0", shapesCount, requestTimeout,
+                            statistics);
+                    bots.add(owner);
+                    games.add(owner.play());
+                    owner.joinNewRoom().get(requestTimeout.toMillis(), TimeUnit.MILLISECONDS);
+
+                    for (int index = 1; index < botsPerRoom; index++) {
+                        Bot bot = new Bot(HOST, port, "bot" + currentRoomIndex + "_" + index, shapesCount,
+                                requestTimeout, statistics);
+                        bots.add(bot);
+                        games.add(bot.play());
+                        bot.join(owner.getRoomId());
+                    }
+                    for (int index = 0; index < stalledPerRoom; index++) {
+                        stalledSockets.add(connectStalled(port, owner.getRoomId(),
+                                "stalled" + currentRoomIndex + "_" + index));
+                    }
+                } catch (Exception exception) {
+                    failedRoomsCount.incrementAndGet();
+                }
+            });
+        }
+        roomFiller.shutdown();
+        roomFiller.awaitTermination(1, TimeUnit.HOURS);
+
+        Duration gameTimeout = sessionDuration.plus(requestTimeout).plus(requestTimeout);
+        boolean isCompleted = true;
+        try {
+            CompletableFuture.allOf(games.toArray(CompletableFuture[]::new))
+                    .get(gameTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException exception) {
+            isCompleted = false;
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        sampler.stop();
+
+        System.out.println();
+        statistics.print(System.out, elapsedNanos);
+        double cpuCores = (double) sampler.getCpuNanos() / elapsedNanos;
+        System.out.printf("Наибольший объём занятой кучи: %.1f МиБ, наибольшее количество потоков: %d, "
+                        + "занято ядер в среднем: %.2f.%n",
+                sampler.getMaxUsedHeap() / (1024.0 * 1024.0), sampler.getMaxThreadsCount(), cpuCores);
+        if (server != null) {
+            System.out.printf("Отброшено сервером сообщений: %d.%n", server.getDroppedMessagesCount());
+        }
+        if (failedRoomsCount.get() > 0) {
+            System.out.printf("Не удалось заполнить комнат: %d.%n", failedRoomsCount.get());
+        }
+        if (!isCompleted) {
+            System.out.printf("Не все игры завершились за %d с.%n", gameTimeout.toSeconds());
+        }
+        long pinnedEventsCount = pinningRecorder != null ? pinningRecorder.stop(System.out) : 0;
+
+        for (Bot bot : bots) {
+            bot.close();
+        }
+        for (Socket socket : stalledSockets) {
+            socket.close();
+        }
+        if (server != null) {
+            server.shutdown();
+        }
+        if (journal != null) {
+            journal.close();
+            System.out.printf("Отброшено записей журнала матчей: %d.%n", journal.getDroppedEventsCount());
+        }
+
+        return new RunSummary(transport, roomsCount * roomSize, cpuCores,
+                statistics.getResponseLatencyAtQuantile(0.99),
+                isCompleted && failedRoomsCount.get() == 0 && pinnedEventsCount == 0);
+    }
+
+    /**
+     * Открывает сервер с указанным транспортом.
+     *
+     * @param transport {@code blocking}, {@code nio} или {@code null} для выбора системными свойствами,
+     *                  как в {@link Server#open(int, int)};
+     * @param port      порт сервера;
+     * @param backlog   длина очереди соединений, ещё не принятых сервером;
+     * @return сервер, готовый к запуску.
+     * @throws IOException в случае, если не удалось занять порт.
+     */
+    private static Server openServer(String transport, int port, int backlog) throws IOException {
+        if (transport == null) {
+            return Server.open(port, backlog);
+        }
+
+        return switch (transport) {
+            case BLOCKING_TRANSPORT -> new Server(new ServerSocket(port, backlog));
+            case NIO_TRANSPORT -> {
+                ServerSocketChannel serverChannel = ServerSocketChannel.open();
+                serverChannel.bind(new InetSocketAddress(port), backlog);
+                yield new Server(serverChannel, Integer.getInteger(Server.IO_THREADS_PROPERTY,
+                        Runtime.getRuntime().availableProcessors()));
+            }
+            default -> throw new IllegalArgumentException("Unknown transport: " + transport);
+        };
+    }
+
+    /**
+     * Подключает клиента, который регистрируется в комнате и больше не читает сообщения сервера.
+     *
+     * @param port     порт сервера;
+     * @param roomId   идентификатор комнаты;
+     * @param nickname никнейм клиента;
+     * @return сокет клиента.
+     * @throws IOException в случае, если не удалось подключиться к серверу.
+     */
+    private static Socket connectStalled(int port, String roomId, String nickname) throws IOException {
+        Socket socket = new Socket(HOST, port);
+        JSONObject container = new JSONObject().put("room", roomId).put("nickname", nickname)
+                .put("codecs", new JSONArray().put(MessageCodecs.JSON.getName()));
+        ByteBuffer data = MessageCodecs.JSON.encode(new Message("registration", container.toString()));
+
+        OutputStream stream = socket.getOutputStream();
+        stream.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        stream.flush();
+        return socket;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String argument : args) {
+            int separatorIndex = argument.indexOf('=');
+            if (!argument.startsWith("--") || separatorIndex < 0) {
+                throw new IllegalArgumentException("Expected argument in --key=value form: " + argument);
+            }
+
+            options.put(argument.substring(2, separatorIndex), argument.substring(separatorIndex + 1));
+        }
+
+        return options;
+    }
+
+    private static int getInt(Map<String, String> options, String key, int defaultValue) {
+        String value = options.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Итоги одного нагрузочного теста.
+     *
+     * @param transport               транспорт сервера или {@code null}, если он выбран системными свойствами;
+     * @param connectionsCount        количество одновременно открытых соединений ботов и зависших клиентов;
+     * @param cpuCores                среднее количество ядер, занятых процессом во время теста;
+     * @param responseLatencyP99Nanos 99-й перцентиль задержки всех ответов в наносекундах;
+     * @param isSuccessful            заполнены ли все комнаты и завершены ли все игры;
+     */
+    private record RunSummary(String transport, int connectionsCount, double cpuCores, long responseLatencyP99Nanos,
+                              boolean isSuccessful) {
+    }
+
+    /**
+     * Записывает средствами JFR случаи, когда виртуальный поток заблокировался, не освободив поток-носитель,
+     * например ожидая ввода-вывода внутри блока {@code synchronized}. Порог длительности не задаётся,
+     * поэтому учитывается каждый такой случай.
+     */
+    private static final class PinningRecorder {
+        private static final String PINNED_EVENT_NAME = "jdk.VirtualThreadPinned";
+
+        /**
+         * Количество случаев и кадров стека каждого из них, печатаемых в отчёте.
+         */
+        private static final int PRINTED_EVENTS_COUNT = 5;
+        private static final int PRINTED_FRAMES_COUNT = 32;
+
+        private final Recording recording = new Recording();
+
+        void start() {
+            recording.enable(PINNED_EVENT_NAME).withThreshold(Duration.ZERO).withStackTrace();
+            recording.start();
+        }
+
+        /**
+         * Останавливает запись и печатает количество случаев и стеки первых из них.
+         *
+         * @param out поток вывода отчёта;
+         * @return количество записанных случаев.
+         * @throws IOException в случае, если не удалось сохранить или прочитать запись.
+         */
+        long stop(PrintStream out) throws IOException {
+            recording.stop();
+            Path recordingPath = Files.createTempFile("jigsaw-pinning", ".jfr");
+            try {
+                recording.dump(recordingPath);
+
+                long pinnedEventsCount = 0;
+                for (RecordedEvent event : RecordingFile.readAllEvents(recordingPath)) {
+                    if (!PINNED_EVENT_NAME.equals(event.getEventType().getName())) {
+                        continue;
+                    }
+
+                    if (pinnedEventsCount++ < PRINTED_EVENTS_COUNT) {
+                        out.printf("Поток-носитель закреплён на %.3f мс:%n", event.getDuration().toNanos() / 1e6);
+                        List<RecordedFrame> frames = event.getStackTrace() != null
+                                ? event.getStackTrace().getFrames() : List.of();
+                        for (RecordedFrame frame : frames.subList(0, Math.min(frames.size(), PRINTED_FRAMES_COUNT))) {
+                            out.printf("    %s.%s:%d%n", frame.getMethod().getType().getName(),
+                                    frame.getMethod().getName(), frame.getLineNumber());
+                        }
+                    }
+                }
+
+                out.printf("Закреплений потоков-носителей: %d.%n", pinnedEventsCount);
+                return pinnedEventsCount;
+            } finally {
+                recording.close();
+                Files.deleteIfExists(recordingPath);
+            }
+        }
+    }
+
+    /**
+     * Периодически замеряет занятый объём кучи и количество потоков процесса, а также время процессора,
+     * затраченное процессом между запуском и остановкой замеров.
+     */
+    private static final class ResourceSampler {
+        private static final long PERIOD_MILLIS = 100;
+
+        private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        private final AtomicLong maxUsedHeap = new AtomicLong();
+        private final AtomicLong maxThreadsCount = new AtomicLong();
+
+        private final com.sun.management.OperatingSystemMXBean operatingSystem =
+                ManagementFactory.getPlatformMXBean(com.sun.management.OperatingSystemMXBean.class);
+        private long startCpuNanos;
+        private long cpuNanos;
+
+        void start() {
+            startCpuNanos = operatingSystem.getProcessCpuTime();
+            executor.scheduleAtFixedRate(this::sample, 0, PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        void stop() {
+            executor.shutdownNow();
+            sample();
+            cpuNanos = operatingSystem.getProcessCpuTime() - startCpuNanos;
+        }
+
+        /**
+         * @return время процессора, затраченное всеми потоками процесса за время замеров.
+         */
+        long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        long getMaxUsedHeap() {
+            return maxUsedHeap.get();
+        }
+
+        long getMaxThreadsCount() {
+            return maxThreadsCount.get();
+        }
+
+        private void sample() {
+            Runtime runtime = Runtime.getRuntime();
+            maxUsedHeap.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+            maxThreadsCount.accumulateAndGet(Thread.activeCount(), Math::max);
+        }
+    }
+}
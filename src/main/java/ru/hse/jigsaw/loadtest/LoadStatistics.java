@@ -0,0 +1,104 @@
+package ru.hse.jigsaw.loadtest;
+
+import ru.hse.jigsaw.model.metrics.LatencyHistogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Измерения нагрузочного теста: задержки ответов по ключам запросов, количество полученных событий
+ * и время установки соединения.
+ */
+final class LoadStatistics {
+    private final Map<String, LatencyHistogram> responseLatencies = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> events = new ConcurrentHashMap<>();
+    private final LatencyHistogram connectionSetup = new LatencyHistogram();
+
+    /**
+     * Задержки ответов на запросы с любыми ключами.
+     */
+    private final LatencyHistogram allResponses = new LatencyHistogram();
+
+    void recordResponse(String key, long nanos) {
+        responseLatencies.computeIfAbsent(key, ignored -> new LatencyHistogram()).record(nanos);
+        allResponses.record(nanos);
+    }
+
+    /**
+     * @param quantile квантиль от 0 до 1;
+     * @return задержка ответов на запросы с любыми ключами, не превышенная заданной долей ответов, в наносекундах.
+     */
+    long getResponseLatencyAtQuantile(double quantile) {
+        return allResponses.getValueAtQuantile(quantile);
+    }
+
+    void recordFailure(String key) {
+        failures.computeIfAbsent(key, ignored -> new LongAdder()).increment();
+    }
+
+    void recordEvent(String key) {
+        events.computeIfAbsent(key, ignored -> new LongAdder()).increment();
+    }
+
+    /**
+     * @param nanos время от открытия соединения до получения первого ответа после регистрации;
+     */
+    void recordConnectionSetup(long nanos) {
+        connectionSetup.record(nanos);
+    }
+
+    /**
+     * Печатает отчёт о пропускной способности и задержках.
+     *
+     * @param out          поток вывода отчёта;
+     * @param elapsedNanos длительность теста;
+     */
+    void print(PrintStream out, long elapsedNanos) {
+        double elapsedSeconds = elapsedNanos / 1e9;
+        long messagesCount = 0;
+
+        out.printf("%-22s %10s %10s %10s %10s %10s %10s %8s%n",
+                "ответ", "кол-во", "в секунду", "p50, мс", "p99, мс", "p999, мс", "макс, мс", "ошибок");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(responseLatencies).entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            LongAdder failuresCount = failures.get(entry.getKey());
+            messagesCount += histogram.getTotalCount();
+
+            out.printf("%-22s %10d %10.1f %10.3f %10.3f %10.3f %10.3f %8d%n", entry.getKey(),
+                    histogram.getTotalCount(), histogram.getTotalCount() / elapsedSeconds,
+                    toMillis(histogram.getValueAtQuantile(0.5)), toMillis(histogram.getValueAtQuantile(0.99)),
+                    toMillis(histogram.getValueAtQuantile(0.999)), toMillis(histogram.getMaxValue()),
+                    failuresCount == null ? 0 : failuresCount.sum());
+        }
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(failures).entrySet()) {
+            if (!responseLatencies.containsKey(entry.getKey())) {
+                out.printf("%-22s %10d %10s %10s %10s %10s %10s %8d%n", entry.getKey(), 0, "-", "-", "-", "-", "-",
+                        entry.getValue().sum());
+            }
+        }
+
+        out.println();
+        out.printf("%-22s %10s %10s%n", "событие", "кол-во", "в секунду");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(events).entrySet()) {
+            long count = entry.getValue().sum();
+            messagesCount += count;
+            out.printf("%-22s %10d %10.1f%n", entry.getKey(), count, count / elapsedSeconds);
+        }
+
+        out.println();
+        out.printf("Установка соединения: p50 %.3f мс, p99 %.3f мс, p999 %.3f мс, макс %.3f мс (соединений: %d).%n",
+                toMillis(connectionSetup.getValueAtQuantile(0.5)), toMillis(connectionSetup.getValueAtQuantile(0.99)),
+                toMillis(connectionSetup.getValueAtQuantile(0.999)), toMillis(connectionSetup.getMaxValue()),
+                connectionSetup.getTotalCount());
+        out.printf("Всего сообщений: %d за %.2f с (%.1f в секунду).%n", messagesCount, elapsedSeconds,
+                messagesCount / elapsedSeconds);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,178 @@
+package ru.hse.jigsaw.model.board;
+
+import java.util.Arrays;
+
+/**
+ * Модель игровой зоны: занятость ячеек, хранимая в упакованных словах {@code long}.
+ * <p>
+ * Ячейка {@code (row, column)} соответствует биту {@code row * columns + column}, поэтому зона 9x9
+ * умещается в два слова. Фигуры накладываются на зону в виде {@link ShapeMask}: проверка размещения
+ * и заполнение ячеек сводятся к нескольким операциям AND и OR над словами.
+ * <p>
+ * Класс не потокобезопасен: модель изменяется потоком, отображающим игровую зону.
+ */
+public final class Board {
+    private final int rows;
+    private final int columns;
+    private final long[] words;
+
+    /**
+     * Биты последнего слова, соответствующие ячейкам зоны.
+     */
+    private final long lastWordMask;
+
+    /**
+     * @param rows    количество строк;
+     * @param columns количество столбцов;
+     */
+    public Board(int rows, int columns) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("Board must contain at least one cell");
+        }
+
+        this.rows = rows;
+        this.columns = columns;
+
+        int cellsCount = rows * columns;
+        words = new long[(cellsCount + Long.SIZE - 1) / Long.SIZE];
+        lastWordMask = cellsCount % Long.SIZE == 0 ? -1L : (1L << cellsCount) - 1;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    long[] getWords() {
+        return words;
+    }
+
+    /**
+     * @param row    строка ячейки;
+     * @param column столбец ячейки;
+     * @return {@code true}, если ячейка занята блоком фигуры.
+     */
+    public boolean isOccupied(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IndexOutOfBoundsException(String.format("Cell (%d;%d) is out of the board", row, column));
+        }
+
+        int bit = row * columns + column;
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Проверяет, может ли фигура быть размещена в зоне.
+     *
+     * @param mask   маска фигуры;
+     * @param row    строка ячейки, в которую попадает начало координат фигуры;
+     * @param column столбец ячейки, в которую попадает начало координат фигуры;
+     * @return {@code true}, если все блоки фигуры попадают на свободные ячейки зоны.
+     */
+    public boolean canPlace(ShapeMask mask, int row, int column) {
+        int offset = getOffset(mask, row, column);
+        if (offset < 0) {
+            return false;
+        }
+
+        long[] maskWords = mask.getWords();
+        int wordIndex = offset >>> 6;
+        int shift = offset & 63;
+
+        long carry = 0;
+        for (int index = 0; index < maskWords.length; index++) {
+            long maskWord = maskWords[index];
+            if ((words[wordIndex + index] & (maskWord << shift | carry)) != 0) {
+                return false;
+            }
+            carry = shift == 0 ? 0 : maskWord >>> (Long.SIZE - shift);
+        }
+
+        return carry == 0 || (words[wordIndex + maskWords.length] & carry) == 0;
+    }
+
+    /**
+     * Размещает фигуру в зоне, если все её блоки попадают на свободные ячейки.
+     *
+     * @param mask   маска фигуры;
+     * @param row    строка ячейки, в которую попадает начало координат фигуры;
+     * @param column столбец ячейки, в которую попадает начало координат фигуры;
+     * @return {@code true}, если фигура размещена; иначе зона не изменяется.
+     */
+    public boolean place(ShapeMask mask, int row, int column) {
+        if (!canPlace(mask, row, column)) {
+            return false;
+        }
+
+        long[] maskWords = mask.getWords();
+        int offset = getOffset(mask, row, column);
+        int wordIndex = offset >>> 6;
+        int shift = offset & 63;
+
+        long carry = 0;
+        for (int index = 0; index < maskWords.length; index++) {
+            long maskWord = maskWords[index];
+            words[wordIndex + index] |= maskWord << shift | carry;
+            carry = shift == 0 ? 0 : maskWord >>> (Long.SIZE - shift);
+        }
+        if (carry != 0) {
+            words[wordIndex + maskWords.length] |= carry;
+        }
+
+        return true;
+    }
+
+    /**
+     * Освобождает все ячейки зоны.
+     */
+    public void clear() {
+        Arrays.fill(words, 0);
+    }
+
+    /**
+     * @return {@code true}, если заняты все ячейки зоны.
+     */
+    public boolean isFull() {
+        for (int index = 0; index < words.length - 1; index++) {
+            if (words[index] != -1L) {
+                return false;
+            }
+        }
+
+        return words[words.length - 1] == lastWordMask;
+    }
+
+    /**
+     * @return количество занятых ячеек.
+     */
+    public int getOccupiedCount() {
+        int occupiedCount = 0;
+        for (long word : words) {
+            occupiedCount += Long.bitCount(word);
+        }
+
+        return occupiedCount;
+    }
+
+    /**
+     * @return номер бита, в который попадает левый верхний угол маски, либо {@code -1},
+     * если фигура выходит за пределы зоны.
+     */
+    private int getOffset(ShapeMask mask, int row, int column) {
+        if (mask.getBoardColumns() != columns) {
+            throw new IllegalArgumentException(String.format(
+                    "Mask is built for %d columns, board has %d", mask.getBoardColumns(), columns));
+        }
+
+        int top = row + mask.getRowOffset();
+        int left = column + mask.getColumnOffset();
+        if (top < 0 || left < 0 || top + mask.getHeight() > rows || left + mask.getWidth() > columns) {
+            return -1;
+        }
+
+        return top * columns + left;
+    }
+}
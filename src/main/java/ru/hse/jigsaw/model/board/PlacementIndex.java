@@ -0,0 +1,152 @@
+package ru.hse.jigsaw.model.board;
+
+/**
+ * Индекс допустимых размещений одной фигуры в игровой зоне.
+ * <p>
+ * Для каждой ячейки зоны индекс хранит бит: может ли в неё попасть левый верхний угол прямоугольника,
+ * описанного вокруг фигуры. Биты упакованы так же, как ячейки {@link Board}, поэтому индекс строится
+ * пересечением свободных ячеек зоны, сдвинутых на номер каждого блока маски, — по одному проходу по словам
+ * на блок. После этого проверка размещения при любой точке захвата фигуры сводится к проверке одного бита.
+ * <p>
+ * Индекс отражает состояние зоны на момент построения; о каждой фигуре, размещённой в зоне после этого,
+ * ему сообщается через {@link PlacementIndex#onPlaced(ShapeMask, int, int)}. Класс не потокобезопасен.
+ */
+public final class PlacementIndex {
+    private final Board board;
+    private final ShapeMask mask;
+
+    /**
+     * Номера бит блоков маски относительно её левого верхнего угла.
+     */
+    private final int[] cellOffsets;
+
+    private final long[] legalAnchors;
+
+    /**
+     * @param board игровая зона;
+     * @param mask  маска фигуры, построенная для этой зоны;
+     */
+    public PlacementIndex(Board board, ShapeMask mask) {
+        if (mask.getBoardColumns() != board.getColumns()) {
+            throw new IllegalArgumentException(String.format(
+                    "Mask is built for %d columns, board has %d", mask.getBoardColumns(), board.getColumns()));
+        }
+
+        this.board = board;
+        this.mask = mask;
+        cellOffsets = getCellOffsets(mask);
+
+        long[] occupied = board.getWords();
+        legalAnchors = getAnchorsRange(board, mask);
+        for (int cellOffset : cellOffsets) {
+            int wordShift = cellOffset >>> 6;
+            int shift = cellOffset & 63;
+
+            for (int index = 0; index < legalAnchors.length; index++) {
+                long free = ~getWord(occupied, index + wordShift) >>> shift;
+                if (shift != 0) {
+                    free |= ~getWord(occupied, index + wordShift + 1) << (Long.SIZE - shift);
+                }
+                legalAnchors[index] &= free;
+            }
+        }
+    }
+
+    public ShapeMask getMask() {
+        return mask;
+    }
+
+    /**
+     * @param row    строка ячейки, в которую попадает начало координат фигуры;
+     * @param column столбец ячейки, в которую попадает начало координат фигуры;
+     * @return {@code true}, если все блоки фигуры попадают на свободные ячейки зоны.
+     */
+    public boolean isLegal(int row, int column) {
+        int top = row + mask.getRowOffset();
+        int left = column + mask.getColumnOffset();
+        if (top < 0 || left < 0 || top >= board.getRows() || left >= board.getColumns()) {
+            return false;
+        }
+
+        int anchor = top * board.getColumns() + left;
+        return (legalAnchors[anchor >>> 6] & (1L << anchor)) != 0;
+    }
+
+    /**
+     * @return количество допустимых размещений фигуры.
+     */
+    public int getLegalCount() {
+        int legalCount = 0;
+        for (long word : legalAnchors) {
+            legalCount += Long.bitCount(word);
+        }
+
+        return legalCount;
+    }
+
+    /**
+     * Исключает размещения, ставшие недопустимыми после размещения в зоне другой фигуры.
+     * Проверяются только размещения, задевающие занятые ею ячейки.
+     *
+     * @param placed маска размещённой фигуры;
+     * @param row    строка ячейки, в которую попало начало координат размещённой фигуры;
+     * @param column столбец ячейки, в которую попало начало координат размещённой фигуры;
+     */
+    public void onPlaced(ShapeMask placed, int row, int column) {
+        int placedOffset = (row + placed.getRowOffset()) * board.getColumns() + column + placed.getColumnOffset();
+
+        for (int placedCellOffset : getCellOffsets(placed)) {
+            int cell = placedOffset + placedCellOffset;
+            for (int cellOffset : cellOffsets) {
+                int anchor = cell - cellOffset;
+                if (anchor >= 0) {
+                    legalAnchors[anchor >>> 6] &= ~(1L << anchor);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return биты ячеек, в которые может попасть левый верхний угол маски, не выводя фигуру за пределы зоны.
+     */
+    private static long[] getAnchorsRange(Board board, ShapeMask mask) {
+        long[] anchors = new long[board.getWords().length];
+        int lastTop = board.getRows() - mask.getHeight();
+        int lastLeft = board.getColumns() - mask.getWidth();
+
+        for (int top = 0; top <= lastTop; top++) {
+            for (int left = 0; left <= lastLeft; left++) {
+                int anchor = top * board.getColumns() + left;
+                anchors[anchor >>> 6] |= 1L << anchor;
+            }
+        }
+
+        return anchors;
+    }
+
+    private static int[] getCellOffsets(ShapeMask mask) {
+        long[] words = mask.getWords();
+
+        int cellsCount = 0;
+        for (long word : words) {
+            cellsCount += Long.bitCount(word);
+        }
+
+        int[] offsets = new int[cellsCount];
+        int position = 0;
+        for (int index = 0; index < words.length; index++) {
+            for (long word = words[index]; word != 0; word &= word - 1) {
+                offsets[position++] = index * Long.SIZE + Long.numberOfTrailingZeros(word);
+            }
+        }
+
+        return offsets;
+    }
+
+    /**
+     * @return слово зоны либо слово, в котором все ячейки заняты, если номер выходит за пределы зоны.
+     */
+    private static long getWord(long[] words, int index) {
+        return index < words.length ? words[index] : -1L;
+    }
+}
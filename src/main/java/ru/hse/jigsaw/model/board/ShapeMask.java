@@ -0,0 +1,118 @@
+package ru.hse.jigsaw.model.board;
+
+import java.util.Arrays;
+
+/**
+ * Битовая маска фигуры для игровой зоны заданной ширины.
+ * <p>
+ * Блоки фигуры упакованы так же, как ячейки {@link Board}: построчно, по {@code boardColumns} бит на строку,
+ * начиная с левого верхнего угла прямоугольника, описанного вокруг фигуры. Поэтому маска, сдвинутая на номер
+ * ячейки, в которую попадает этот угол, накладывается на слова игровой зоны без перебора блоков.
+ */
+public final class ShapeMask {
+    private final int boardColumns;
+
+    /* Смещение описанного прямоугольника относительно начала координат фигуры */
+    private final int rowOffset;
+    private final int columnOffset;
+
+    /* Размеры описанного прямоугольника */
+    private final int height;
+    private final int width;
+
+    private final long[] words;
+
+    private ShapeMask(int boardColumns, int rowOffset, int columnOffset, int height, int width, long[] words) {
+        this.boardColumns = boardColumns;
+        this.rowOffset = rowOffset;
+        this.columnOffset = columnOffset;
+        this.height = height;
+        this.width = width;
+        this.words = words;
+    }
+
+    /**
+     * Строит маску фигуры.
+     *
+     * @param cells        координаты блоков фигуры в виде пар {@code {строка, столбец}};
+     * @param boardColumns количество столбцов игровой зоны, для которой строится маска;
+     * @return маска фигуры.
+     */
+    public static ShapeMask of(int[][] cells, int boardColumns) {
+        if (cells.length == 0) {
+            throw new IllegalArgumentException("Shape must contain at least one cell");
+        }
+
+        int minRow = Integer.MAX_VALUE;
+        int minColumn = Integer.MAX_VALUE;
+        int maxRow = Integer.MIN_VALUE;
+        int maxColumn = Integer.MIN_VALUE;
+        for (int[] cell : cells) {
+            minRow = Math.min(minRow, cell[0]);
+            minColumn = Math.min(minColumn, cell[1]);
+            maxRow = Math.max(maxRow, cell[0]);
+            maxColumn = Math.max(maxColumn, cell[1]);
+        }
+
+        int height = maxRow - minRow + 1;
+        int width = maxColumn - minColumn + 1;
+        if (width > boardColumns) {
+            throw new IllegalArgumentException(String.format(
+                    "Shape of width %d does not fit into a board of %d columns", width, boardColumns));
+        }
+
+        long[] words = new long[((height - 1) * boardColumns + width + Long.SIZE - 1) / Long.SIZE];
+        for (int[] cell : cells) {
+            int bit = (cell[0] - minRow) * boardColumns + (cell[1] - minColumn);
+            words[bit >>> 6] |= 1L << bit;
+        }
+
+        return new ShapeMask(boardColumns, minRow, minColumn, height, width, words);
+    }
+
+    public int getBoardColumns() {
+        return boardColumns;
+    }
+
+    public int getRowOffset() {
+        return rowOffset;
+    }
+
+    public int getColumnOffset() {
+        return columnOffset;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    long[] getWords() {
+        return words;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ShapeMask mask)) {
+            return false;
+        }
+
+        return boardColumns == mask.boardColumns && rowOffset == mask.rowOffset
+                && columnOffset == mask.columnOffset && height == mask.height && width == mask.width
+                && Arrays.equals(words, mask.words);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = boardColumns;
+        result = 31 * result + rowOffset;
+        result = 31 * result + columnOffset;
+        return 31 * result + Arrays.hashCode(words);
+    }
+}
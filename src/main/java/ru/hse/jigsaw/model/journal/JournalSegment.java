@@ -0,0 +1,372 @@
+package ru.hse.jigsaw.model.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Сегмент журнала матчей — файл фиксированного размера, отображённый в память, в который записи
+ * дописываются подряд, и файл его разреженного индекса.
+ * <p>
+ * Запись сегмента: длина остатка записи, контрольная сумма CRC32C остатка, идентификатор сессии, время,
+ * код типа, идентификатор игрока и полезная нагрузка (строки — длина в байтах, -1 для {@code null},
+ * и байты UTF-8). Нулевая длина означает конец записанных данных: файл создаётся заполненным нулями.
+ * <p>
+ * Индекс хранит первую запись каждой сессии в сегменте (идентификатор сессии, время и смещение),
+ * поэтому хронология сессии читается, начиная с её первой записи и только в сегментах, где она есть.
+ * <p>
+ * Дописывает сегмент единственный поток записи журнала; читать его могут любые потоки.
+ */
+final class JournalSegment {
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * Размер полей записи, не считая строк: длина, контрольная сумма, идентификатор сессии, время,
+     * код типа и длины двух строк.
+     */
+    private static final int FIXED_FIELDS_SIZE = Integer.BYTES * 2 + Long.BYTES * 2 + 1 + Integer.BYTES * 2;
+
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES * 2 + Integer.BYTES;
+
+    private static final int NULL_STRING_LENGTH = -1;
+
+    /**
+     * Элемент разреженного индекса — первая запись сессии в сегменте.
+     *
+     * @param sessionId       идентификатор сессии;
+     * @param timestampMillis время записи;
+     * @param position        смещение записи в сегменте;
+     */
+    record IndexEntry(long sessionId, long timestampMillis, int position) {
+    }
+
+    private final Path logPath;
+    private final Path indexPath;
+    private final long ordinal;
+
+    /**
+     * Первые записи сессий в сегменте в порядке записи. Защищены блокировкой сегмента.
+     */
+    private final Map<Long, IndexEntry> firstEntries = new LinkedHashMap<>();
+
+    /**
+     * Длина записанных данных. Записи за этой границей читателям не видны.
+     */
+    private volatile int length;
+
+    /**
+     * Отображение файла для записи и канал индекса или {@code null}, если сегмент закрыт для записи.
+     */
+    private MappedByteBuffer buffer;
+    private FileChannel indexChannel;
+
+    private final CRC32C checksum = new CRC32C();
+    private final ByteBuffer indexEntryBuffer = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+
+    private JournalSegment(Path logPath) {
+        this.logPath = logPath;
+        String baseName = logPath.getFileName().toString();
+        baseName = baseName.substring(0, baseName.length() - LOG_SUFFIX.length());
+        indexPath = logPath.resolveSibling(baseName + INDEX_SUFFIX);
+        ordinal = Long.parseLong(baseName);
+    }
+
+    /**
+     * @param path файл в каталоге журнала;
+     * @return является ли файл сегментом журнала.
+     */
+    static boolean isSegmentFile(Path path) {
+        return path.getFileName().toString().matches("\\d{20}" + LOG_SUFFIX);
+    }
+
+    long getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Создаёт пустой сегмент, открытый для записи.
+     *
+     * @param directory каталог журнала;
+     * @param ordinal   порядковый номер сегмента, задающий имя его файла;
+     * @param capacity  размер файла сегмента в байтах;
+     * @return новый сегмент.
+     * @throws IOException в случае, если не удалось создать файлы сегмента.
+     */
+    static JournalSegment create(Path directory, long ordinal, int capacity) throws IOException {
+        JournalSegment segment = new JournalSegment(directory.resolve(String.format("%020d%s", ordinal, LOG_SUFFIX)));
+        try (FileChannel logChannel = FileChannel.open(segment.logPath, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment.buffer = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        segment.indexChannel = FileChannel.open(segment.indexPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return segment;
+    }
+
+    /**
+     * Открывает существующий сегмент только для чтения. Если файл индекса отсутствует, индекс
+     * восстанавливается по записям сегмента.
+     *
+     * @param logPath файл сегмента;
+     * @return сегмент.
+     * @throws IOException в случае, если не удалось прочитать сегмент.
+     */
+    static JournalSegment openSealed(Path logPath) throws IOException {
+        JournalSegment segment = new JournalSegment(logPath);
+        segment.length = (int) Files.size(logPath);
+
+        if (!Files.exists(segment.indexPath)) {
+            segment.scan(segment.mapForReading(), 0, (position, event) -> {
+                segment.addIndexEntry(event, position);
+                return true;
+            });
+            return segment;
+        }
+
+        ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(segment.indexPath));
+        while (index.remaining() >= INDEX_ENTRY_SIZE) {
+            IndexEntry entry = new IndexEntry(index.getLong(), index.getLong(), index.getInt());
+            segment.firstEntries.putIfAbsent(entry.sessionId(), entry);
+        }
+        return segment;
+    }
+
+    /**
+     * Открывает для дописывания последний сегмент журнала: находит конец записанных данных, отбрасывая
+     * запись, прерванную аварийным завершением, и перестраивает индекс.
+     *
+     * @param logPath файл сегмента;
+     * @return сегмент, открытый для записи.
+     * @throws IOException в случае, если не удалось открыть файлы сегмента.
+     */
+    static JournalSegment recover(Path logPath) throws IOException {
+        JournalSegment segment = new JournalSegment(logPath);
+        try (FileChannel logChannel = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment.buffer = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, logChannel.size());
+        }
+
+        int end = segment.scan(segment.buffer.duplicate(), 0, (position, event) -> {
+            segment.addIndexEntry(event, position);
+            return true;
+        });
+        for (int position = end; position < segment.buffer.capacity(); position++) {
+            segment.buffer.put(position, (byte) 0);
+        }
+        segment.length = end;
+
+        segment.indexChannel = FileChannel.open(segment.indexPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        for (IndexEntry entry : segment.getIndexEntries()) {
+            segment.writeIndexEntry(entry);
+        }
+        return segment;
+    }
+
+    /**
+     * Дописывает запись в сегмент.
+     *
+     * @param event записываемая запись;
+     * @return {@code false}, если запись не помещается в сегмент.
+     * @throws IOException в случае, если не удалось дописать индекс.
+     */
+    boolean append(MatchEvent event) throws IOException {
+        byte[] playerId = encode(event.playerId());
+        byte[] payload = encode(event.payload());
+        int recordSize = FIXED_FIELDS_SIZE + getLength(playerId) + getLength(payload);
+
+        int position = length;
+        if (recordSize > buffer.capacity() - position) {
+            return false;
+        }
+
+        buffer.position(position + Integer.BYTES * 2);
+        buffer.putLong(event.sessionId()).putLong(event.timestampMillis()).put(event.type().getCode());
+        putString(playerId);
+        putString(payload);
+
+        checksum.reset();
+        checksum.update(buffer.duplicate().position(position + Integer.BYTES * 2).limit(position + recordSize));
+        buffer.putInt(position + Integer.BYTES, (int) checksum.getValue());
+        buffer.putInt(position, recordSize - Integer.BYTES);
+
+        IndexEntry entry = addIndexEntry(event, position);
+        if (entry != null) {
+            writeIndexEntry(entry);
+        }
+
+        length = position + recordSize;
+        return true;
+    }
+
+    /**
+     * Сбрасывает записанные данные на диск и закрывает сегмент для записи.
+     *
+     * @throws IOException в случае, если не удалось закрыть файл индекса.
+     */
+    void seal() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+
+        buffer.force();
+        buffer = null;
+        indexChannel.force(false);
+        indexChannel.close();
+        indexChannel = null;
+    }
+
+    /**
+     * @param sessionId идентификатор сессии;
+     * @return первая запись сессии в сегменте или {@code null}, если записей сессии в сегменте нет.
+     */
+    synchronized IndexEntry findFirstEntry(long sessionId) {
+        return firstEntries.get(sessionId);
+    }
+
+    synchronized List<IndexEntry> getIndexEntries() {
+        return new ArrayList<>(firstEntries.values());
+    }
+
+    /**
+     * Читает записи сессии, начиная с её первой записи в сегменте.
+     *
+     * @param sessionId идентификатор сессии;
+     * @param timeline  список, в который добавляются записи сессии;
+     * @return {@code true}, если прочитана последняя запись сессии {@link MatchEventType#SESSION_FINISHED}.
+     * @throws IOException в случае, если не удалось прочитать сегмент.
+     */
+    boolean readSession(long sessionId, List<MatchEvent> timeline) throws IOException {
+        IndexEntry firstEntry = findFirstEntry(sessionId);
+        if (firstEntry == null) {
+            return false;
+        }
+
+        boolean[] isFinished = new boolean[1];
+        scan(mapForReading(), firstEntry.position(), (position, event) -> {
+            if (event.sessionId() == sessionId) {
+                timeline.add(event);
+                isFinished[0] = event.type() == MatchEventType.SESSION_FINISHED;
+            }
+            return !isFinished[0];
+        });
+        return isFinished[0];
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        /**
+         * @return {@code false}, чтобы прекратить чтение.
+         */
+        boolean visit(int position, MatchEvent event);
+    }
+
+    /**
+     * Последовательно читает записи, пока не встретится конец данных, повреждённая запись
+     * или посетитель не прекратит чтение.
+     *
+     * @param view     записанные данные сегмента;
+     * @param position смещение первой читаемой записи;
+     * @param visitor  обработчик записей;
+     * @return смещение, на котором чтение остановилось.
+     */
+    private int scan(ByteBuffer view, int position, RecordVisitor visitor) {
+        CRC32C recordChecksum = new CRC32C();
+        int limit = view.limit();
+
+        while (limit - position >= FIXED_FIELDS_SIZE) {
+            int recordSize = view.getInt(position) + Integer.BYTES;
+            if (recordSize < FIXED_FIELDS_SIZE || recordSize > limit - position) {
+                break;
+            }
+
+            recordChecksum.reset();
+            recordChecksum.update(view.duplicate().position(position + Integer.BYTES * 2)
+                    .limit(position + recordSize));
+            if ((int) recordChecksum.getValue() != view.getInt(position + Integer.BYTES)) {
+                break;
+            }
+
+            ByteBuffer record = view.duplicate().position(position + Integer.BYTES * 2)
+                    .limit(position + recordSize);
+            MatchEventType type;
+            long sessionId = record.getLong();
+            long timestampMillis = record.getLong();
+            if ((type = MatchEventType.fromCode(record.get())) == null) {
+                break;
+            }
+            MatchEvent event = new MatchEvent(sessionId, timestampMillis, type, getString(record), getString(record));
+
+            if (!visitor.visit(position, event)) {
+                return position + recordSize;
+            }
+            position += recordSize;
+        }
+
+        return position;
+    }
+
+    private ByteBuffer mapForReading() throws IOException {
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(length, channel.size()));
+        }
+    }
+
+    /**
+     * @return добавленный элемент индекса или {@code null}, если у сессии уже есть запись в сегменте.
+     */
+    private synchronized IndexEntry addIndexEntry(MatchEvent event, int position) {
+        if (firstEntries.containsKey(event.sessionId())) {
+            return null;
+        }
+
+        IndexEntry entry = new IndexEntry(event.sessionId(), event.timestampMillis(), position);
+        firstEntries.put(event.sessionId(), entry);
+        return entry;
+    }
+
+    private void writeIndexEntry(IndexEntry entry) throws IOException {
+        indexEntryBuffer.clear();
+        indexEntryBuffer.putLong(entry.sessionId()).putLong(entry.timestampMillis()).putInt(entry.position()).flip();
+        while (indexEntryBuffer.hasRemaining()) {
+            indexChannel.write(indexEntryBuffer);
+        }
+    }
+
+    private void putString(byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(NULL_STRING_LENGTH);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length == NULL_STRING_LENGTH) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int getLength(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+}
@@ -0,0 +1,19 @@
+package ru.hse.jigsaw.model.journal;
+
+import java.time.Instant;
+
+/**
+ * Запись журнала матчей.
+ *
+ * @param sessionId       идентификатор игровой сессии, выданный {@link MatchJournal#newSessionId()};
+ * @param timestampMillis время записи в миллисекундах от начала эпохи;
+ * @param type            тип записи;
+ * @param playerId        идентификатор игрока, к которому относится запись, либо {@code null};
+ * @param payload         полезная нагрузка, как правило — объект в формате JSON, либо {@code null};
+ */
+public record MatchEvent(long sessionId, long timestampMillis, MatchEventType type, String playerId,
+                         String payload) {
+    public Instant getTimestamp() {
+        return Instant.ofEpochMilli(timestampMillis);
+    }
+}
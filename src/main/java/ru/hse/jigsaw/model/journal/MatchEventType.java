@@ -0,0 +1,68 @@
+package ru.hse.jigsaw.model.journal;
+
+/**
+ * Тип записи журнала матчей. Код типа хранится в журнале, поэтому коды существующих типов не изменяются.
+ */
+public enum MatchEventType {
+    /**
+     * Игрок зарегистрировался в комнате, ожидающей игры. Полезная нагрузка — никнейм игрока.
+     */
+    PLAYER_JOINED(1),
+
+    /**
+     * Игрок покинул комнату до окончания игры.
+     */
+    PLAYER_LEFT(2),
+
+    /**
+     * Игра началась. Полезная нагрузка — тело события {@code game_started} с идентификатором комнаты.
+     */
+    SESSION_STARTED(3),
+
+    /**
+     * Сервер выдал фигуры последовательности. Полезная нагрузка — объект с полями {@code from} и {@code count}.
+     */
+    SHAPE_SERVED(4),
+
+    /**
+     * Игрок сообщил свой результат. Полезная нагрузка — тело запроса {@code player_finished}.
+     */
+    PLAYER_FINISHED(5),
+
+    /**
+     * Изменились состояния игроков. Полезная нагрузка — тело события {@code players_info_changed}.
+     */
+    PLAYERS_INFO_CHANGED(6),
+
+    /**
+     * Игра окончена и подведены итоги. Полезная нагрузка — итоговые состояния игроков.
+     * Последняя запись сессии.
+     */
+    SESSION_FINISHED(7);
+
+    private static final MatchEventType[] typesByCode = new MatchEventType[8];
+
+    static {
+        for (MatchEventType type : values()) {
+            typesByCode[type.code] = type;
+        }
+    }
+
+    private final byte code;
+
+    MatchEventType(int code) {
+        this.code = (byte) code;
+    }
+
+    byte getCode() {
+        return code;
+    }
+
+    /**
+     * @param code код типа, прочитанный из журнала;
+     * @return тип записи или {@code null}, если код неизвестен.
+     */
+    static MatchEventType fromCode(byte code) {
+        return code > 0 && code < typesByCode.length ? typesByCode[code] : null;
+    }
+}
@@ -0,0 +1,289 @@
+package ru.hse.jigsaw.model.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Журнал матчей: хронология каждой сетевой игры (регистрации, выданные фигуры, результаты игроков
+ * и изменения их состояний) для разбора спорных результатов и аналитики.
+ * <p>
+ * Журнал состоит из сегментов фиксированного размера, отображённых в память; заполненный сегмент
+ * закрывается, и записи продолжаются в новом. Поток, обрабатывающий запрос, только ставит запись
+ * в очередь, а в сегмент её переносит отдельный поток записи, поэтому журнал не задерживает ответы сервера.
+ * Если очередь переполнена, запись отбрасывается и учитывается в {@link MatchJournal#getDroppedEventsCount()}.
+ * <p>
+ * Хронология сессии восстанавливается по разреженному индексу сегментов: читаются только сегменты,
+ * содержащие записи сессии, начиная с её первой записи в каждом из них.
+ */
+public final class MatchJournal implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(MatchJournal.class.getName());
+
+    /**
+     * Размер сегмента по умолчанию.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Наибольшее количество записей, ожидающих переноса в сегмент.
+     */
+    private static final int MAX_PENDING_EVENTS_COUNT = 1 << 16;
+
+    /**
+     * Время, на которое засыпает поток записи, опустошив очередь. Новая запись не будит поток, поэтому
+     * записи переносятся в сегмент пачками, а поток, обрабатывающий запрос, не тратит время на пробуждение.
+     */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Период проверки, перенесены ли записи в сегменты, при ожидании в {@link MatchJournal#flush()}.
+     */
+    private static final long FLUSH_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Path directory;
+    private final int segmentSize;
+
+    /**
+     * Сегменты в порядке записи; последний открыт для записи.
+     */
+    private final List<JournalSegment> segments = new CopyOnWriteArrayList<>();
+    private final AtomicLong lastSessionId = new AtomicLong();
+
+    /**
+     * Запись, ожидающая переноса в сегмент. Полезная нагрузка преобразуется в строку потоком записи.
+     */
+    private record PendingEvent(long sessionId, long timestampMillis, MatchEventType type, String playerId,
+                                Object payload) {
+        MatchEvent toMatchEvent() {
+            return new MatchEvent(sessionId, timestampMillis, type, playerId,
+                    payload != null ? payload.toString() : null);
+        }
+    }
+
+    private final Queue<PendingEvent> pendingEvents = new ConcurrentLinkedQueue<>();
+    private final AtomicLong queuedEventsCount = new AtomicLong();
+
+    /**
+     * Количество записей, извлечённых из очереди потоком записи. Изменяется только им.
+     */
+    private volatile long processedEventsCount = 0;
+    private final LongAdder droppedEventsCount = new LongAdder();
+
+    private final Thread writer;
+    private volatile boolean isClosed = false;
+
+    private MatchJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        Files.createDirectories(directory);
+        List<Path> segmentPaths;
+        try (Stream<Path> files = Files.list(directory)) {
+            segmentPaths = files.filter(JournalSegment::isSegmentFile).sorted().toList();
+        }
+
+        for (int index = 0; index < segmentPaths.size(); index++) {
+            Path segmentPath = segmentPaths.get(index);
+            segments.add(index < segmentPaths.size() - 1
+                    ? JournalSegment.openSealed(segmentPath) : JournalSegment.recover(segmentPath));
+        }
+        if (segments.isEmpty()) {
+            segments.add(JournalSegment.create(directory, 1, segmentSize));
+        }
+
+        for (JournalSegment segment : segments) {
+            for (JournalSegment.IndexEntry entry : segment.getIndexEntries()) {
+                lastSessionId.accumulateAndGet(entry.sessionId(), Math::max);
+            }
+        }
+
+        writer = new Thread(this::writeEvents, "jigsaw-match-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Открывает журнал в каталоге, создавая его при необходимости, с сегментами размера по умолчанию.
+     *
+     * @param directory каталог журнала;
+     * @return журнал, открытый для записи.
+     * @throws IOException в случае, если не удалось открыть или восстановить сегменты.
+     */
+    public static MatchJournal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param directory   каталог журнала;
+     * @param segmentSize размер новых сегментов в байтах;
+     * @return журнал, открытый для записи.
+     * @throws IOException в случае, если не удалось открыть или восстановить сегменты.
+     */
+    public static MatchJournal open(Path directory, int segmentSize) throws IOException {
+        if (segmentSize < 1) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+
+        return new MatchJournal(directory, segmentSize);
+    }
+
+    /**
+     * @return идентификатор новой игровой сессии, не встречавшийся в журнале.
+     */
+    public long newSessionId() {
+        return lastSessionId.incrementAndGet();
+    }
+
+    /**
+     * Ставит запись в очередь журнала, не дожидаясь её переноса в сегмент.
+     *
+     * @param sessionId идентификатор сессии;
+     * @param type      тип записи;
+     * @param playerId  идентификатор игрока или {@code null};
+     * @param payload   полезная нагрузка или {@code null}; в журнал записывается её строковое представление,
+     *                  которое получает поток записи, поэтому после передачи она не должна изменяться;
+     */
+    public void record(long sessionId, MatchEventType type, String playerId, Object payload) {
+        if (isClosed || queuedEventsCount.get() - processedEventsCount >= MAX_PENDING_EVENTS_COUNT) {
+            droppedEventsCount.increment();
+            return;
+        }
+
+        pendingEvents.add(new PendingEvent(sessionId, System.currentTimeMillis(), type, playerId, payload));
+        queuedEventsCount.incrementAndGet();
+    }
+
+    /**
+     * Дожидается переноса в сегменты всех записей, поставленных в очередь до вызова,
+     * после чего они видны методам чтения журнала.
+     */
+    public void flush() {
+        long queuedCount = queuedEventsCount.get();
+        while (processedEventsCount < queuedCount && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(FLUSH_POLL_NANOS);
+        }
+    }
+
+    /**
+     * Восстанавливает хронологию сессии по записям, уже перенесённым в сегменты.
+     *
+     * @param sessionId идентификатор сессии;
+     * @return записи сессии в порядке их записи.
+     * @throws IOException в случае, если не удалось прочитать сегмент.
+     */
+    public List<MatchEvent> getTimeline(long sessionId) throws IOException {
+        List<MatchEvent> timeline = new ArrayList<>();
+        for (JournalSegment segment : segments) {
+            if (segment.readSession(sessionId, timeline)) {
+                break;
+            }
+        }
+
+        return timeline;
+    }
+
+    /**
+     * Находит по индексу сессии, первая запись которых сделана в заданном промежутке времени.
+     *
+     * @param from начало промежутка включительно;
+     * @param to   конец промежутка, не включая его;
+     * @return идентификаторы сессий в порядке их первых записей.
+     */
+    public List<Long> findSessions(Instant from, Instant to) {
+        long fromMillis = from.toEpochMilli();
+        long toMillis = to.toEpochMilli();
+
+        Set<Long> seenSessions = new HashSet<>();
+        List<Long> sessions = new ArrayList<>();
+        for (JournalSegment segment : segments) {
+            for (JournalSegment.IndexEntry entry : segment.getIndexEntries()) {
+                if (seenSessions.add(entry.sessionId())
+                        && entry.timestampMillis() >= fromMillis && entry.timestampMillis() < toMillis) {
+                    sessions.add(entry.sessionId());
+                }
+            }
+        }
+
+        return sessions;
+    }
+
+    /**
+     * @return количество записей, отброшенных из-за переполнения очереди или закрытия журнала.
+     */
+    public long getDroppedEventsCount() {
+        return droppedEventsCount.sum();
+    }
+
+    /**
+     * Переносит в сегменты оставшиеся записи, сбрасывает их на диск и останавливает поток записи.
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        LockSupport.unpark(writer);
+
+        try {
+            writer.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeEvents() {
+        JournalSegment activeSegment = segments.get(segments.size() - 1);
+        try {
+            while (true) {
+                PendingEvent pendingEvent = pendingEvents.poll();
+                if (pendingEvent == null) {
+                    if (isClosed) {
+                        break;
+                    }
+
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+
+                MatchEvent event = pendingEvent.toMatchEvent();
+                if (!activeSegment.append(event)) {
+                    activeSegment.seal();
+                    activeSegment = JournalSegment.create(directory, activeSegment.getOrdinal() + 1, segmentSize);
+                    segments.add(activeSegment);
+
+                    if (!activeSegment.append(event)) {
+                        logger.log(Level.WARNING, String.format("Запись сессии %d не помещается в сегмент журнала.",
+                                event.sessionId()));
+                        droppedEventsCount.increment();
+                    }
+                }
+                processedEventsCount++;
+            }
+        } catch (IOException exception) {
+            logger.log(Level.SEVERE, "Возникла исключительная ситуация при записи журнала матчей:", exception);
+            isClosed = true;
+        } finally {
+            try {
+                activeSegment.seal();
+            } catch (IOException exception) {
+                logger.log(Level.SEVERE, "Возникла исключительная ситуация при закрытии журнала матчей:", exception);
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.hse.jigsaw.model.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасная гистограмма задержек с логарифмически-линейными интервалами: каждый интервал степени двойки
+ * разбит на {@link LatencyHistogram#SUB_BUCKETS_COUNT} равных частей, поэтому относительная погрешность
+ * перцентилей не превышает 1/32 при фиксированном объёме памяти. Запись не захватывает блокировок:
+ * счётчики интервалов разделены на полосы по потокам, поэтому потоки, измеряющие близкие задержки,
+ * не конкурируют за одну строку кэша, а полосы суммируются только при чтении.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS_COUNT = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS_COUNT;
+
+    /**
+     * Количество полос — степень двойки, не меньшая числа процессоров, но не больше 8.
+     */
+    private static final int STRIPES_COUNT = Math.min(
+            Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors() * 2 - 1, 1)), 8);
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES_COUNT];
+    private final LongAdder totalCount = new LongAdder();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int index = 0; index < stripes.length; index++) {
+            stripes[index] = new AtomicLongArray(BUCKETS_COUNT);
+        }
+    }
+
+    /**
+     * @param nanos измеренная задержка в наносекундах;
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        stripes[(int) Thread.currentThread().getId() & (STRIPES_COUNT - 1)].incrementAndGet(getIndex(value));
+        totalCount.increment();
+        if (value > maxValue.get()) {
+            maxValue.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    public long getTotalCount() {
+        return totalCount.sum();
+    }
+
+    public long getMaxValue() {
+        return maxValue.get();
+    }
+
+    /**
+     * @param quantile доля измерений от 0 до 1;
+     * @return верхняя граница интервала, в который попадает измерение с заданной долей, в наносекундах,
+     * либо 0, если измерений нет.
+     */
+    public long getValueAtQuantile(double quantile) {
+        long count = totalCount.sum();
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int index = 0; index < BUCKETS_COUNT; index++) {
+            for (AtomicLongArray counts : stripes) {
+                seen += counts.get(index);
+            }
+            if (seen >= rank) {
+                return Math.min(getUpperBound(index), maxValue.get());
+            }
+        }
+
+        return maxValue.get();
+    }
+
+    /**
+     * @return количество измерений и основные перцентили в микросекундах.
+     */
+    public LatencyStatistics getStatistics() {
+        return new LatencyStatistics(getTotalCount(), toMicros(getValueAtQuantile(0.5)),
+                toMicros(getValueAtQuantile(0.99)), toMicros(getValueAtQuantile(0.999)), toMicros(getMaxValue()));
+    }
+
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static int getIndex(long value) {
+        if (value < SUB_BUCKETS_COUNT) {
+            return (int) value;
+        }
+
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS_COUNT + (int) (value >>> shift) - SUB_BUCKETS_COUNT;
+    }
+
+    private static long getUpperBound(int index) {
+        if (index < SUB_BUCKETS_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKETS_COUNT - 1;
+        long subBucket = SUB_BUCKETS_COUNT + index % SUB_BUCKETS_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
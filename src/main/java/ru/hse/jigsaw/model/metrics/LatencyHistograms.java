@@ -0,0 +1,35 @@
+package ru.hse.jigsaw.model.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Гистограммы задержек по ключам сообщений. Гистограмма ключа создаётся при первом измерении,
+ * поэтому ключи должны принадлежать ограниченному набору, например таблице ответов комнаты.
+ */
+public final class LatencyHistograms {
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * @param key   ключ сообщения;
+     * @param nanos измеренная задержка в наносекундах;
+     */
+    public void record(String key, long nanos) {
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(key, ignored -> new LatencyHistogram());
+        }
+
+        histogram.record(nanos);
+    }
+
+    /**
+     * @return снимки гистограмм, упорядоченные по ключам.
+     */
+    public Map<String, LatencyStatistics> getStatistics() {
+        Map<String, LatencyStatistics> statistics = new TreeMap<>();
+        histograms.forEach((key, histogram) -> statistics.put(key, histogram.getStatistics()));
+        return statistics;
+    }
+}
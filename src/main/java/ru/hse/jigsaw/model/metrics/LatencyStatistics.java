@@ -0,0 +1,47 @@
+package ru.hse.jigsaw.model.metrics;
+
+/**
+ * Снимок гистограммы задержек, публикуемый через JMX как составное значение.
+ */
+public final class LatencyStatistics {
+    private final long count;
+    private final long p50Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+    private final long maxMicros;
+
+    /**
+     * @param count      количество измерений;
+     * @param p50Micros  медиана в микросекундах;
+     * @param p99Micros  99-й перцентиль в микросекундах;
+     * @param p999Micros 99,9-й перцентиль в микросекундах;
+     * @param maxMicros  наибольшее измерение в микросекундах;
+     */
+    public LatencyStatistics(long count, long p50Micros, long p99Micros, long p999Micros, long maxMicros) {
+        this.count = count;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.p999Micros = p999Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getP50Micros() {
+        return p50Micros;
+    }
+
+    public long getP99Micros() {
+        return p99Micros;
+    }
+
+    public long getP999Micros() {
+        return p999Micros;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros;
+    }
+}
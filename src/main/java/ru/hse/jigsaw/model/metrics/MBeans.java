@@ -0,0 +1,74 @@
+package ru.hse.jigsaw.model.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Регистрация управляемых объектов в платформенном сервере JMX. Ошибка регистрации не прерывает работу
+ * приложения: метрики продолжают собираться, но не публикуются.
+ */
+public final class MBeans {
+    private static final Logger logger = Logger.getLogger(MBeans.class.getName());
+
+    /**
+     * Системное свойство, значение {@code false} которого отключает публикацию метрик через JMX.
+     */
+    public static final String JMX_ENABLED_PROPERTY = "jigsaw.jmx";
+
+    public static final String DOMAIN = "ru.hse.jigsaw";
+
+    private static final AtomicLong lastInstanceNumber = new AtomicLong();
+
+    private MBeans() {
+    }
+
+    /**
+     * Регистрирует объект под именем {@code ru.hse.jigsaw:type=<type>,name=<type>-<номер>}.
+     *
+     * @param mbean объект, реализующий интерфейс MXBean;
+     * @param type  тип объекта в имени;
+     * @return имя зарегистрированного объекта или {@code null}, если публикация отключена или не удалась.
+     */
+    public static ObjectName register(Object mbean, String type) {
+        if (!Boolean.parseBoolean(System.getProperty(JMX_ENABLED_PROPERTY, "true"))) {
+            return null;
+        }
+
+        try {
+            Hashtable<String, String> properties = new Hashtable<>();
+            properties.put("type", type);
+            properties.put("name", type.toLowerCase() + "-" + lastInstanceNumber.incrementAndGet());
+
+            ObjectName name = new ObjectName(DOMAIN, properties);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, name);
+            return name;
+        } catch (JMException exception) {
+            logger.log(Level.WARNING, "Не удалось опубликовать метрики через JMX:", exception);
+            return null;
+        }
+    }
+
+    /**
+     * @param name имя, возвращённое {@link MBeans#register(Object, String)}, или {@code null};
+     */
+    public static void unregister(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException exception) {
+            logger.log(Level.WARNING, "Не удалось снять публикацию метрик:", exception);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ru.hse.jigsaw.model.net;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Двоичный формат сообщений. Структура кадра:
+ * <pre>
+ * int32   длина оставшейся части кадра;
+ * uint8   код ключа протокола {@link MessageKeys} (0 — ключ передаётся строкой),
+ *         старший бит — признак идентификатора запроса,
+ *         следующий за ним — признак порядкового номера события;
+ * [int64  идентификатор запроса] — только при установленном признаке;
+ * [int64  порядковый номер события] — только при установленном признаке;
+ * [uint16 длина ключа, байты ключа в UTF-8] — только для кода 0;
+ * байты тела в UTF-8 до конца кадра.
+ * </pre>
+ */
+final class BinaryCodec implements MessageCodec {
+    /**
+     * Максимальная длина кадра в байтах.
+     */
+    private static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    private static final int LENGTH_FIELD_SIZE = Integer.BYTES;
+
+    private static final int CUSTOM_KEY_OPCODE = 0;
+
+    private static final int CORRELATED_FLAG = 0x80;
+
+    private static final int SEQUENCED_FLAG = 0x40;
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    @Override
+    public ByteBuffer encode(Message message) {
+        byte[] body = message.body().getBytes(StandardCharsets.UTF_8);
+        int opcode = MessageKeys.isProtocolOpcode(message.opcode()) ? message.opcode() : CUSTOM_KEY_OPCODE;
+        byte[] key = opcode == CUSTOM_KEY_OPCODE ? message.key().getBytes(StandardCharsets.UTF_8) : null;
+
+        int frameLength = 1 + (message.isCorrelated() ? Long.BYTES : 0) + (message.isSequenced() ? Long.BYTES : 0)
+                + (key != null ? Short.BYTES + key.length : 0) + body.length;
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH_FIELD_SIZE + frameLength);
+        buffer.putInt(frameLength);
+        buffer.put((byte) (opcode | (message.isCorrelated() ? CORRELATED_FLAG : 0)
+                | (message.isSequenced() ? SEQUENCED_FLAG : 0)));
+        if (message.isCorrelated()) {
+            buffer.putLong(message.correlationId());
+        }
+        if (message.isSequenced()) {
+            buffer.putLong(message.sequence());
+        }
+        if (key != null) {
+            buffer.putShort((short) key.length);
+            buffer.put(key);
+        }
+        buffer.put(body);
+
+        return buffer.flip();
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer) throws ProtocolException {
+        if (buffer.remaining() < LENGTH_FIELD_SIZE) {
+            return null;
+        }
+
+        int frameStart = buffer.position();
+        int frameLength = buffer.getInt(frameStart);
+        if (frameLength < 1 || frameLength > MAX_FRAME_LENGTH) {
+            throw new ProtocolException(String.format("Invalid frame length: %d", frameLength));
+        }
+        if (buffer.remaining() < LENGTH_FIELD_SIZE + frameLength) {
+            return null;
+        }
+
+        int frameEnd = frameStart + LENGTH_FIELD_SIZE + frameLength;
+        buffer.position(frameStart + LENGTH_FIELD_SIZE);
+
+        int opcode = Byte.toUnsignedInt(buffer.get());
+        long correlationId = Message.NO_CORRELATION;
+        if ((opcode & CORRELATED_FLAG) != 0) {
+            if (buffer.position() + Long.BYTES > frameEnd) {
+                throw new ProtocolException("Correlation id exceeds the frame");
+            }
+            correlationId = buffer.getLong();
+            opcode &= ~CORRELATED_FLAG;
+        }
+        long sequence = Message.NO_SEQUENCE;
+        if ((opcode & SEQUENCED_FLAG) != 0) {
+            if (buffer.position() + Long.BYTES > frameEnd) {
+                throw new ProtocolException("Event sequence exceeds the frame");
+            }
+            sequence = buffer.getLong();
+            opcode &= ~SEQUENCED_FLAG;
+        }
+
+        String key;
+        if (opcode == CUSTOM_KEY_OPCODE) {
+            if (buffer.position() + Short.BYTES > frameEnd) {
+                throw new ProtocolException("Key length exceeds the frame");
+            }
+            int keyLength = Short.toUnsignedInt(buffer.getShort());
+            if (buffer.position() + keyLength > frameEnd) {
+                throw new ProtocolException("Key exceeds the frame");
+            }
+            key = readString(buffer, keyLength);
+            opcode = MessageKeys.find(key);
+        } else if (MessageKeys.isProtocolOpcode(opcode)) {
+            key = MessageKeys.getKey(opcode);
+        } else {
+            throw new ProtocolException(String.format("Unknown opcode: %d", opcode));
+        }
+
+        String body = readString(buffer, frameEnd - buffer.position());
+        return new Message(key, body, correlationId, sequence, opcode);
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
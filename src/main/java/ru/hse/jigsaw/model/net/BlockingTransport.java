@@ -0,0 +1,66 @@
+package ru.hse.jigsaw.model.net;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Блокирующий транспорт: каждое соединение обслуживается отдельным потоком,
+ * тип которого определяется режимом {@link ThreadMode}.
+ */
+final class BlockingTransport implements ServerTransport {
+    private static final Logger logger = Logger.getLogger(Server.class.getName());
+
+    private final ServerSocket serverSocket;
+
+    private final ExecutorService clientsThreadPool;
+    private final ExecutorService serverExecutor;
+
+    BlockingTransport(ServerSocket serverSocket, ThreadMode threadMode) {
+        this.serverSocket = serverSocket;
+
+        clientsThreadPool = threadMode.newThreadPerTaskExecutor();
+        serverExecutor = threadMode.newSingleThreadExecutor();
+    }
+
+    @Override
+    public void start(Server server) {
+        serverExecutor.submit(() -> {
+            try {
+                logger.log(Level.INFO, "Сервер запущен.");
+
+                while (!serverSocket.isClosed()) {
+                    Socket socket = serverSocket.accept();
+                    clientsThreadPool.execute(new SocketClientHandler(socket, server, clientsThreadPool));
+                }
+            } catch (IOException exception) {
+                logger.log(Level.SEVERE, "Возникла исключительная ситуация:", exception);
+                throw new UncheckedIOException(exception);
+            } finally {
+                server.sendEvent("server_shutdown");
+                server.closeAllConnections();
+                server.shutdown();
+                logger.log(Level.INFO, "Сервер остановлен.");
+            }
+        });
+    }
+
+    @Override
+    public boolean isActive() {
+        return !serverSocket.isClosed();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverExecutor.shutdownNow();
+        clientsThreadPool.shutdown();
+
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package ru.hse.jigsaw.model.net;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Соединение с клиентом, обслуживаемое неблокирующим каналом в цикле событий {@link NioEventLoop}.
+ */
+final class ChannelClientHandler extends Server.ClientHandler {
+    private static final Logger logger = Logger.getLogger(Server.class.getName());
+
+    /**
+     * Максимальное количество сообщений, передаваемых в сокет одной операцией записи.
+     */
+    private static final int MAX_WRITE_BATCH_SIZE = 64;
+
+    /**
+     * Время (в миллисекундах), в течение которого закрываемое соединение дописывает в канал неотправленные
+     * сообщения. По его истечении канал закрывается, даже если клиент не принял все данные.
+     */
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final SocketChannel channel;
+    private final NioEventLoop eventLoop;
+    private SelectionKey selectionKey;
+
+    private final MessageReader requestReader;
+
+    /**
+     * Сообщения, извлечённые из очереди отправки, но ещё не полностью записанные в канал.
+     */
+    private final ArrayDeque<ByteBuffer> inFlightMessages = new ArrayDeque<>(MAX_WRITE_BATCH_SIZE);
+
+    /**
+     * Массив для передачи нескольких сообщений в одной операции записи.
+     */
+    private final ByteBuffer[] writeBatch = new ByteBuffer[MAX_WRITE_BATCH_SIZE];
+
+    private final AtomicBoolean isClosed = new AtomicBoolean(false);
+
+    /**
+     * Закрыта ли очередь отправки: канал закрывается, как только из неё записаны все сообщения.
+     */
+    private volatile boolean isDraining = false;
+
+    /**
+     * Приостановлено ли чтение запросов до освобождения места в очереди отправки.
+     */
+    private volatile boolean isReadingSuspended = false;
+
+    /**
+     * Ожидает ли соединение готовности канала к записи, чтобы дописать сообщения, не поместившиеся
+     * в буфер отправки сокета. Изменяется только потоком цикла событий.
+     */
+    private boolean isWritePending = false;
+
+    ChannelClientHandler(SocketChannel channel, NioEventLoop eventLoop, Server server) {
+        super(server);
+        this.channel = channel;
+        this.eventLoop = eventLoop;
+        requestReader = new MessageReader(server.metrics.getReceivedBytesCounter());
+    }
+
+    /**
+     * Регистрирует канал в селекторе цикла событий и начинает ожидание запроса регистрации.
+     * Вызывается только потоком цикла событий.
+     *
+     * @param selector селектор цикла событий;
+     * @throws ClosedChannelException в случае, если канал уже закрыт.
+     */
+    void attach(Selector selector) throws ClosedChannelException {
+        selectionKey = channel.register(selector, SelectionKey.OP_READ, this);
+        startHandshake();
+    }
+
+    /**
+     * Считывает доступные данные и обрабатывает полностью полученные сообщения.
+     * Вызывается только потоком цикла событий.
+     */
+    void onReadable() {
+        if (!isClosed.get()) {
+            serveRequests(true);
+        }
+    }
+
+    /**
+     * Обрабатывает полностью полученные сообщения, пока в очереди отправки есть место.
+     * Если очередь заполнена, чтение из канала приостанавливается до её опустошения.
+     *
+     * @param isReadRequired нужно ли предварительно считать доступные данные из канала;
+     */
+    private void serveRequests(boolean isReadRequired) {
+        try {
+            if (isReadRequired && requestReader.readFrom(channel) == -1) {
+                logger.log(Level.INFO, String.format("Пользователь %s#%s потерял соединение с сервером",
+                        getNickname(), getId()));
+                closeConnection();
+                return;
+            }
+
+            Message request;
+            while (channel.isOpen() && !outboundQueue.isFull()
+                    && (request = requestReader.poll(inboundCodec)) != null) {
+                processMessage(request);
+            }
+
+            boolean shouldSuspendReading = channel.isOpen() && outboundQueue.isFull();
+            if (isReadingSuspended != shouldSuspendReading) {
+                isReadingSuspended = shouldSuspendReading;
+                updateInterestOps();
+            }
+        } catch (ProtocolException exception) {
+            logger.log(Level.WARNING, String.format(
+                    "Пользователь %s#%s прислал сообщение, не соответствующее протоколу: %s",
+                    getNickname(), getId(), exception.getMessage()));
+            closeConnection();
+        } catch (IOException exception) {
+            logger.log(Level.INFO, String.format("Пользователь %s#%s потерял соединение с сервером",
+                    getNickname(), getId()));
+            closeConnection();
+        } catch (RuntimeException exception) {
+            logger.log(Level.SEVERE, "Возникла исключительная ситуация при обработке запроса:", exception);
+            closeConnection();
+        }
+    }
+
+    @Override
+    void onMessageQueued() {
+        eventLoop.requestWrite(this);
+    }
+
+    /**
+     * Записывает в канал накопленные исходящие сообщения. Несколько сообщений передаются в сокет
+     * одним системным вызовом. Если буфер отправки сокета переполнен, оставшиеся данные будут
+     * дописаны при следующей готовности канала к записи. Закрываемое соединение закрывает канал,
+     * когда записаны все сообщения из очереди.
+     */
+    synchronized void flush() {
+        if (!channel.isOpen()) {
+            inFlightMessages.clear();
+            return;
+        }
+
+        try {
+            while (true) {
+                EncodedMessage message;
+                while (inFlightMessages.size() < MAX_WRITE_BATCH_SIZE && (message = outboundQueue.poll()) != null) {
+                    inFlightMessages.add(message.toBuffer());
+                }
+                if (inFlightMessages.isEmpty()) {
+                    if (isDraining) {
+                        closeChannel();
+                        return;
+                    }
+                    isWritePending = false;
+                    updateInterestOps();
+                    if (isReadingSuspended && !isClosed.get()) {
+                        serveRequests(false);
+                    }
+                    return;
+                }
+
+                int batchSize = inFlightMessages.size();
+                inFlightMessages.toArray(writeBatch);
+                server.metrics.onBytesSent(channel.write(writeBatch, 0, batchSize));
+                Arrays.fill(writeBatch, null);
+
+                while (!inFlightMessages.isEmpty() && !inFlightMessages.peek().hasRemaining()) {
+                    inFlightMessages.poll();
+                }
+                if (!inFlightMessages.isEmpty()) {
+                    isWritePending = true;
+                    updateInterestOps();
+                    return;
+                }
+            }
+        } catch (IOException exception) {
+            logger.log(Level.INFO, String.format("Пользователь %s#%s потерял соединение с сервером",
+                    getNickname(), getId()));
+            inFlightMessages.clear();
+            abortConnection();
+        }
+    }
+
+    /**
+     * Устанавливает интерес к чтению и записи по состоянию соединения: чтение ожидается, пока оно
+     * не приостановлено и соединение не закрывается, запись — пока в канал не дописаны все сообщения.
+     * Вызывается только потоком цикла событий.
+     */
+    private void updateInterestOps() {
+        if (selectionKey != null && selectionKey.isValid()) {
+            int interestOps = (isReadingSuspended || isClosed.get() ? 0 : SelectionKey.OP_READ)
+                    | (isWritePending ? SelectionKey.OP_WRITE : 0);
+            if (selectionKey.interestOps() != interestOps) {
+                selectionKey.interestOps(interestOps);
+            }
+        }
+    }
+
+    /**
+     * Прекращает чтение запросов и закрывает канал после записи сообщений, уже находящихся в очереди,
+     * но не позднее чем через {@link ChannelClientHandler#CLOSE_TIMEOUT_MILLIS}. Запись выполняется
+     * потоком цикла событий.
+     */
+    @Override
+    void releaseResources() {
+        if (!isClosed.compareAndSet(false, true)) {
+            return;
+        }
+
+        outboundQueue.close();
+        isDraining = true;
+        eventLoop.requestWrite(this);
+        server.schedule(this::onCloseTimeout, CLOSE_TIMEOUT_MILLIS);
+    }
+
+    private void onCloseTimeout() {
+        if (channel.isOpen()) {
+            logger.log(Level.INFO, String.format(
+                    "Пользователь %s#%s не принял оставшиеся сообщения, соединение закрыто.", getNickname(), getId()));
+            closeChannel();
+        }
+    }
+
+    @Override
+    void abortResources() {
+        isClosed.set(true);
+        outboundQueue.close();
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException exception) {
+            logger.log(Level.SEVERE, "Возникла исключительная ситуация при закрытии соединения:", exception);
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package ru.hse.jigsaw.model.net;
 
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import ru.hse.jigsaw.model.metrics.MBeans;
 
+import javax.management.ObjectName;
 import java.io.*;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -17,36 +27,123 @@ public class Client {
     private static final Logger logger = Logger.getLogger(Server.class.getName());
 
     private String id;
+    private String roomId;
     private final Socket socket;
     private final String nickname;
-    private PrintWriter requestWriter;
-    private BufferedReader responseReader;
+    private OutputStream requestStream;
+    private InputStream responseStream;
+    private final ClientMetrics metrics = new ClientMetrics(this);
+    private final ObjectName metricsName;
+    private final MessageReader responseReader = new MessageReader(metrics.getReceivedBytesCounter());
 
+    /**
+     * Формат входящих сообщений. Изменяется только потоком, обрабатывающим сообщения сервера.
+     */
+    private MessageCodec inboundCodec = MessageCodecs.JSON;
+
+    /**
+     * Формат исходящих сообщений. До получения ответа на регистрацию равен {@code null},
+     * а запросы накапливаются в {@link Client#pendingRequests}.
+     */
+    private MessageCodec outboundCodec;
+    private final List<Message> pendingRequests = new ArrayList<>();
+
+    /**
+     * Блокировка записи в сокет. В отличие от мониторов {@link PrintWriter},
+     * не закрепляет виртуальный поток за потоком-носителем на время записи.
+     */
+    private final Lock writeLock = new ReentrantLock();
+
+    /**
+     * Запросы, ожидающие ответа сервера, по их идентификаторам.
+     */
+    private final Map<Long, CompletableFuture<JSONObject>> inFlightRequests = new ConcurrentHashMap<>();
+    private final AtomicLong lastCorrelationId = new AtomicLong();
+
+    /**
+     * Время приёма-передачи в микросекундах, измеренное сервером, или {@code -1}, пока оно неизвестно.
+     */
+    private volatile long roundTripTimeMicros = -1;
+
+    /**
+     * Ключ сессии, выданный сервером при регистрации, или {@code null}, если сервер не восстанавливает сессии.
+     */
+    private volatile String sessionToken;
+
+    /**
+     * Номер последнего полученного события комнаты.
+     */
+    private volatile long lastEventSequence = Message.NO_SEQUENCE;
+
+    private volatile boolean isSessionResumed = false;
+    private volatile boolean isReplayComplete = true;
+
+    /**
+     * Результат регистрации, завершающийся после ответа сервера.
+     */
+    private final CompletableFuture<Client> registration = new CompletableFuture<>();
+
+    private final ThreadMode threadMode;
     private ExecutorService messageHandlerRunner;
-    private final Map<String, Consumer<String>> messageHandler;
+    private final DispatchTable<Consumer<String>> messageHandler = new DispatchTable<>();
 
+    /**
+     * Создаёт клиента, тип потока обработки сообщений которого задаётся системным свойством
+     * {@link ThreadMode#THREAD_MODE_PROPERTY}.
+     *
+     * @param socket   сокет, подключённый к серверу;
+     * @param nickname никнейм игрока;
+     */
     public Client(Socket socket, String nickname) {
+        this(socket, nickname, ThreadMode.fromSystemProperty());
+    }
+
+    /**
+     * @param socket     сокет, подключённый к серверу;
+     * @param nickname   никнейм игрока;
+     * @param threadMode тип потока, обрабатывающего входящие сообщения;
+     */
+    public Client(Socket socket, String nickname, ThreadMode threadMode) {
+        this.socket = socket;
+        this.nickname = nickname;
+        this.threadMode = threadMode;
+        metricsName = MBeans.register(metrics, "Client");
+        messageHandler.put("registration", body -> {
+            // Отказ в регистрации передаётся строкой с его причиной.
+            if (!body.startsWith("{")) {
+                registration.completeExceptionally(new IOException(body));
+                disconnect();
+            } else {
+                JSONObject container = new JSONObject(body);
+                Client.this.id = container.getString("id");
+                Client.this.roomId = container.optString("room", Server.DEFAULT_ROOM_ID);
+                sessionToken = container.optString("session_token", null);
+                isSessionResumed = container.optBoolean("resumed");
+                isReplayComplete = container.optBoolean("replay_complete", true);
+                if (!isSessionResumed) {
+                    lastEventSequence = container.optLong("seq", Message.NO_SEQUENCE);
+                }
+
+                MessageCodec codec = MessageCodecs.find(container.optString("codec", "json"));
+                completeHandshake(codec != null ? codec : MessageCodecs.JSON);
+                registration.complete(Client.this);
+            }
+        });
+        // Сервер проверяет активность соединения: ping возвращается без изменений.
+        messageHandler.put("ping", body -> {
+            roundTripTimeMicros = new JSONObject(body).optLong("rtt_micros", roundTripTimeMicros);
+            send(new Message("pong", body));
+        });
+
         try {
-            responseReader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            requestWriter = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
+            responseStream = socket.getInputStream();
+            requestStream = socket.getOutputStream();
 
-            messageHandlerRunner = Executors.newSingleThreadExecutor();
+            messageHandlerRunner = threadMode.newSingleThreadExecutor();
             messageHandlerRunner.submit(this::processMessages);
         } catch (IOException exception) {
-            closeConnection();
+            disconnect();
         }
-
-        this.socket = socket;
-        this.nickname = nickname;
-        messageHandler = new HashMap<>() {{
-            put("registration", body -> {
-                if ("Регистрация закрыта".equals(body)) {
-                    closeConnection();
-                } else {
-                    Client.this.id = new JSONObject(body).getString("id");
-                }
-            });
-        }};
     }
 
     public String getId() {
@@ -57,10 +154,48 @@ public class Client {
         return nickname;
     }
 
+    /**
+     * @return идентификатор комнаты, в которой зарегистрирован клиент, или {@code null} до ответа на регистрацию.
+     */
+    public String getRoomId() {
+        return roomId;
+    }
+
+    /**
+     * @return время приёма-передачи, измеренное сервером по сообщениям {@code ping},
+     * или {@code null}, если сервер ещё его не сообщил.
+     */
+    public Duration getRoundTripTime() {
+        long roundTripTime = roundTripTimeMicros;
+        return roundTripTime < 0 ? null : Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(roundTripTime));
+    }
+
     public boolean isConnected() {
         return !socket.isClosed();
     }
 
+    /**
+     * @return метрики клиента: объём переданных данных, полученные события и задержки ответов.
+     */
+    public ClientMetricsMXBean getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return {@code true}, если сервер восстановил прежнюю сессию клиента, а не зарегистрировал его заново.
+     */
+    public boolean isSessionResumed() {
+        return isSessionResumed;
+    }
+
+    /**
+     * @return {@code false}, если после восстановления сессии сервер не смог повторно отправить
+     * все пропущенные события, и состояние комнаты следует запросить заново.
+     */
+    public boolean isReplayComplete() {
+        return isReplayComplete;
+    }
+
     public void addMessageHandler(String key, Consumer<String> handler) {
         messageHandler.put(key, handler);
     }
@@ -69,8 +204,90 @@ public class Client {
         messageHandler.remove(key);
     }
 
+    /**
+     * Отправляет запрос регистрации в комнате сервера по умолчанию.
+     */
     public void register() {
-        sendRequest("registration", nickname);
+        register(new JSONObject());
+    }
+
+    /**
+     * Отправляет запрос регистрации в указанной комнате сервера.
+     *
+     * @param roomId идентификатор комнаты;
+     */
+    public void register(String roomId) {
+        register(new JSONObject().put("room", roomId));
+    }
+
+    /**
+     * Отправляет запрос регистрации в новой комнате, которую сервер создаёт для клиента.
+     * Идентификатор комнаты становится доступен через {@link Client#getRoomId()} после ответа сервера.
+     */
+    public void registerInNewRoom() {
+        register(new JSONObject().put("create_room", true));
+    }
+
+    /**
+     * Подключается к тому же адресу сервера заново и восстанавливает сессию методом
+     * {@link Client#resume(Socket, Duration)}. Подключение выполняется вне вызывающего потока.
+     *
+     * @param timeout наибольшее время ожидания ответа на регистрацию;
+     * @return новый клиент после ответа сервера на регистрацию, либо результат, завершённый исключением
+     * при невозможности подключиться или отказе в регистрации;
+     */
+    public CompletableFuture<Client> resume(Duration timeout) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return new Socket(socket.getInetAddress(), socket.getPort());
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }).thenCompose(newSocket -> resume(newSocket, timeout));
+    }
+
+    /**
+     * Подключается к серверу заново после разрыва соединения и восстанавливает сессию: сервер возвращает
+     * клиенту прежний идентификатор и повторно отправляет только пропущенные события комнаты.
+     * Обработчики сообщений этого клиента переносятся на новый, поэтому пропущенные события
+     * передаются тем же обработчикам. Если время ожидания переподключения истекло, сервер регистрирует
+     * клиента в той же комнате заново, что можно проверить методом {@link Client#isSessionResumed()}.
+     *
+     * @param socket  новый сокет, подключённый к тому же серверу;
+     * @param timeout наибольшее время ожидания ответа на регистрацию;
+     * @return новый клиент после ответа сервера на регистрацию, либо результат, завершённый исключением
+     * {@link IOException} при отказе в регистрации или {@link TimeoutException} по истечении времени ожидания;
+     */
+    public CompletableFuture<Client> resume(Socket socket, Duration timeout) {
+        Client client = new Client(socket, nickname, threadMode);
+        messageHandler.forEach(client.messageHandler::putIfAbsent);
+        client.lastEventSequence = lastEventSequence;
+
+        JSONObject container = new JSONObject().put("room", roomId);
+        if (sessionToken != null) {
+            container.put("resume", new JSONObject().put("token", sessionToken).put("last_seq", lastEventSequence));
+        }
+        client.register(container);
+
+        return client.registration.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Отправляет запрос регистрации с перечнем поддерживаемых форматов сообщений.
+     * Запрос всегда передаётся в формате JSON.
+     *
+     * @param container тело запроса с параметрами выбора комнаты;
+     */
+    private void register(JSONObject container) {
+        container.put("nickname", nickname);
+        container.put("codecs", new JSONArray(MessageCodecs.getPreferredNames()));
+
+        writeLock.lock();
+        try {
+            write(MessageCodecs.JSON.encode(new Message("registration", container.toString())));
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public void sendRequest(String requestKey) {
@@ -78,50 +295,176 @@ public class Client {
     }
 
     public void sendRequest(String requestKey, String requestBody) {
-        JSONObject request = new JSONObject();
-        request.put("key", requestKey);
-        request.put("body", requestBody);
-        requestWriter.println(request);
+        send(new Message(requestKey, requestBody));
+    }
+
+    /**
+     * Отправляет запрос, ответ на который сопоставляется с ним по идентификатору, а не по ключу.
+     * Число одновременно ожидающих ответа запросов не ограничено; ответы на них не передаются
+     * обработчикам, добавленным через {@link Client#addMessageHandler(String, Consumer)}.
+     * Отмена возвращённого результата прекращает ожидание ответа, но не отзывает уже отправленный запрос.
+     * Зависимые действия без явного исполнителя выполняются потоком, обрабатывающим сообщения сервера.
+     *
+     * @param requestKey  ключ запроса;
+     * @param requestBody тело запроса;
+     * @param timeout     наибольшее время ожидания ответа;
+     * @return ответ сервера, либо результат, завершённый исключением {@link TimeoutException} по истечении
+     * времени ожидания или {@link IOException} при разрыве соединения;
+     */
+    public CompletableFuture<JSONObject> request(String requestKey, String requestBody, Duration timeout) {
+        long correlationId = lastCorrelationId.incrementAndGet();
+        long startNanos = System.nanoTime();
+        CompletableFuture<JSONObject> response = new CompletableFuture<>();
+        inFlightRequests.put(correlationId, response);
+        response.whenComplete((body, exception) -> {
+            inFlightRequests.remove(correlationId);
+            if (exception == null) {
+                metrics.recordRequest(requestKey, System.nanoTime() - startNanos);
+            } else {
+                metrics.onRequestFailed();
+            }
+        });
+        response.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+
+        if (socket.isClosed()) {
+            response.completeExceptionally(new IOException("Connection is closed"));
+        } else {
+            send(new Message(requestKey, requestBody, correlationId));
+        }
+
+        return response;
+    }
+
+    public CompletableFuture<JSONObject> request(String requestKey, Duration timeout) {
+        return request(requestKey, "", timeout);
+    }
+
+    private void send(Message request) {
+        writeLock.lock();
+        try {
+            if (outboundCodec == null) {
+                pendingRequests.add(request);
+            } else {
+                write(outboundCodec.encode(request));
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Переключает клиента на согласованный формат и отправляет накопленные до регистрации запросы.
+     *
+     * @param codec формат, выбранный сервером;
+     */
+    private void completeHandshake(MessageCodec codec) {
+        inboundCodec = codec;
+
+        writeLock.lock();
+        try {
+            outboundCodec = codec;
+            for (Message request : pendingRequests) {
+                write(codec.encode(request));
+            }
+            pendingRequests.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write(ByteBuffer data) {
+        try {
+            requestStream.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+            requestStream.flush();
+            metrics.onBytesSent(data.remaining());
+        } catch (IOException exception) {
+            logger.log(Level.INFO, "Не удалось отправить запрос серверу.");
+        }
     }
 
     private void processMessages() {
         try {
             while (!socket.isClosed()) {
-                String message = responseReader.readLine();
-                JSONObject jsonObject = new JSONObject(message);
+                Message message = responseReader.read(responseStream, inboundCodec);
+                if (message.isCorrelated()) {
+                    completeRequest(message);
+                    continue;
+                }
+                if (message.isSequenced()) {
+                    lastEventSequence = Math.max(lastEventSequence, message.sequence());
+                }
+                metrics.onEventReceived(message.key());
 
-                String key = jsonObject.getString("key");
-                if (messageHandler.containsKey(key)) {
-                    messageHandler.get(key).accept(jsonObject.get("body").toString());
+                Consumer<String> handler = messageHandler.get(message);
+                if (handler != null) {
+                    handler.accept(message.body());
                 }
             }
-        } catch (SocketException | NullPointerException exception) {
+        } catch (SocketException | EOFException exception) {
             logger.log(Level.INFO, "Разорвано соединение с сервером.");
         } catch (IOException exception) {
             logger.log(Level.SEVERE, "Возникла исключительная ситуация при обработке запроса:", exception);
         } finally {
-            if (messageHandler.containsKey("connection_closed")) {
-                messageHandler.get("connection_closed").accept(Instant.now().toString());
+            Consumer<String> connectionClosedHandler = messageHandler.get("connection_closed");
+            if (connectionClosedHandler != null) {
+                connectionClosedHandler.accept(Instant.now().toString());
             }
-            closeConnection();
+            disconnect();
+        }
+    }
+
+    private void completeRequest(Message response) {
+        CompletableFuture<JSONObject> request = inFlightRequests.get(response.correlationId());
+        if (request == null) {
+            return;
+        }
+
+        try {
+            request.complete(new JSONObject(response.body()));
+        } catch (JSONException exception) {
+            request.completeExceptionally(exception);
         }
     }
 
+    /**
+     * Сообщает серверу о выходе из комнаты и закрывает соединение. После этого сессию нельзя восстановить.
+     */
     public void closeConnection() {
-        messageHandlerRunner.shutdownNow();
+        if (!socket.isClosed()) {
+            send(new Message("leave", ""));
+        }
+
+        disconnect();
+    }
+
+    /**
+     * Закрывает соединение, не сообщая серверу о выходе, поэтому сессия может быть восстановлена
+     * методом {@link Client#resume(Socket, Duration)}.
+     */
+    private void disconnect() {
+        MBeans.unregister(metricsName);
+        if (messageHandlerRunner != null) {
+            messageHandlerRunner.shutdownNow();
+        }
 
         try {
             if (socket != null) {
                 socket.close();
             }
-            if (responseReader != null) {
-                responseReader.close();
+            if (responseStream != null) {
+                responseStream.close();
             }
-            if (requestWriter != null) {
-                requestWriter.close();
+            if (requestStream != null) {
+                requestStream.close();
             }
         } catch (IOException exception) {
             throw new UncheckedIOException(exception);
+        } finally {
+            IOException exception = new IOException("Connection is closed");
+            registration.completeExceptionally(exception);
+            for (CompletableFuture<JSONObject> request : inFlightRequests.values()) {
+                request.completeExceptionally(exception);
+            }
         }
     }
 }
@@ -0,0 +1,100 @@
+package ru.hse.jigsaw.model.net;
+
+import ru.hse.jigsaw.model.metrics.LatencyHistograms;
+import ru.hse.jigsaw.model.metrics.LatencyStatistics;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Накопитель метрик клиента. Как и {@link ServerMetrics}, не захватывает блокировок при учёте.
+ */
+final class ClientMetrics implements ClientMetricsMXBean {
+    private final Client client;
+
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final Map<String, LongAdder> receivedEvents = new ConcurrentHashMap<>();
+    private final LatencyHistograms requestLatencies = new LatencyHistograms();
+    private final LongAdder failedRequestsCount = new LongAdder();
+
+    ClientMetrics(Client client) {
+        this.client = client;
+    }
+
+    LongAdder getReceivedBytesCounter() {
+        return receivedBytes;
+    }
+
+    void onBytesSent(long bytesCount) {
+        sentBytes.add(bytesCount);
+    }
+
+    void onEventReceived(String key) {
+        LongAdder count = receivedEvents.get(key);
+        if (count == null) {
+            count = receivedEvents.computeIfAbsent(key, ignored -> new LongAdder());
+        }
+
+        count.increment();
+    }
+
+    void recordRequest(String key, long nanos) {
+        requestLatencies.record(key, nanos);
+    }
+
+    void onRequestFailed() {
+        failedRequestsCount.increment();
+    }
+
+    @Override
+    public String getId() {
+        return client.getId();
+    }
+
+    @Override
+    public String getNickname() {
+        return client.getNickname();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return client.isConnected();
+    }
+
+    @Override
+    public long getRoundTripTimeMicros() {
+        Duration roundTripTime = client.getRoundTripTime();
+        return roundTripTime == null ? -1 : roundTripTime.toNanos() / 1000;
+    }
+
+    @Override
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    @Override
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+
+    @Override
+    public Map<String, Long> getReceivedEvents() {
+        Map<String, Long> events = new TreeMap<>();
+        receivedEvents.forEach((key, count) -> events.put(key, count.sum()));
+        return events;
+    }
+
+    @Override
+    public Map<String, LatencyStatistics> getRequestLatencies() {
+        return requestLatencies.getStatistics();
+    }
+
+    @Override
+    public long getFailedRequestsCount() {
+        return failedRequestsCount.sum();
+    }
+}
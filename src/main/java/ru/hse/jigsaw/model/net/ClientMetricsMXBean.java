@@ -0,0 +1,37 @@
+package ru.hse.jigsaw.model.net;
+
+import ru.hse.jigsaw.model.metrics.LatencyStatistics;
+
+import java.util.Map;
+
+/**
+ * Метрики клиента, публикуемые через JMX.
+ */
+public interface ClientMetricsMXBean {
+    String getId();
+
+    String getNickname();
+
+    boolean isConnected();
+
+    /**
+     * @return время приёма-передачи, измеренное сервером, в микросекундах или {@code -1}, пока оно неизвестно.
+     */
+    long getRoundTripTimeMicros();
+
+    long getReceivedBytes();
+
+    long getSentBytes();
+
+    /**
+     * @return количество полученных событий по их ключам.
+     */
+    Map<String, Long> getReceivedEvents();
+
+    /**
+     * @return время от отправки запроса до получения ответа по ключам запросов.
+     */
+    Map<String, LatencyStatistics> getRequestLatencies();
+
+    long getFailedRequestsCount();
+}
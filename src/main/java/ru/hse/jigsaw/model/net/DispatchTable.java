@@ -0,0 +1,93 @@
+package ru.hse.jigsaw.model.net;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Таблица обработчиков сообщений, индексируемая кодами ключей {@link MessageKeys}. Регистрация
+ * заменяет массив обработчиков его изменённой копией, поэтому поиск обработчика входящего сообщения
+ * не захватывает блокировок и сводится к обращению по индексу.
+ *
+ * @param <H> тип обработчика;
+ */
+final class DispatchTable<H> {
+    private final Object lock = new Object();
+
+    /**
+     * Обработчики по кодам ключей. Массив не изменяется после публикации.
+     */
+    private volatile Object[] handlers = new Object[MessageKeys.PROTOCOL_KEYS_COUNT];
+
+    /**
+     * @param key     ключ сообщения;
+     * @param handler обработчик, заменяющий ранее зарегистрированный;
+     */
+    void put(String key, H handler) {
+        update(MessageKeys.intern(key), handler, true);
+    }
+
+    /**
+     * @param key     ключ сообщения;
+     * @param handler обработчик, регистрируемый только при отсутствии другого;
+     */
+    void putIfAbsent(String key, H handler) {
+        update(MessageKeys.intern(key), handler, false);
+    }
+
+    void remove(String key) {
+        int opcode = MessageKeys.find(key);
+        if (opcode != MessageKeys.NO_OPCODE) {
+            update(opcode, null, true);
+        }
+    }
+
+    /**
+     * @param message входящее сообщение;
+     * @return обработчик ключа сообщения или {@code null}, если он не зарегистрирован.
+     */
+    H get(Message message) {
+        return get(message.opcode());
+    }
+
+    /**
+     * @param key ключ сообщения;
+     * @return обработчик ключа или {@code null}, если он не зарегистрирован.
+     */
+    H get(String key) {
+        return get(MessageKeys.find(key));
+    }
+
+    /**
+     * Передаёт действию все зарегистрированные обработчики с их ключами.
+     *
+     * @param action действие над ключом и обработчиком;
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<String, H> action) {
+        Object[] current = handlers;
+        for (int opcode = 0; opcode < current.length; opcode++) {
+            if (current[opcode] != null) {
+                action.accept(MessageKeys.getKey(opcode), (H) current[opcode]);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private H get(int opcode) {
+        Object[] current = handlers;
+        return opcode >= 0 && opcode < current.length ? (H) current[opcode] : null;
+    }
+
+    private void update(int opcode, H handler, boolean shouldReplace) {
+        synchronized (lock) {
+            Object[] current = handlers;
+            if (!shouldReplace && opcode < current.length && current[opcode] != null) {
+                return;
+            }
+
+            Object[] updated = Arrays.copyOf(current, Math.max(current.length, opcode + 1));
+            updated[opcode] = handler;
+            handlers = updated;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ru.hse.jigsaw.model.net;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Неизменяемое закодированное сообщение. Один экземпляр может одновременно отправляться
+ * любому количеству соединений: каждое получает собственное представление данных без копирования.
+ */
+final class EncodedMessage {
+    private final byte[] data;
+
+    private EncodedMessage(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * @param encoded буфер, возвращённый {@link MessageCodec#encode(Message)}; после вызова не должен изменяться;
+     * @return закодированное сообщение, использующее массив буфера без копирования, если это возможно.
+     */
+    static EncodedMessage of(ByteBuffer encoded) {
+        if (encoded.hasArray() && encoded.arrayOffset() == 0 && encoded.position() == 0
+                && encoded.remaining() == encoded.array().length) {
+            return new EncodedMessage(encoded.array());
+        }
+
+        byte[] data = new byte[encoded.remaining()];
+        encoded.duplicate().get(data);
+        return new EncodedMessage(data);
+    }
+
+    int length() {
+        return data.length;
+    }
+
+    /**
+     * @return новое представление данных только для чтения с независимой позицией.
+     */
+    ByteBuffer toBuffer() {
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
+
+    void writeTo(OutputStream stream) throws IOException {
+        stream.write(data);
+    }
+}
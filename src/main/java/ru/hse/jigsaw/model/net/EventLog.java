@@ -0,0 +1,74 @@
+package ru.hse.jigsaw.model.net;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Кольцевой журнал последних событий комнаты. Каждому событию присваивается следующий порядковый номер,
+ * а самое старое событие вытесняется, когда журнал заполнен. По журналу клиенту, восстановившему сессию,
+ * повторно отправляются пропущенные события.
+ * <p>
+ * Журнал не потокобезопасен: все обращения выполняются под блокировкой рассылки комнаты.
+ */
+final class EventLog {
+    private final Message[] events;
+
+    /**
+     * Номер последнего записанного события или 0, пока журнал пуст.
+     */
+    private long lastSequence = Message.NO_SEQUENCE;
+
+    /**
+     * @param capacity количество хранимых событий;
+     */
+    EventLog(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Event log capacity must be positive");
+        }
+
+        events = new Message[capacity];
+    }
+
+    /**
+     * Записывает событие, присваивая ему следующий порядковый номер.
+     *
+     * @param key  ключ события;
+     * @param body тело события;
+     * @return событие с присвоенным номером.
+     */
+    Message append(String key, String body) {
+        Message event = new Message(key, body, Message.NO_CORRELATION, ++lastSequence);
+        events[(int) (lastSequence % events.length)] = event;
+        return event;
+    }
+
+    /**
+     * @return номер последнего записанного события или {@link Message#NO_SEQUENCE}, если журнал пуст.
+     */
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @param sequence номер последнего события, полученного клиентом;
+     * @return {@code true}, если журнал хранит все события с большими номерами.
+     */
+    boolean containsEventsAfter(long sequence) {
+        return sequence >= lastSequence - events.length;
+    }
+
+    /**
+     * @param sequence номер последнего события, полученного клиентом;
+     * @return хранимые журналом события с большими номерами в порядке их записи.
+     */
+    List<Message> getEventsAfter(long sequence) {
+        long firstSequence = Math.max(sequence, lastSequence - events.length) + 1;
+
+        List<Message> missedEvents = new ArrayList<>();
+        for (long current = Math.max(firstSequence, 1); current <= lastSequence; current++) {
+            missedEvents.add(events[(int) (current % events.length)]);
+        }
+
+        return missedEvents;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.hse.jigsaw.model.net;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Текстовый формат: каждое сообщение — объект JSON с полями {@code key}, {@code body}
+ * и необязательными {@code correlation_id} и {@code seq}, завершённый переводом строки.
+ */
+final class JsonCodec implements MessageCodec {
+    /**
+     * Максимальная длина строки сообщения в байтах.
+     */
+    private static final int MAX_MESSAGE_LENGTH = 16 * 1024 * 1024;
+
+    @Override
+    public String getName() {
+        return "json";
+    }
+
+    @Override
+    public ByteBuffer encode(Message message) {
+        JSONObject container = new JSONObject();
+        container.put("key", message.key());
+        container.put("body", message.body());
+        if (message.isCorrelated()) {
+            container.put("correlation_id", message.correlationId());
+        }
+        if (message.isSequenced()) {
+            container.put("seq", message.sequence());
+        }
+
+        return ByteBuffer.wrap((container + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Message decode(ByteBuffer buffer) throws ProtocolException {
+        int lineEnd = -1;
+        for (int index = buffer.position(); index < buffer.limit(); index++) {
+            if (buffer.get(index) == '\n') {
+                lineEnd = index;
+                break;
+            }
+        }
+
+        if (lineEnd == -1) {
+            if (buffer.remaining() > MAX_MESSAGE_LENGTH) {
+                throw new ProtocolException("Message exceeds the maximum length");
+            }
+            return null;
+        }
+
+        byte[] line = new byte[lineEnd - buffer.position()];
+        buffer.get(line);
+        buffer.get();
+
+        try {
+            JSONObject container = new JSONObject(new String(line, StandardCharsets.UTF_8));
+            String body = container.has("body") ? container.get("body").toString() : "";
+
+            String key = container.getString("key");
+            return new Message(key, body, container.optLong("correlation_id", Message.NO_CORRELATION),
+                    container.optLong("seq", Message.NO_SEQUENCE), MessageKeys.find(key));
+        } catch (JSONException exception) {
+            throw new ProtocolException(exception.getMessage());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ru.hse.jigsaw.model.net;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Состав лобби на стороне клиента. Поддерживается в актуальном состоянии применением версионированных
+ * изменений из события {@code membership_changed} и полных снимков из ответа {@code get_clients_list}.
+ */
+public class LobbyMembership {
+    /**
+     * Версия состава, отражённая в {@link LobbyMembership#members}. До получения первого снимка равна {@code -1}.
+     */
+    private long version = -1;
+
+    /**
+     * Участники лобби в порядке подключения: идентификатор — никнейм.
+     */
+    private final Map<String, String> members = new LinkedHashMap<>();
+
+    /**
+     * Заменяет состав полным снимком.
+     *
+     * @param snapshot тело ответа {@code get_clients_list};
+     */
+    public synchronized void reset(JSONObject snapshot) {
+        members.clear();
+
+        JSONArray clients = snapshot.getJSONArray("clients_list");
+        for (int index = 0; index < clients.length(); index++) {
+            JSONObject client = clients.getJSONObject(index);
+            members.put(client.getString("id"), client.getString("nickname"));
+        }
+
+        version = snapshot.optLong("version", version);
+    }
+
+    /**
+     * Применяет изменение состава. Изменения, уже учтённые в состоянии, а также изменения,
+     * полученные до первого снимка, пропускаются: первый снимок клиент запрашивает сразу после регистрации.
+     *
+     * @param delta тело события {@code membership_changed};
+     * @return {@code false}, если пропущено одно из предыдущих изменений и требуется запросить полный снимок.
+     */
+    public synchronized boolean apply(JSONObject delta) {
+        long deltaVersion = delta.getLong("version");
+        if (version < 0 || deltaVersion <= version) {
+            return true;
+        }
+        if (delta.getLong("from_version") != version) {
+            return false;
+        }
+
+        JSONArray joined = delta.getJSONArray("joined");
+        for (int index = 0; index < joined.length(); index++) {
+            JSONObject client = joined.getJSONObject(index);
+            members.put(client.getString("id"), client.getString("nickname"));
+        }
+
+        JSONArray left = delta.getJSONArray("left");
+        for (int index = 0; index < left.length(); index++) {
+            members.remove(left.getString(index));
+        }
+
+        version = deltaVersion;
+        return true;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    public synchronized int size() {
+        return members.size();
+    }
+
+    public synchronized boolean contains(String id) {
+        return members.containsKey(id);
+    }
+
+    /**
+     * @return копия состава лобби: идентификатор — никнейм.
+     */
+    public synchronized Map<String, String> getMembers() {
+        return new LinkedHashMap<>(members);
+    }
+}
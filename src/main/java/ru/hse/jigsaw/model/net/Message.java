@@ -0,0 +1,40 @@
+package ru.hse.jigsaw.model.net;
+
+/**
+ * Сообщение протокола обмена между клиентом и сервером.
+ *
+ * @param key           ключ запроса, ответа или события;
+ * @param body          тело сообщения, как правило — объект в формате JSON;
+ * @param correlationId идентификатор запроса, который сервер повторяет в ответе на него,
+ *                      либо {@link Message#NO_CORRELATION} для событий и запросов без ожидания ответа;
+ * @param sequence      порядковый номер события в журнале комнаты, по которому клиент после переподключения
+ *                      получает пропущенные события, либо {@link Message#NO_SEQUENCE};
+ * @param opcode        код ключа, присвоенный при регистрации его обработчика, по которому сообщение
+ *                      передаётся обработчику без поиска по строке, либо {@link Message#NO_OPCODE};
+ *                      должен соответствовать ключу;
+ */
+public record Message(String key, String body, long correlationId, long sequence, int opcode) {
+    public static final long NO_CORRELATION = 0;
+    public static final long NO_SEQUENCE = 0;
+    public static final int NO_OPCODE = MessageKeys.NO_OPCODE;
+
+    public Message(String key, String body) {
+        this(key, body, NO_CORRELATION);
+    }
+
+    public Message(String key, String body, long correlationId) {
+        this(key, body, correlationId, NO_SEQUENCE);
+    }
+
+    public Message(String key, String body, long correlationId, long sequence) {
+        this(key, body, correlationId, sequence, MessageKeys.find(key));
+    }
+
+    public boolean isCorrelated() {
+        return correlationId != NO_CORRELATION;
+    }
+
+    public boolean isSequenced() {
+        return sequence != NO_SEQUENCE;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.hse.jigsaw.model.net;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * Формат представления сообщений {@link Message} в потоке байтов.
+ * Реализации должны быть потокобезопасными и не хранить состояние между вызовами.
+ */
+public interface MessageCodec {
+    /**
+     * @return название формата, которым стороны обмениваются при регистрации.
+     */
+    String getName();
+
+    /**
+     * Кодирует сообщение.
+     *
+     * @param message кодируемое сообщение;
+     * @return буфер, готовый к чтению и содержащий ровно одно сообщение.
+     */
+    ByteBuffer encode(Message message);
+
+    /**
+     * Декодирует очередное сообщение. Если сообщение получено не полностью, позиция буфера не изменяется.
+     *
+     * @param buffer буфер в режиме чтения;
+     * @return декодированное сообщение или {@code null}, если данных пока недостаточно;
+     * @throws ProtocolException в случае, если данные не соответствуют формату.
+     */
+    Message decode(ByteBuffer buffer) throws ProtocolException;
+}
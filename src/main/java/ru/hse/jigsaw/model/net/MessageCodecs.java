@@ -0,0 +1,66 @@
+package ru.hse.jigsaw.model.net;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр форматов сообщений, известных клиенту и серверу.
+ */
+public final class MessageCodecs {
+    /**
+     * Системное свойство, принудительно задающее формат, запрашиваемый клиентом (например, {@code json} для отладки).
+     */
+    public static final String CODEC_PROPERTY = "jigsaw.codec";
+
+    /**
+     * Текстовый формат: каждое сообщение — объект JSON в отдельной строке. Используется при регистрации.
+     */
+    public static final MessageCodec JSON = new JsonCodec();
+
+    /**
+     * Компактный двоичный формат с префиксом длины и целочисленными кодами ключей.
+     */
+    public static final MessageCodec BINARY = new BinaryCodec();
+
+    private static final Map<String, MessageCodec> codecs = new ConcurrentHashMap<>(Map.of(
+            JSON.getName(), JSON,
+            BINARY.getName(), BINARY
+    ));
+
+    private MessageCodecs() {
+    }
+
+    /**
+     * Регистрирует пользовательский формат сообщений.
+     *
+     * @param codec регистрируемый формат;
+     */
+    public static void register(MessageCodec codec) {
+        codecs.put(codec.getName(), codec);
+    }
+
+    /**
+     * @param name название формата;
+     * @return зарегистрированный формат или {@code null}, если формат неизвестен.
+     */
+    public static MessageCodec find(String name) {
+        return codecs.get(name);
+    }
+
+    /**
+     * @return названия форматов в порядке предпочтения клиента.
+     */
+    public static List<String> getPreferredNames() {
+        String forcedCodec = System.getProperty(CODEC_PROPERTY);
+        if (forcedCodec != null) {
+            return List.of(forcedCodec);
+        }
+
+        List<String> names = new ArrayList<>();
+        names.add(BINARY.getName());
+        names.add(JSON.getName());
+        return names;
+    }
+}
@@ -0,0 +1,130 @@
+package ru.hse.jigsaw.model.net;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Общая для процесса таблица кодов ключей сообщений. Ключ получает небольшой постоянный код при регистрации
+ * обработчика, поэтому обработчик входящего сообщения находится по индексу в массиве, а не по строке.
+ * Ключи протокола занимают первые коды и совпадают с кодами, передаваемыми {@link BinaryCodec};
+ * их сообщения декодируются вовсе без вычисления хеша строки.
+ * <p>
+ * Чтение не захватывает блокировок: таблица заменяется неизменяемым снимком при каждом новом ключе.
+ */
+final class MessageKeys {
+    /**
+     * Код ключа, для которого не зарегистрирован ни один обработчик.
+     */
+    static final int NO_OPCODE = -1;
+
+    /**
+     * Ключи протокола. Код ключа равен его индексу в массиве; код 0 зарезервирован за ключами,
+     * передаваемыми строкой. Новые ключи добавляются только в конец, а их количество не должно достигать
+     * признаков кадра {@link BinaryCodec}, то есть 64.
+     */
+    private static final String[] protocolKeys = {
+            null,
+            "registration",
+            "server_shutdown",
+            "clients_list_changed",
+            "get_clients_list",
+            "game_started",
+            "game_over",
+            "players_info_changed",
+            "get_shape",
+            "get_game_duration",
+            "player_finished",
+            "membership_changed",
+            "ping",
+            "pong",
+            "get_shapes",
+            "leave"
+    };
+
+    /**
+     * Количество кодов протокола, включая зарезервированный код 0.
+     */
+    static final int PROTOCOL_KEYS_COUNT = protocolKeys.length;
+
+    private static final Object lock = new Object();
+
+    private static volatile Snapshot snapshot;
+
+    static {
+        Map<String, Integer> opcodes = new HashMap<>();
+        for (int opcode = 1; opcode < protocolKeys.length; opcode++) {
+            opcodes.put(protocolKeys[opcode], opcode);
+        }
+        snapshot = new Snapshot(Map.copyOf(opcodes), protocolKeys.clone());
+    }
+
+    /**
+     * Неизменяемый снимок таблицы.
+     *
+     * @param opcodes коды по ключам;
+     * @param keys    ключи по кодам;
+     */
+    private record Snapshot(Map<String, Integer> opcodes, String[] keys) {
+    }
+
+    private MessageKeys() {
+    }
+
+    /**
+     * Присваивает ключу код, если он ещё не присвоен. Вызывается только при регистрации обработчиков,
+     * поэтому количество кодов ограничено ключами, известными приложению.
+     *
+     * @param key ключ сообщения;
+     * @return код ключа.
+     */
+    static int intern(String key) {
+        Integer opcode = snapshot.opcodes().get(key);
+        if (opcode != null) {
+            return opcode;
+        }
+
+        synchronized (lock) {
+            Snapshot current = snapshot;
+            opcode = current.opcodes().get(key);
+            if (opcode != null) {
+                return opcode;
+            }
+
+            int newOpcode = current.keys().length;
+            Map<String, Integer> opcodes = new HashMap<>(current.opcodes());
+            opcodes.put(key, newOpcode);
+            String[] keys = Arrays.copyOf(current.keys(), newOpcode + 1);
+            keys[newOpcode] = key;
+
+            snapshot = new Snapshot(Map.copyOf(opcodes), keys);
+            return newOpcode;
+        }
+    }
+
+    /**
+     * @param key ключ сообщения;
+     * @return код ключа или {@link MessageKeys#NO_OPCODE}, если ни один обработчик ключа не регистрировался.
+     */
+    static int find(String key) {
+        Integer opcode = snapshot.opcodes().get(key);
+        return opcode != null ? opcode : NO_OPCODE;
+    }
+
+    /**
+     * @param opcode код ключа;
+     * @return ключ или {@code null}, если код не присвоен.
+     */
+    static String getKey(int opcode) {
+        String[] keys = snapshot.keys();
+        return opcode > 0 && opcode < keys.length ? keys[opcode] : null;
+    }
+
+    /**
+     * @param opcode код ключа;
+     * @return {@code true}, если код передаётся в двоичном формате вместо ключа.
+     */
+    static boolean isProtocolOpcode(int opcode) {
+        return opcode > 0 && opcode < PROTOCOL_KEYS_COUNT;
+    }
+}
@@ -0,0 +1,122 @@
+package ru.hse.jigsaw.model.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Буфер входящих данных соединения. Позволяет сменить формат сообщений посреди потока,
+ * поскольку байты, не относящиеся к уже декодированным сообщениям, остаются в буфере.
+ */
+final class MessageReader {
+    private static final int INITIAL_CAPACITY = 8192;
+
+    /**
+     * Буфер в режиме записи: недекодированные данные расположены от {@link MessageReader#readPosition}
+     * до его текущей позиции.
+     */
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+    /**
+     * Начало данных, ещё не декодированных в сообщения. Декодированные данные не сдвигаются после каждого
+     * сообщения: место под ними освобождается, когда весь буфер декодирован или в нём не осталось места.
+     */
+    private int readPosition = 0;
+
+    /**
+     * Счётчик полученных байтов, общий для всех соединений сервера или клиента.
+     */
+    private final LongAdder receivedBytes;
+
+    /**
+     * @param receivedBytes счётчик, учитывающий все прочитанные байты;
+     */
+    MessageReader(LongAdder receivedBytes) {
+        this.receivedBytes = receivedBytes;
+    }
+
+    /**
+     * Декодирует очередное сообщение из уже полученных данных.
+     *
+     * @param codec формат сообщений;
+     * @return сообщение или {@code null}, если данных пока недостаточно;
+     * @throws ProtocolException в случае, если данные не соответствуют формату.
+     */
+    Message poll(MessageCodec codec) throws ProtocolException {
+        int writePosition = buffer.position();
+        buffer.limit(writePosition).position(readPosition);
+        try {
+            Message message = codec.decode(buffer);
+            readPosition = buffer.position();
+            if (readPosition == writePosition) {
+                readPosition = 0;
+                writePosition = 0;
+            }
+            return message;
+        } finally {
+            buffer.limit(buffer.capacity()).position(writePosition);
+        }
+    }
+
+    /**
+     * Дочитывает в буфер доступные данные из неблокирующего канала.
+     *
+     * @return количество прочитанных байтов или {@code -1}, если канал закрыт другой стороной.
+     */
+    int readFrom(ReadableByteChannel channel) throws IOException {
+        ensureWritable();
+        int bytesRead = channel.read(buffer);
+        if (bytesRead > 0) {
+            receivedBytes.add(bytesRead);
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Блокирует поток до получения очередного сообщения.
+     *
+     * @param stream поток входящих данных;
+     * @param codec  формат сообщений;
+     * @return полученное сообщение;
+     * @throws EOFException в случае, если поток закрыт другой стороной.
+     */
+    Message read(InputStream stream, MessageCodec codec) throws IOException {
+        Message message;
+        while ((message = poll(codec)) == null) {
+            ensureWritable();
+
+            int bytesRead = stream.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (bytesRead == -1) {
+                throw new EOFException("Connection closed by peer");
+            }
+            buffer.position(buffer.position() + bytesRead);
+            receivedBytes.add(bytesRead);
+        }
+
+        return message;
+    }
+
+    /**
+     * Освобождает место под новые данные, сдвигая недекодированные данные в начало буфера,
+     * а если буфер занят ими целиком — расширяя его.
+     */
+    private void ensureWritable() {
+        if (buffer.hasRemaining()) {
+            return;
+        }
+
+        buffer.limit(buffer.position()).position(readPosition);
+        if (readPosition > 0) {
+            buffer.compact();
+        } else {
+            ByteBuffer extendedBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
+            extendedBuffer.put(buffer);
+            buffer = extendedBuffer;
+        }
+        readPosition = 0;
+    }
+}
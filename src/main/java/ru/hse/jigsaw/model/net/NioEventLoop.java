@@ -0,0 +1,132 @@
+package ru.hse.jigsaw.model.net;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Цикл событий, обслуживающий на одном потоке чтение и запись всех закреплённых за ним соединений.
+ */
+final class NioEventLoop implements Runnable {
+    private static final Logger logger = Logger.getLogger(Server.class.getName());
+
+    private final Selector selector;
+
+    /**
+     * Соединения, ожидающие регистрации в селекторе.
+     */
+    private final Queue<ChannelClientHandler> pendingRegistrations = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Соединения, в очередь которых из сторонних потоков были добавлены исходящие сообщения.
+     */
+    private final Queue<ChannelClientHandler> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean isRunning = true;
+    private volatile Thread loopThread;
+
+    NioEventLoop() throws IOException {
+        selector = Selector.open();
+    }
+
+    void register(ChannelClientHandler connection) {
+        pendingRegistrations.add(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Планирует отправку исходящих сообщений соединения.
+     *
+     * @param connection соединение, в очереди которого появились сообщения;
+     */
+    void requestWrite(ChannelClientHandler connection) {
+        pendingWrites.add(connection);
+        if (Thread.currentThread() != loopThread) {
+            selector.wakeup();
+        }
+    }
+
+    void stop() {
+        isRunning = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        loopThread = Thread.currentThread();
+
+        try {
+            while (isRunning) {
+                selector.select();
+
+                registerPending();
+                flushPending();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    ChannelClientHandler connection = (ChannelClientHandler) key.attachment();
+                    if (key.isValid() && key.isReadable()) {
+                        connection.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                }
+                flushPending();
+            }
+        } catch (IOException exception) {
+            logger.log(Level.SEVERE, "Возникла исключительная ситуация в цикле событий:", exception);
+        } finally {
+            flushPending();
+            closeAll();
+        }
+    }
+
+    private void registerPending() {
+        ChannelClientHandler connection;
+        while ((connection = pendingRegistrations.poll()) != null) {
+            try {
+                connection.attach(selector);
+            } catch (ClosedChannelException exception) {
+                connection.closeConnection();
+            }
+        }
+    }
+
+    private void flushPending() {
+        ChannelClientHandler connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            connection.flush();
+        }
+    }
+
+    /**
+     * Закрывает все соединения цикла. После остановки цикла неотправленные сообщения дописать некому,
+     * поэтому каналы закрываются сразу.
+     */
+    private void closeAll() {
+        List<SelectionKey> keys = new ArrayList<>(selector.keys());
+        for (SelectionKey key : keys) {
+            ChannelClientHandler connection = (ChannelClientHandler) key.attachment();
+            connection.closeConnection();
+            connection.abortResources();
+        }
+
+        try {
+            selector.close();
+        } catch (IOException exception) {
+            logger.log(Level.SEVERE, "Возникла исключительная ситуация при закрытии селектора:", exception);
+        }
+    }
+}
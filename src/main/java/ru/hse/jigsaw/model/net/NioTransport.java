@@ -0,0 +1,115 @@
+package ru.hse.jigsaw.model.net;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Неблокирующий транспорт: один поток принимает соединения и распределяет их по фиксированному набору
+ * циклов событий {@link NioEventLoop}, каждый из которых обслуживает свою часть клиентов на одном потоке.
+ */
+final class NioTransport implements ServerTransport {
+    private static final Logger logger = Logger.getLogger(Server.class.getName());
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector acceptSelector;
+    private final NioEventLoop[] eventLoops;
+
+    private final ExecutorService eventLoopsExecutor;
+    private final ExecutorService serverExecutor;
+
+    /**
+     * Индекс цикла событий, которому будет передано следующее соединение.
+     */
+    private int nextEventLoopIndex = 0;
+
+    NioTransport(ServerSocketChannel serverChannel, int ioThreadsCount) throws IOException {
+        if (ioThreadsCount < 1) {
+            throw new IllegalArgumentException("The number of I/O threads must be positive");
+        }
+
+        this.serverChannel = serverChannel;
+        serverChannel.configureBlocking(false);
+
+        acceptSelector = Selector.open();
+        serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+        eventLoops = new NioEventLoop[ioThreadsCount];
+        for (int index = 0; index < ioThreadsCount; index++) {
+            eventLoops[index] = new NioEventLoop();
+        }
+
+        eventLoopsExecutor = Executors.newFixedThreadPool(ioThreadsCount);
+        serverExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @Override
+    public void start(Server server) {
+        for (NioEventLoop eventLoop : eventLoops) {
+            eventLoopsExecutor.execute(eventLoop);
+        }
+
+        serverExecutor.submit(() -> {
+            try {
+                logger.log(Level.INFO, "Сервер запущен.");
+
+                while (serverChannel.isOpen()) {
+                    acceptSelector.select();
+
+                    Iterator<SelectionKey> keys = acceptSelector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+
+                        if (key.isValid() && key.isAcceptable()) {
+                            acceptPending(server);
+                        }
+                    }
+                }
+            } catch (ClosedSelectorException | ClosedChannelException exception) {
+                logger.log(Level.INFO, "Приём соединений прекращён.");
+            } catch (IOException exception) {
+                logger.log(Level.SEVERE, "Возникла исключительная ситуация:", exception);
+            } finally {
+                server.sendEvent("server_shutdown");
+                server.closeAllConnections();
+                server.shutdown();
+
+                for (NioEventLoop eventLoop : eventLoops) {
+                    eventLoop.stop();
+                }
+                eventLoopsExecutor.shutdown();
+                logger.log(Level.INFO, "Сервер остановлен.");
+            }
+        });
+    }
+
+    private void acceptPending(Server server) throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+            NioEventLoop eventLoop = eventLoops[nextEventLoopIndex];
+            nextEventLoopIndex = (nextEventLoopIndex + 1) % eventLoops.length;
+            eventLoop.register(new ChannelClientHandler(channel, eventLoop, server));
+        }
+    }
+
+    @Override
+    public boolean isActive() {
+        return serverChannel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverChannel.close();
+        acceptSelector.wakeup();
+        serverExecutor.shutdown();
+    }
+}
@@ -0,0 +1,267 @@
+package ru.hse.jigsaw.model.net;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ограниченная очередь исходящих сообщений соединения.
+ * Незаписанное событие с заменяемым ключом вытесняется более новым событием с тем же ключом,
+ * а при переполнении очереди событиями применяется политика {@link SlowConsumerPolicy}.
+ * Ответы на запросы не отбрасываются: пока очередь заполнена, транспорт прекращает читать запросы клиента.
+ */
+final class OutboundQueue {
+    private final int capacity;
+    private final SlowConsumerPolicy policy;
+
+    /**
+     * Общий для всех соединений сервера счётчик отброшенных сообщений.
+     */
+    private final LongAdder droppedMessagesTotal;
+    private long droppedMessagesCount = 0;
+
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    /**
+     * Ожидающие отправки события с заменяемыми ключами.
+     */
+    private final Map<String, Entry> pendingEvents = new HashMap<>();
+
+    /**
+     * Количество сообщений в очереди, не считая вытесненных.
+     */
+    private int size = 0;
+    private boolean isClosed = false;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    OutboundQueue(int capacity, SlowConsumerPolicy policy, LongAdder droppedMessagesTotal) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+
+        this.capacity = capacity;
+        this.policy = policy;
+        this.droppedMessagesTotal = droppedMessagesTotal;
+    }
+
+    /**
+     * Добавляет сообщение в очередь.
+     *
+     * @param key         ключ сообщения;
+     * @param message     закодированное сообщение;
+     * @param isEvent     является ли сообщение событием, а не ответом на запрос;
+     * @param isReplaceable может ли событие быть вытеснено более новым событием с тем же ключом;
+     * @return {@code false}, если очередь переполнена и соединение согласно политике должно быть разорвано.
+     */
+    boolean offer(String key, EncodedMessage message, boolean isEvent, boolean isReplaceable) {
+        lock.lock();
+        try {
+            if (isClosed) {
+                return true;
+            }
+
+            if (isReplaceable) {
+                Entry supersededEntry = pendingEvents.remove(key);
+                if (supersededEntry != null) {
+                    supersededEntry.message = null;
+                    size--;
+                }
+            }
+
+            if (isEvent && size >= capacity && !makeRoom()) {
+                return policy != SlowConsumerPolicy.DISCONNECT;
+            }
+
+            Entry entry = new Entry(key, message, isEvent);
+            entries.add(entry);
+            if (isReplaceable) {
+                pendingEvents.put(key, entry);
+            }
+            size++;
+
+            if (entries.size() > 2 * capacity) {
+                entries.removeIf(queuedEntry -> queuedEntry.message == null);
+            }
+
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Освобождает место в заполненной очереди согласно политике.
+     *
+     * @return {@code true}, если новое сообщение может быть добавлено.
+     */
+    private boolean makeRoom() {
+        if (policy == SlowConsumerPolicy.COLLAPSE) {
+            Iterator<Entry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.message != null && entry.isEvent) {
+                    iterator.remove();
+                    pendingEvents.remove(entry.key, entry);
+                    size--;
+                    countDropped();
+                    return true;
+                }
+            }
+        }
+
+        if (policy != SlowConsumerPolicy.DISCONNECT) {
+            countDropped();
+        }
+        return false;
+    }
+
+    private void countDropped() {
+        droppedMessagesCount++;
+        droppedMessagesTotal.increment();
+    }
+
+    /**
+     * @return очередное сообщение или {@code null}, если очередь пуста.
+     */
+    EncodedMessage poll() {
+        lock.lock();
+        try {
+            return pollEntry();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ожидает, пока в очереди не появится свободное место или она не будет закрыта.
+     */
+    void awaitCapacity() throws InterruptedException {
+        lock.lock();
+        try {
+            while (size >= capacity && !isClosed) {
+                notFull.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Ожидает появления сообщения в очереди.
+     *
+     * @return очередное сообщение или {@code null}, если очередь закрыта и все сообщения из неё получены.
+     */
+    EncodedMessage take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (size == 0 && !isClosed) {
+                notEmpty.await();
+            }
+
+            return pollEntry();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private EncodedMessage pollEntry() {
+        Entry entry;
+        while ((entry = entries.poll()) != null) {
+            if (entry.message != null) {
+                pendingEvents.remove(entry.key, entry);
+                if (size-- == capacity) {
+                    notFull.signal();
+                }
+                return entry.message;
+            }
+        }
+
+        return null;
+    }
+
+    boolean isEmpty() {
+        lock.lock();
+        try {
+            return size == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isFull() {
+        lock.lock();
+        try {
+            return size >= capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long getDroppedMessagesCount() {
+        lock.lock();
+        try {
+            return droppedMessagesCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Запрещает добавление новых сообщений. Уже добавленные сообщения остаются доступны для получения.
+     */
+    void close() {
+        lock.lock();
+        try {
+            isClosed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            pendingEvents.clear();
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry {
+        private final String key;
+        private final boolean isEvent;
+
+        /**
+         * Закодированное сообщение. Равно {@code null}, если сообщение вытеснено более новым.
+         */
+        private EncodedMessage message;
+
+        private Entry(String key, EncodedMessage message, boolean isEvent) {
+            this.key = key;
+            this.message = message;
+            this.isEvent = isEvent;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.hse.jigsaw.model.net;
+
+/**
+ * Состояние очереди исходящих сообщений клиента.
+ *
+ * @param clientId             идентификатор клиента;
+ * @param queueDepth           количество сообщений, ожидающих отправки;
+ * @param droppedMessagesCount количество сообщений, отброшенных из-за переполнения очереди;
+ */
+public record OutboundStatistics(String clientId, int queueDepth, long droppedMessagesCount) {
+}
@@ -0,0 +1,374 @@
+package ru.hse.jigsaw.model.net;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Комната сервера — отдельное лобби со своим составом, состоянием регистрации и таблицами событий и ответов.
+ * Состояние комнаты защищено её собственной блокировкой, поэтому обращения к разным комнатам
+ * не конкурируют между собой, а события комнаты рассылаются только её участникам. Блокировки комнаты —
+ * {@link ReentrantLock}, а не мониторы: виртуальный поток, ожидающий под ними, не закрепляет поток-носитель.
+ * <p>
+ * События комнаты нумеруются и сохраняются в ограниченном журнале {@link EventLog}, чтобы клиент,
+ * восстановивший сессию после разрыва соединения, получил только пропущенные события.
+ */
+public class Room {
+    /**
+     * Получатель уведомлений об изменении состава комнаты. Уведомления передаются вне блокировки комнаты
+     * потоком, обработавшим подключение или отключение клиента.
+     */
+    public interface MembershipListener {
+        void onMemberJoined(String id, String nickname);
+
+        void onMemberLeft(String id);
+    }
+
+    private final String id;
+    private final Server server;
+
+    /**
+     * Блокировка состава комнаты, состояния регистрации и накопленных изменений состава.
+     */
+    private final Lock lock = new ReentrantLock();
+    private boolean couldRegister = true;
+    private boolean isClosed = false;
+
+    /**
+     * Участники комнаты в порядке подключения.
+     */
+    private final Map<String, Server.ClientHandler> members = new LinkedHashMap<>();
+
+    private long membershipVersion = 0;
+    private final Map<String, Server.ClientHandler> joinedMembers = new LinkedHashMap<>();
+    private final Set<String> leftMembers = new LinkedHashSet<>();
+    private boolean isMembershipBroadcastScheduled = false;
+
+    /**
+     * Блокировка нумерации и рассылки событий. Захватывается раньше блокировки состава, поэтому события
+     * доходят до каждого участника в порядке их номеров, а восстановленная сессия не пропускает события,
+     * разосланные во время повторной отправки журнала.
+     */
+    private final Lock eventLock = new ReentrantLock();
+    private final EventLog eventLog;
+
+    private final DispatchTable<Supplier<JSONObject>> events = new DispatchTable<>();
+    private final DispatchTable<Function<String, JSONObject>> responses = new DispatchTable<>();
+
+    private volatile MembershipListener membershipListener;
+
+    Room(String id, Server server) {
+        this.id = id;
+        this.server = server;
+        eventLog = new EventLog(server.getEventReplayCapacity());
+
+        responses.put("get_clients_list", body -> getMembershipSnapshot());
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void closeRegistration() {
+        lock.lock();
+        try {
+            couldRegister = false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void openRegistration() {
+        lock.lock();
+        try {
+            couldRegister = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMembersCount() {
+        lock.lock();
+        try {
+            return members.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return общий планировщик сервера, на котором комната отсчитывает сроки и выполняет периодические задачи.
+     */
+    public ScheduledExecutorService getScheduler() {
+        return server.getScheduler();
+    }
+
+    public void setMembershipListener(MembershipListener membershipListener) {
+        this.membershipListener = membershipListener;
+    }
+
+    public void addEvent(String eventKey, Supplier<JSONObject> bodyGenerator) {
+        events.put(eventKey, bodyGenerator);
+    }
+
+    public void removeEvent(String eventKey) {
+        events.remove(eventKey);
+    }
+
+    public void addResponse(String responseKey, Function<String, JSONObject> bodyGenerator) {
+        responses.put(responseKey, bodyGenerator);
+    }
+
+    public void removeResponse(String responseKey) {
+        responses.remove(responseKey);
+    }
+
+    /**
+     * Рассылает событие участникам комнаты.
+     *
+     * @param eventKey ключ события;
+     */
+    public void sendEvent(String eventKey) {
+        broadcastEvent(eventKey, events.get(eventKey).get().toString());
+    }
+
+    /**
+     * Нумерует событие, записывает его в журнал и рассылает участникам комнаты. Соединения клиентов,
+     * не успевающих принимать события, разрываются после снятия блокировки.
+     *
+     * @param eventKey ключ события;
+     * @param body     тело события;
+     */
+    private void broadcastEvent(String eventKey, String body) {
+        List<Server.ClientHandler> slowConsumers;
+        eventLock.lock();
+        try {
+            slowConsumers = server.broadcast(eventLog.append(eventKey, body), getMembersSnapshot());
+        } finally {
+            eventLock.unlock();
+        }
+
+        server.abortSlowConsumers(slowConsumers);
+    }
+
+    Message getResponse(Message request) {
+        Function<String, JSONObject> bodyGenerator = responses.get(request);
+        if (bodyGenerator == null) {
+            throw new IllegalArgumentException("Unknown request key: " + request.key());
+        }
+
+        return new Message(request.key(), bodyGenerator.apply(request.body()).toString(), request.correlationId(),
+                Message.NO_SEQUENCE, request.opcode());
+    }
+
+    /**
+     * Добавляет клиента в комнату, если регистрация в ней открыта.
+     *
+     * @param member   регистрируемый клиент;
+     * @param onJoined действие, получающее номер последнего события комнаты, которое клиент не получит,
+     *                 и выполняемое до того, как клиент станет получателем событий комнаты;
+     * @return {@code false}, если регистрация закрыта или комната удалена.
+     */
+    boolean join(Server.ClientHandler member, LongConsumer onJoined) {
+        eventLock.lock();
+        try {
+            lock.lock();
+            try {
+                if (!couldRegister || isClosed) {
+                    return false;
+                }
+
+                onJoined.accept(eventLog.getLastSequence());
+                members.put(member.getId(), member);
+                joinedMembers.put(member.getId(), member);
+                scheduleMembershipBroadcast();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            eventLock.unlock();
+        }
+
+        MembershipListener listener = membershipListener;
+        if (listener != null) {
+            listener.onMemberJoined(member.getId(), member.getNickname());
+        }
+        return true;
+    }
+
+    /**
+     * Передаёт место приостановленной сессии в комнате новому соединению того же клиента и повторно
+     * отправляет ему события журнала, номера которых больше последнего полученного клиентом.
+     * Состав комнаты при этом не меняется, поэтому остальные участники не получают уведомлений.
+     *
+     * @param suspendedMember соединение, сессия которого была приостановлена;
+     * @param member          новое соединение клиента;
+     * @param lastSequence    номер последнего события, полученного клиентом;
+     * @param onRejoined      действие, получающее признак того, что журнал хранит все пропущенные события,
+     *                        и выполняемое до повторной отправки событий;
+     * @return {@code false}, если приостановленная сессия уже исключена из комнаты.
+     */
+    boolean rejoin(Server.ClientHandler suspendedMember, Server.ClientHandler member, long lastSequence,
+                   Consumer<Boolean> onRejoined) {
+        List<Server.ClientHandler> slowConsumers = new ArrayList<>();
+        eventLock.lock();
+        try {
+            lock.lock();
+            try {
+                if (members.get(member.getId()) != suspendedMember) {
+                    return false;
+                }
+
+                members.put(member.getId(), member);
+                joinedMembers.replace(member.getId(), member);
+            } finally {
+                lock.unlock();
+            }
+
+            onRejoined.accept(eventLog.containsEventsAfter(lastSequence));
+            for (Message event : eventLog.getEventsAfter(lastSequence)) {
+                if (!member.offerEvent(event)) {
+                    slowConsumers.add(member);
+                    break;
+                }
+            }
+        } finally {
+            eventLock.unlock();
+        }
+
+        server.abortSlowConsumers(slowConsumers);
+        return true;
+    }
+
+    /**
+     * Исключает клиента из комнаты.
+     *
+     * @param member отключившийся клиент;
+     * @return {@code true}, если после выхода клиента комната опустела.
+     */
+    boolean leave(Server.ClientHandler member) {
+        boolean isEmpty;
+        lock.lock();
+        try {
+            if (members.remove(member.getId()) == null) {
+                return false;
+            }
+
+            // Снимок состава мог уже включить ещё не разосланного участника, поэтому уход отмечается всегда.
+            joinedMembers.remove(member.getId());
+            leftMembers.add(member.getId());
+            scheduleMembershipBroadcast();
+            isEmpty = members.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+
+        MembershipListener listener = membershipListener;
+        if (listener != null) {
+            listener.onMemberLeft(member.getId());
+        }
+        return isEmpty;
+    }
+
+    /**
+     * Закрывает опустевшую комнату для новых участников.
+     *
+     * @return {@code true}, если комната пуста и закрыта.
+     */
+    boolean closeIfEmpty() {
+        lock.lock();
+        try {
+            isClosed = members.isEmpty();
+            return isClosed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    List<Server.ClientHandler> getMembersSnapshot() {
+        lock.lock();
+        try {
+            return List.copyOf(members.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Планирует рассылку накопленных изменений состава по истечении окна, заданного сервером.
+     * Вызывается под блокировкой комнаты.
+     */
+    private void scheduleMembershipBroadcast() {
+        if (!isMembershipBroadcastScheduled && !server.isShuttingDown()) {
+            isMembershipBroadcastScheduled = true;
+            server.schedule(this::broadcastMembershipChanges, server.getMembershipDebounceMillis());
+        }
+    }
+
+    /**
+     * Рассылает накопленные изменения состава комнаты одним событием {@code membership_changed}
+     * с полями {@code from_version}, {@code version}, {@code joined} и {@code left}.
+     * Версия присваивается и событие рассылается под одной блокировкой событий, поэтому изменения доходят
+     * до участников в порядке версий, даже если рассылки выполняются разными потоками планировщика.
+     */
+    private void broadcastMembershipChanges() {
+        List<Server.ClientHandler> slowConsumers;
+        eventLock.lock();
+        try {
+            JSONObject delta = new JSONObject();
+            lock.lock();
+            try {
+                isMembershipBroadcastScheduled = false;
+                if (joinedMembers.isEmpty() && leftMembers.isEmpty()) {
+                    return;
+                }
+
+                delta.put("from_version", membershipVersion);
+                delta.put("version", ++membershipVersion);
+                delta.put("joined", toJson(joinedMembers.values()));
+                delta.put("left", new JSONArray(leftMembers));
+
+                joinedMembers.clear();
+                leftMembers.clear();
+            } finally {
+                lock.unlock();
+            }
+
+            slowConsumers = server.broadcast(eventLog.append("membership_changed", delta.toString()),
+                    getMembersSnapshot());
+        } finally {
+            eventLock.unlock();
+        }
+
+        server.abortSlowConsumers(slowConsumers);
+    }
+
+    /**
+     * @return полный состав комнаты в порядке подключения и версия, которой он соответствует.
+     */
+    private JSONObject getMembershipSnapshot() {
+        lock.lock();
+        try {
+            return new JSONObject().put("version", membershipVersion).put("clients_list", toJson(members.values()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static JSONArray toJson(Collection<Server.ClientHandler> members) {
+        JSONArray container = new JSONArray();
+        for (Server.ClientHandler member : members) {
+            container.put(new JSONObject().put("id", member.getId()).put("nickname", member.getNickname()));
+        }
+
+        return container;
+    }
+}
@@ -1,17 +1,28 @@
 package ru.hse.jigsaw.model.net;
 
-import javafx.collections.*;
 import org.json.JSONArray;
 import org.json.JSONObject;
+import ru.hse.jigsaw.model.metrics.MBeans;
 
+import javax.management.ObjectName;
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.SocketException;
+import java.security.SecureRandom;
+import java.nio.channels.ServerSocketChannel;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.logging.Level;
@@ -20,162 +31,795 @@ import java.util.logging.Logger;
 public class Server {
     private static final Logger logger = Logger.getLogger(Server.class.getName());
 
-    private int connectionsCount = 0;
-    private boolean couldRegister = true;
+    /**
+     * Системное свойство, включающее неблокирующий режим работы сервера в {@link Server#open(int)}.
+     */
+    public static final String NIO_MODE_PROPERTY = "jigsaw.server.nio";
 
-    private final ServerSocket serverSocket;
-    private final ObservableMap<String, ClientHandler> activeConnections;
+    /**
+     * Системное свойство, задающее количество потоков ввода-вывода в неблокирующем режиме.
+     */
+    public static final String IO_THREADS_PROPERTY = "jigsaw.server.ioThreads";
 
-    private final ExecutorService clientsThreadPool;
-    private final ExecutorService serverExecutor;
+    /**
+     * Тело ответа на регистрацию, отправляемого после её закрытия.
+     */
+    public static final String REGISTRATION_CLOSED_MESSAGE = "Регистрация закрыта.";
 
-    private final Map<String, Supplier<JSONObject>> events;
-    private final Map<String, Function<String, JSONObject>> responses;
+    /**
+     * Тело ответа на регистрацию в комнате, которой нет на сервере.
+     */
+    public static final String ROOM_NOT_FOUND_MESSAGE = "Комната не найдена.";
 
+    /**
+     * Тело ответа на регистрацию, отправляемого при достижении наибольшего количества соединений.
+     */
+    public static final String SERVER_FULL_MESSAGE = "Сервер переполнен.";
+
+    /**
+     * Причина отказа в регистрации клиенту, не приславшему запрос регистрации за отведённое время.
+     * Такому клиенту ответ не отправляется, соединение разрывается.
+     */
+    public static final String HANDSHAKE_TIMEOUT_MESSAGE = "Время ожидания регистрации истекло.";
+
+    /**
+     * Идентификатор комнаты, в которую попадают клиенты, не указавшие комнату при регистрации.
+     */
+    public static final String DEFAULT_ROOM_ID = "lobby";
+
+    /**
+     * Системное свойство, задающее ёмкость очереди исходящих сообщений каждого клиента.
+     */
+    public static final String OUTBOUND_QUEUE_CAPACITY_PROPERTY = "jigsaw.server.outboundQueueCapacity";
+
+    /**
+     * Системное свойство, задающее политику {@link SlowConsumerPolicy} для клиентов, не успевающих принимать данные.
+     */
+    public static final String SLOW_CONSUMER_POLICY_PROPERTY = "jigsaw.server.slowConsumerPolicy";
+
+    /**
+     * События, каждое из которых полностью описывает текущее состояние.
+     * Неотправленное событие из этого набора вытесняется более новым событием с тем же ключом.
+     */
+    private static final Set<String> replaceableEvents = Set.of("players_info_changed");
+
+    /**
+     * Системное свойство, задающее окно (в миллисекундах), изменения состава лобби внутри которого
+     * объединяются в одно событие {@code membership_changed}.
+     */
+    public static final String MEMBERSHIP_DEBOUNCE_PROPERTY = "jigsaw.server.membershipDebounceMillis";
+
+    /**
+     * Системное свойство, задающее период (в миллисекундах) отправки клиентам сообщений {@code ping}.
+     * Значение 0 отключает проверку активности соединений.
+     */
+    public static final String HEARTBEAT_INTERVAL_PROPERTY = "jigsaw.server.heartbeatIntervalMillis";
+
+    /**
+     * Системное свойство, задающее время (в миллисекундах), по истечении которого соединение,
+     * не передавшее ни одного сообщения, разрывается.
+     */
+    public static final String IDLE_TIMEOUT_PROPERTY = "jigsaw.server.idleTimeoutMillis";
+
+    /**
+     * Системное свойство, задающее время (в миллисекундах), за которое принятое соединение должно прислать
+     * запрос регистрации, иначе оно разрывается. Значение 0 отключает ограничение.
+     */
+    public static final String HANDSHAKE_TIMEOUT_PROPERTY = "jigsaw.server.handshakeTimeoutMillis";
+
+    /**
+     * Системное свойство, задающее время (в миллисекундах), в течение которого клиент, потерявший соединение,
+     * может восстановить сессию. Значение 0 отключает восстановление сессий.
+     */
+    public static final String SESSION_GRACE_PROPERTY = "jigsaw.server.sessionGraceMillis";
+
+    /**
+     * Системное свойство, задающее количество последних событий, хранимых каждой комнатой
+     * для повторной отправки клиентам, восстановившим сессию.
+     */
+    public static final String EVENT_REPLAY_CAPACITY_PROPERTY = "jigsaw.server.eventReplayCapacity";
+
+    /**
+     * Длина ключа сессии в байтах.
+     */
+    private static final int SESSION_TOKEN_LENGTH = 16;
+
+    /**
+     * Длительность такта и количество ячеек колеса таймеров проверки активности соединений.
+     */
+    private static final long HEARTBEAT_TICK_MILLIS = 100;
+    private static final int HEARTBEAT_WHEEL_SIZE = 512;
+
+    /**
+     * Количество потоков общего планировщика сервера.
+     */
+    private static final int SCHEDULER_THREADS_COUNT = 2;
+
+    private final AtomicInteger connectionsCount = new AtomicInteger();
+    private volatile int maxConnectionsCount = Integer.MAX_VALUE;
+
+    /**
+     * Количество мест, занятых зарегистрированными клиентами и клиентами, регистрация которых ещё не завершена.
+     * Не превышает {@link Server#maxConnectionsCount} для новых клиентов.
+     */
+    private final AtomicInteger reservedConnectionsCount = new AtomicInteger();
+
+    private volatile int outboundQueueCapacity = Integer.getInteger(OUTBOUND_QUEUE_CAPACITY_PROPERTY, 256);
+    private volatile SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.valueOf(
+            System.getProperty(SLOW_CONSUMER_POLICY_PROPERTY, SlowConsumerPolicy.COLLAPSE.name()));
+    private final LongAdder droppedMessagesCount = new LongAdder();
+
+    private volatile boolean isShuttingDown = false;
+
+    private volatile long membershipDebounceMillis = Long.getLong(MEMBERSHIP_DEBOUNCE_PROPERTY, 50);
+
+    /**
+     * Общий планировщик сервера: объединение изменений состава комнат, сроки игровых сессий,
+     * обратные отсчёты и периодические рассылки всех комнат выполняются на нескольких его потоках.
+     */
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private volatile long heartbeatIntervalMillis = Long.getLong(HEARTBEAT_INTERVAL_PROPERTY, 5000);
+    private volatile long idleTimeoutMillis = Long.getLong(IDLE_TIMEOUT_PROPERTY, 15000);
+    private volatile long handshakeTimeoutMillis = Long.getLong(HANDSHAKE_TIMEOUT_PROPERTY, 10000);
+
+    /**
+     * Колесо таймеров, по которому проверяется активность всех соединений сервера
+     * и ограничивается время ожидания запросов регистрации.
+     */
+    private final TimerWheel heartbeatWheel;
+
+    private volatile long sessionGraceMillis = Long.getLong(SESSION_GRACE_PROPERTY, 30000);
+    private final int eventReplayCapacity = Integer.getInteger(EVENT_REPLAY_CAPACITY_PROPERTY, 64);
+    private final SecureRandom sessionTokenGenerator = new SecureRandom();
+
+    /**
+     * Приостановленные сессии клиентов, потерявших соединение, по ключам сессий. Клиент остаётся
+     * участником комнаты, пока не восстановит сессию или не истечёт время ожидания.
+     */
+    private final Map<String, ClientHandler> suspendedSessions = new ConcurrentHashMap<>();
+
+    /**
+     * Метрики сервера, публикуемые через JMX, если это не отключено свойством {@link MBeans#JMX_ENABLED_PROPERTY}.
+     */
+    final ServerMetrics metrics = new ServerMetrics(this);
+    private final ObjectName metricsName;
+
+    private final ServerTransport transport;
+    private final Map<String, ClientHandler> activeConnections = new ConcurrentHashMap<>();
+
+    /**
+     * Комнаты сервера. Каждая комната защищает своё состояние собственной блокировкой.
+     */
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final Room defaultRoom;
+    private final AtomicLong roomsCount = new AtomicLong();
+
+    /**
+     * Действие, подготавливающее таблицы событий и ответов каждой новой комнаты, кроме комнаты по умолчанию.
+     */
+    private volatile Consumer<Room> roomInitializer = room -> {
+    };
+
+    /**
+     * События сервера, рассылаемые всем подключённым клиентам независимо от комнаты. Таблица неизменяема.
+     */
+    private final Map<String, Supplier<JSONObject>> events = Map.of("server_shutdown",
+            () -> new JSONObject().put("shutdown_timestamp", Instant.now().toString()));
+
+    /**
+     * Создаёт сервер, выделяющий каждому соединению отдельный поток.
+     * Тип потоков задаётся системным свойством {@link ThreadMode#THREAD_MODE_PROPERTY}.
+     *
+     * @param serverSocket сокет, принимающий входящие соединения;
+     */
     public Server(ServerSocket serverSocket) {
-        this.serverSocket = serverSocket;
+        this(serverSocket, ThreadMode.fromSystemProperty());
+    }
 
-        activeConnections = FXCollections.observableHashMap();
-        activeConnections.addListener((MapChangeListener<? super String, ? super ClientHandler>) change ->
-                sendEvent("clients_list_changed"));
+    /**
+     * Создаёт сервер, выделяющий каждому соединению отдельный поток.
+     *
+     * @param serverSocket сокет, принимающий входящие соединения;
+     * @param threadMode   тип потоков, обслуживающих приём соединений и клиентов;
+     */
+    public Server(ServerSocket serverSocket, ThreadMode threadMode) {
+        this(new BlockingTransport(serverSocket, threadMode));
+    }
+
+    /**
+     * Создаёт сервер, обслуживающий все соединения неблокирующим образом
+     * на фиксированном количестве потоков ввода-вывода.
+     *
+     * @param serverChannel   канал, принимающий входящие соединения;
+     * @param ioThreadsCount  количество потоков ввода-вывода;
+     * @throws IOException в случае, если не удалось открыть селекторы.
+     */
+    public Server(ServerSocketChannel serverChannel, int ioThreadsCount) throws IOException {
+        this(new NioTransport(serverChannel, ioThreadsCount));
+    }
+
+    private Server(ServerTransport transport) {
+        this.transport = transport;
+
+        scheduler = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS_COUNT, new ThreadFactory() {
+            private final AtomicInteger threadsCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "jigsaw-scheduler-" + threadsCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        heartbeatWheel = new TimerWheel(HEARTBEAT_TICK_MILLIS, HEARTBEAT_WHEEL_SIZE, "jigsaw-heartbeat");
 
-        clientsThreadPool = Executors.newCachedThreadPool();
-        serverExecutor = Executors.newSingleThreadExecutor();
+        defaultRoom = new Room(DEFAULT_ROOM_ID, this);
+        rooms.put(DEFAULT_ROOM_ID, defaultRoom);
 
-        events = new HashMap<>() {{
-            put("server_shutdown", () -> new JSONObject().put("shutdown_timestamp", Instant.now().toString()));
-            put("clients_list_changed", () -> new JSONObject()
-                    .put("clients_list", new JSONArray(activeConnections.values())));
-        }};
-        responses = new HashMap<>() {{
-            put("get_clients_list", body -> new JSONObject()
-                    .put("clients_list", new JSONArray(activeConnections.values())));
-        }};
+        metricsName = MBeans.register(metrics, "Server");
+    }
+
+    /**
+     * Открывает сервер на указанном порту. Режим работы выбирается системными свойствами
+     * {@link Server#NIO_MODE_PROPERTY} и {@link Server#IO_THREADS_PROPERTY}.
+     *
+     * @param port порт, на котором сервер принимает соединения;
+     * @return сервер, готовый к запуску методом {@link Server#run()};
+     * @throws IOException в случае, если не удалось занять порт.
+     */
+    public static Server open(int port) throws IOException {
+        return open(port, 0);
+    }
+
+    /**
+     * Открывает сервер на указанном порту с заданной длиной очереди ожидающих соединений.
+     *
+     * @param port    порт, на котором сервер принимает соединения;
+     * @param backlog длина очереди соединений, ещё не принятых сервером, либо 0 для значения по умолчанию;
+     * @return сервер, готовый к запуску методом {@link Server#run()};
+     * @throws IOException в случае, если не удалось занять порт.
+     */
+    public static Server open(int port, int backlog) throws IOException {
+        if (Boolean.getBoolean(NIO_MODE_PROPERTY)) {
+            int ioThreadsCount = Integer.getInteger(IO_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(port), backlog);
+            return new Server(serverChannel, ioThreadsCount);
+        }
+
+        return new Server(new ServerSocket(port, backlog));
     }
 
     public boolean isActive() {
-        return !serverSocket.isClosed();
+        return transport.isActive();
     }
 
     public void closeRegistration() {
-        couldRegister = false;
+        defaultRoom.closeRegistration();
     }
 
     public void openRegistration() {
-        couldRegister = true;
+        defaultRoom.openRegistration();
+    }
+
+    /**
+     * @return комната, в которую попадают клиенты, не указавшие комнату при регистрации.
+     */
+    public Room getDefaultRoom() {
+        return defaultRoom;
+    }
+
+    /**
+     * @param roomId идентификатор комнаты;
+     * @return комната с указанным идентификатором или {@code null}, если её нет на сервере.
+     */
+    public Room getRoom(String roomId) {
+        return rooms.get(roomId);
+    }
+
+    public int getRoomsCount() {
+        return rooms.size();
+    }
+
+    /**
+     * Возвращает общий планировщик сервера для сроков игровых сессий, обратных отсчётов и периодических
+     * рассылок. Задачи отменяются через возвращаемые планировщиком {@link java.util.concurrent.ScheduledFuture},
+     * отменённые задачи сразу удаляются из очереди. Планировщик останавливается вместе с сервером
+     * и не должен останавливаться иначе; задачи не должны блокироваться, чтобы не задерживать чужие сроки.
+     *
+     * @return планировщик сервера.
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Создаёт комнату и подготавливает её действием, заданным {@link Server#setRoomInitializer(Consumer)}.
+     * Комната удаляется с сервера, когда её покидает последний участник.
+     *
+     * @return новая комната.
+     */
+    public Room createRoom() {
+        Room room = new Room(Long.toString(roomsCount.incrementAndGet()), this);
+        roomInitializer.accept(room);
+        rooms.put(room.getId(), room);
+
+        return room;
+    }
+
+    /**
+     * Задаёт действие, подготавливающее таблицы событий и ответов комнат, создаваемых после вызова.
+     *
+     * @param roomInitializer действие над новой комнатой;
+     */
+    public void setRoomInitializer(Consumer<Room> roomInitializer) {
+        this.roomInitializer = roomInitializer;
+    }
+
+    /**
+     * Ограничивает количество одновременно зарегистрированных клиентов. Клиентам сверх ограничения
+     * отказывается в регистрации.
+     *
+     * @param maxConnectionsCount наибольшее количество соединений;
+     */
+    public void setMaxConnectionsCount(int maxConnectionsCount) {
+        this.maxConnectionsCount = maxConnectionsCount;
+    }
+
+    /**
+     * Задаёт ёмкость очереди исходящих сообщений для клиентов, которые подключатся после вызова.
+     *
+     * @param outboundQueueCapacity максимальное количество сообщений, ожидающих отправки одному клиенту;
+     */
+    public void setOutboundQueueCapacity(int outboundQueueCapacity) {
+        this.outboundQueueCapacity = outboundQueueCapacity;
+    }
+
+    /**
+     * Задаёт политику переполнения очереди для клиентов, которые подключатся после вызова.
+     *
+     * @param slowConsumerPolicy поведение сервера при переполнении очереди клиента;
+     */
+    public void setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    /**
+     * Задаёт окно, изменения состава лобби внутри которого объединяются в одно событие.
+     *
+     * @param membershipDebounceMillis длительность окна в миллисекундах;
+     */
+    public void setMembershipDebounceMillis(long membershipDebounceMillis) {
+        this.membershipDebounceMillis = membershipDebounceMillis;
+    }
+
+    /**
+     * Задаёт период проверки активности для клиентов, которые зарегистрируются после вызова.
+     *
+     * @param heartbeatIntervalMillis период отправки сообщений {@code ping} в миллисекундах, 0 — без проверки;
+     */
+    public void setHeartbeatIntervalMillis(long heartbeatIntervalMillis) {
+        this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+    }
+
+    /**
+     * Задаёт время бездействия, по истечении которого соединение разрывается.
+     * Проверяется с периодом, заданным {@link Server#setHeartbeatIntervalMillis(long)}.
+     *
+     * @param idleTimeoutMillis время бездействия в миллисекундах;
+     */
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Задаёт время ожидания запроса регистрации для соединений, которые будут приняты после вызова.
+     *
+     * @param handshakeTimeoutMillis время ожидания в миллисекундах, 0 — без ограничения;
+     */
+    public void setHandshakeTimeoutMillis(long handshakeTimeoutMillis) {
+        this.handshakeTimeoutMillis = handshakeTimeoutMillis;
+    }
+
+    /**
+     * Задаёт время, в течение которого клиент, потерявший соединение, может восстановить сессию.
+     * Действует для клиентов, которые зарегистрируются после вызова.
+     *
+     * @param sessionGraceMillis время ожидания переподключения в миллисекундах, 0 — без восстановления сессий;
+     */
+    public void setSessionGraceMillis(long sessionGraceMillis) {
+        this.sessionGraceMillis = sessionGraceMillis;
+    }
+
+    /**
+     * @return количество зарегистрированных клиентов, соединения с которыми не разорваны.
+     */
+    public int getActiveConnectionsCount() {
+        return activeConnections.size();
+    }
+
+    /**
+     * @return метрики сервера: количество соединений, отказы в регистрации, задержки ответов и рассылок.
+     */
+    public ServerMetricsMXBean getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return количество клиентов, потерявших соединение и ещё способных восстановить сессию.
+     */
+    public int getSuspendedSessionsCount() {
+        return suspendedSessions.size();
+    }
+
+    /**
+     * @return сглаженное время приёма-передачи для клиентов, ответивших хотя бы на одно сообщение {@code ping}.
+     */
+    public Map<String, Duration> getRoundTripTimes() {
+        Map<String, Duration> roundTripTimes = new HashMap<>();
+        for (ClientHandler clientHandler : getConnectionsSnapshot()) {
+            Duration roundTripTime = clientHandler.getRoundTripTime();
+            if (roundTripTime != null) {
+                roundTripTimes.put(clientHandler.getId(), roundTripTime);
+            }
+        }
+
+        return roundTripTimes;
+    }
+
+    /**
+     * @return количество сообщений, отброшенных из-за переполнения очередей за всё время работы сервера.
+     */
+    public long getDroppedMessagesCount() {
+        return droppedMessagesCount.sum();
+    }
+
+    /**
+     * @return состояние очередей исходящих сообщений всех подключённых клиентов.
+     */
+    public List<OutboundStatistics> getOutboundStatistics() {
+        List<OutboundStatistics> statistics = new ArrayList<>();
+        for (ClientHandler clientHandler : getConnectionsSnapshot()) {
+            statistics.add(new OutboundStatistics(clientHandler.getId(), clientHandler.outboundQueue.size(),
+                    clientHandler.outboundQueue.getDroppedMessagesCount()));
+        }
+
+        return statistics;
     }
 
     public void addEvent(String eventKey, Supplier<JSONObject> bodyGenerator) {
-        events.put(eventKey, bodyGenerator);
+        defaultRoom.addEvent(eventKey, bodyGenerator);
     }
 
     public void removeEvent(String eventKey) {
-        events.remove(eventKey);
+        defaultRoom.removeEvent(eventKey);
     }
 
     public void addResponse(String responseKey, Function<String, JSONObject> bodyGenerator) {
-        responses.put(responseKey, bodyGenerator);
+        defaultRoom.addResponse(responseKey, bodyGenerator);
     }
 
     public void removeResponse(String responseKey) {
-        responses.remove(responseKey);
+        defaultRoom.removeResponse(responseKey);
     }
 
     public void run() {
-        serverExecutor.submit(() -> {
-            try {
-                logger.log(Level.INFO, "Сервер запущен.");
-
-                while (!serverSocket.isClosed()) {
-                    Socket socket = serverSocket.accept();
-                    clientsThreadPool.execute(new ClientHandler(socket, this));
-                }
-            } catch (IOException exception) {
-                logger.log(Level.SEVERE, "Возникла исключительная ситуация:", exception);
-                throw new UncheckedIOException(exception);
-            } finally {
-                sendEvent("server_shutdown");
-                shutdown();
-                logger.log(Level.INFO, "Сервер остановлен.");
-            }
-        });
+        transport.start(this);
     }
 
     public void shutdown() {
-        try {
-            serverExecutor.shutdownNow();
-            clientsThreadPool.shutdownNow();
+        scheduler.shutdownNow();
+        heartbeatWheel.close();
+        MBeans.unregister(metricsName);
 
-            if (serverSocket != null) {
-                serverSocket.close();
-            }
+        try {
+            transport.close();
         } catch (IOException exception) {
             logger.log(Level.SEVERE, "Возникла исключительная ситуация при остановке сервера:", exception);
             throw new UncheckedIOException(exception);
         }
     }
 
-    private void registerClient(ClientHandler connection) {
-        connection.id = Integer.toString(++connectionsCount);
-        activeConnections.put(connection.id, connection);
+    /**
+     * Закрывает все соединения после отправки сообщений, уже поставленных в их очереди.
+     * Вызывается транспортом при остановке сервера.
+     */
+    void closeAllConnections() {
+        isShuttingDown = true;
+
+        for (ClientHandler clientHandler : getConnectionsSnapshot()) {
+            clientHandler.closeConnection();
+        }
+    }
+
+    private String allocateId() {
+        return Integer.toString(connectionsCount.incrementAndGet());
+    }
+
+    /**
+     * Занимает место для нового клиента, если количество занятых мест меньше наибольшего.
+     *
+     * @return {@code false}, если сервер переполнен.
+     */
+    private boolean reserveConnectionSlot() {
+        int reservedCount;
+        do {
+            reservedCount = reservedConnectionsCount.get();
+            if (reservedCount >= maxConnectionsCount) {
+                return false;
+            }
+        } while (!reservedConnectionsCount.compareAndSet(reservedCount, reservedCount + 1));
+
+        return true;
+    }
+
+    private void releaseConnectionSlot() {
+        reservedConnectionsCount.decrementAndGet();
+    }
+
+    /**
+     * Добавляет клиента, занявшего место, в таблицу соединений. Если прежнее соединение клиента
+     * ещё не исключено из таблицы, его место освобождается.
+     *
+     * @param clientHandler зарегистрированный клиент;
+     */
+    private void addActiveConnection(ClientHandler clientHandler) {
+        if (activeConnections.put(clientHandler.getId(), clientHandler) != null) {
+            releaseConnectionSlot();
+        }
+    }
+
+    private List<ClientHandler> getConnectionsSnapshot() {
+        return List.copyOf(activeConnections.values());
     }
 
+    /**
+     * Рассылает событие. События сервера, такие как {@code server_shutdown}, получают все подключённые клиенты,
+     * остальные события — участники комнаты по умолчанию.
+     *
+     * @param eventKey ключ события;
+     */
     public void sendEvent(String eventKey) {
-        JSONObject message = new JSONObject();
+        Supplier<JSONObject> bodyGenerator = events.get(eventKey);
+        if (bodyGenerator == null) {
+            defaultRoom.sendEvent(eventKey);
+        } else {
+            abortSlowConsumers(broadcast(new Message(eventKey, bodyGenerator.get().toString()),
+                    getConnectionsSnapshot()));
+        }
+    }
+
+    /**
+     * Рассылает сообщение указанным клиентам. Сообщение кодируется один раз для каждого
+     * используемого клиентами формата, после чего одни и те же байты передаются всем соединениям.
+     * Соединения с клиентами, очереди которых переполнены, не разрываются, а возвращаются вызывающему,
+     * чтобы он разорвал их методом {@link Server#abortSlowConsumers(List)} вне своих блокировок.
+     *
+     * @param message    рассылаемое событие;
+     * @param recipients получатели события;
+     * @return получатели, соединения с которыми должны быть разорваны.
+     */
+    List<ClientHandler> broadcast(Message message, Collection<ClientHandler> recipients) {
+        long startNanos = System.nanoTime();
+        Map<MessageCodec, EncodedMessage> encodedMessages = new IdentityHashMap<>();
+        List<ClientHandler> slowConsumers = List.of();
+        for (ClientHandler clientHandler : recipients) {
+            if (!clientHandler.offer(message.key(), encodedMessages.computeIfAbsent(clientHandler.outboundCodec,
+                    codec -> EncodedMessage.of(codec.encode(message))), true)) {
+                if (slowConsumers.isEmpty()) {
+                    slowConsumers = new ArrayList<>();
+                }
+                slowConsumers.add(clientHandler);
+            }
+        }
+
+        metrics.recordBroadcast(message.key(), System.nanoTime() - startNanos);
+        return slowConsumers;
+    }
+
+    /**
+     * Разрывает соединения с клиентами, не успевающими принимать сообщения.
+     *
+     * @param slowConsumers клиенты, очереди которых переполнены;
+     */
+    void abortSlowConsumers(List<ClientHandler> slowConsumers) {
+        for (ClientHandler clientHandler : slowConsumers) {
+            clientHandler.abortSlowConsumer();
+        }
+    }
+
+    boolean isShuttingDown() {
+        return isShuttingDown;
+    }
 
-        message.put("key", eventKey);
-        message.put("body", events.get(eventKey).get());
+    int getEventReplayCapacity() {
+        return eventReplayCapacity;
+    }
+
+    long getMembershipDebounceMillis() {
+        return membershipDebounceMillis;
+    }
 
-        for (ClientHandler clientHandler : activeConnections.values()) {
-            clientHandler.messageWriter.println(message);
+    void schedule(Runnable task, long delayMillis) {
+        try {
+            scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException exception) {
+            logger.log(Level.FINE, "Задача не запланирована: сервер остановлен.");
         }
     }
 
-    private JSONObject getResponse(JSONObject request) {
-        String requestKey = request.getString("key");
-        String requestBody = request.getString("body");
+    /**
+     * Определяет комнату, указанную в запросе регистрации.
+     *
+     * @param registration тело запроса регистрации;
+     * @return комната или {@code null}, если указанной комнаты нет на сервере.
+     */
+    private Room resolveRoom(JSONObject registration) {
+        if (registration.optBoolean("create_room")) {
+            return createRoom();
+        }
+
+        return rooms.get(registration.optString("room", DEFAULT_ROOM_ID));
+    }
 
-        JSONObject message = new JSONObject();
+    /**
+     * @param id идентификатор клиента;
+     * @return ключ сессии — идентификатор клиента и случайная часть, которую невозможно подобрать.
+     */
+    private String generateSessionToken(String id) {
+        byte[] token = new byte[SESSION_TOKEN_LENGTH];
+        sessionTokenGenerator.nextBytes(token);
+        return id + ":" + Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
 
-        message.put("key", requestKey);
-        message.put("body", responses.get(requestKey).apply(requestBody));
+    /**
+     * Исключает отключившегося клиента из таблицы соединений. Сессия клиента, потерявшего соединение,
+     * приостанавливается до его переподключения, иначе клиент исключается из комнаты.
+     *
+     * @param clientHandler отключившийся клиент;
+     * @param isResumable   может ли клиент восстановить сессию, то есть не покинул ли он комнату сам;
+     */
+    private void unregister(ClientHandler clientHandler, boolean isResumable) {
+        if (activeConnections.remove(clientHandler.getId(), clientHandler)) {
+            releaseConnectionSlot();
+            if (!isResumable || isShuttingDown || !suspend(clientHandler)) {
+                leaveRoom(clientHandler);
+            }
+        }
+    }
 
-        return message;
+    /**
+     * Приостанавливает сессию клиента на время, заданное {@link Server#SESSION_GRACE_PROPERTY}.
+     *
+     * @param clientHandler клиент, потерявший соединение;
+     * @return {@code false}, если клиенту не выдан ключ сессии или сервер остановлен.
+     */
+    private boolean suspend(ClientHandler clientHandler) {
+        String sessionToken = clientHandler.sessionToken;
+        if (sessionToken == null) {
+            return false;
+        }
+
+        suspendedSessions.put(sessionToken, clientHandler);
+        clientHandler.expirationTimeout = heartbeatWheel.schedule(() -> expireSession(clientHandler),
+                clientHandler.sessionGraceMillis);
+        if (clientHandler.expirationTimeout == null) {
+            return !suspendedSessions.remove(sessionToken, clientHandler);
+        }
+
+        logger.log(Level.INFO, String.format("Сессия пользователя %s#%s приостановлена до переподключения.",
+                clientHandler.getNickname(), clientHandler.getId()));
+        return true;
+    }
+
+    /**
+     * Находит приостановленную сессию. Если сервер ещё не заметил разрыва прежнего соединения клиента,
+     * это соединение разрывается, а его сессия приостанавливается.
+     *
+     * @param sessionToken ключ сессии, выданный при регистрации;
+     * @return приостановленная сессия, которая больше не может истечь, или {@code null}, если её нет.
+     */
+    private ClientHandler takeSuspendedSession(String sessionToken) {
+        int separatorIndex = sessionToken.indexOf(':');
+        ClientHandler staleConnection = separatorIndex > 0
+                ? activeConnections.get(sessionToken.substring(0, separatorIndex)) : null;
+        if (staleConnection != null && sessionToken.equals(staleConnection.sessionToken)) {
+            logger.log(Level.INFO, String.format("Пользователь %s#%s переподключился, прежнее соединение разорвано.",
+                    staleConnection.getNickname(), staleConnection.getId()));
+            staleConnection.abortConnection();
+        }
+
+        ClientHandler clientHandler = suspendedSessions.remove(sessionToken);
+        if (clientHandler != null && clientHandler.expirationTimeout != null) {
+            clientHandler.expirationTimeout.cancel();
+        }
+
+        return clientHandler;
+    }
+
+    private void expireSession(ClientHandler clientHandler) {
+        if (suspendedSessions.remove(clientHandler.sessionToken, clientHandler)) {
+            logger.log(Level.INFO, String.format("Пользователь %s#%s не переподключился, сессия завершена.",
+                    clientHandler.getNickname(), clientHandler.getId()));
+            leaveRoom(clientHandler);
+        }
+    }
+
+    /**
+     * Исключает клиента из его комнаты. Опустевшая комната, кроме комнаты по умолчанию, удаляется с сервера.
+     *
+     * @param clientHandler клиент, покидающий комнату;
+     */
+    private void leaveRoom(ClientHandler clientHandler) {
+        Room room = clientHandler.room;
+        if (room.leave(clientHandler) && room != defaultRoom && room.closeIfEmpty()) {
+            rooms.remove(room.getId(), room);
+        }
     }
 
-    public static class ClientHandler implements Runnable {
+    /**
+     * Соединение с клиентом. Конкретный способ обмена данными определяется транспортом сервера.
+     */
+    public abstract static class ClientHandler {
         private String id;
-        private Server server;
         private String nickname;
-        private Socket clientSocket;
-        private PrintWriter messageWriter;
-        private BufferedReader requestReader;
-
-        ClientHandler(Socket clientSocket, Server server) {
-            try {
-                this.server = server;
-                this.clientSocket = clientSocket;
-
-                requestReader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                messageWriter = new PrintWriter(new OutputStreamWriter(clientSocket.getOutputStream()), true);
-
-                JSONObject registrationRequest = new JSONObject(requestReader.readLine());
-                if (server.couldRegister) {
-                    nickname = registrationRequest.getString("body");
-                    server.registerClient(this);
-                    JSONObject message = new JSONObject();
-                    message.put("key", "registration");
-                    message.put("body", new JSONObject().put("id", id));
-                    messageWriter.println(message);
-                } else  {
-                    messageWriter.println(new JSONObject().put("key", "registration")
-                            .put("body", "Регистрация закрыта."));
-                    closeConnection();
-                }
-            } catch (IOException exception) {
-                logger.log(Level.SEVERE, "Возникла исключительная ситуация:", exception);
-                closeConnection();
-            }
+        final Server server;
+
+        /**
+         * Комната клиента, определяемая при регистрации.
+         */
+        private Room room;
+
+        /**
+         * Формат входящих сообщений. Изменяется только потоком, читающим сообщения клиента.
+         */
+        MessageCodec inboundCodec = MessageCodecs.JSON;
+
+        /**
+         * Формат исходящих сообщений, согласованный при регистрации.
+         */
+        volatile MessageCodec outboundCodec = MessageCodecs.JSON;
+
+        final OutboundQueue outboundQueue;
+
+        /**
+         * Время получения последнего сообщения клиента по {@link System#nanoTime()}.
+         */
+        private volatile long lastActivityNanos = System.nanoTime();
+        private volatile TimerWheel.Timeout heartbeatTimeout;
+
+        /**
+         * Ограничение времени ожидания запроса регистрации или {@code null}, если оно не установлено.
+         */
+        private volatile TimerWheel.Timeout handshakeTimeout;
+
+        /**
+         * Сглаженное время приёма-передачи в наносекундах или {@code -1}, пока оно не измерено.
+         * Изменяется только потоком, читающим сообщения клиента.
+         */
+        private volatile long roundTripTimeNanos = -1;
+
+        /**
+         * Ключ сессии, по которому клиент восстанавливает её после разрыва соединения,
+         * или {@code null}, если восстановление сессий отключено.
+         */
+        private String sessionToken;
+        private long sessionGraceMillis;
+        private volatile TimerWheel.Timeout expirationTimeout;
+
+        /**
+         * Сообщил ли клиент о выходе из комнаты перед закрытием соединения.
+         */
+        private volatile boolean isLeaving = false;
+
+        ClientHandler(Server server) {
+            this.server = server;
+            outboundQueue = new OutboundQueue(server.outboundQueueCapacity, server.slowConsumerPolicy,
+                    server.droppedMessagesCount);
+            server.metrics.onConnectionAccepted();
         }
 
         public String getId() {
@@ -186,43 +830,356 @@ public class Server {
             return nickname;
         }
 
-        @Override
-        public void run() {
-            processRequests();
+        public Room getRoom() {
+            return room;
+        }
+
+        /**
+         * @return сглаженное время приёма-передачи или {@code null}, если клиент ещё не ответил на {@code ping}.
+         */
+        public Duration getRoundTripTime() {
+            long roundTripTime = roundTripTimeNanos;
+            return roundTripTime < 0 ? null : Duration.ofNanos(roundTripTime);
         }
 
-        private void processRequests() {
-            try {
-                while (!clientSocket.isClosed()) {
-                    JSONObject request = new JSONObject(requestReader.readLine());
-                    messageWriter.println(server.getResponse(request));
+        /**
+         * Начинает ожидание запроса регистрации: если он не поступит за время, заданное
+         * {@link Server#setHandshakeTimeoutMillis(long)}, соединение будет разорвано. Вызывается транспортом
+         * в потоке, читающем сообщения клиента, после того как соединение принято, поэтому клиент,
+         * не присылающий запрос, не задерживает приём остальных соединений.
+         */
+        void startHandshake() {
+            long handshakeTimeoutMillis = server.handshakeTimeoutMillis;
+            if (handshakeTimeoutMillis > 0) {
+                handshakeTimeout = server.heartbeatWheel.schedule(this::onHandshakeTimeout, handshakeTimeoutMillis);
+            }
+        }
+
+        /**
+         * Разрывает соединение, не приславшее запрос регистрации вовремя. Выполняется потоком колеса таймеров;
+         * регистрация к этому моменту не начата и уже не начнётся, поскольку срабатывание задачи
+         * исключает её отмену в {@link ClientHandler#isHandshakeExpired()}.
+         */
+        private void onHandshakeTimeout() {
+            logger.log(Level.INFO, "Клиент не прислал запрос регистрации, соединение разорвано.");
+            server.metrics.onRegistrationRejected(HANDSHAKE_TIMEOUT_MESSAGE);
+            abortResources();
+        }
+
+        /**
+         * @return {@code true}, если время ожидания запроса регистрации истекло и соединение разрывается.
+         */
+        private boolean isHandshakeExpired() {
+            TimerWheel.Timeout timeout = handshakeTimeout;
+            return timeout != null && !timeout.cancel();
+        }
+
+        /**
+         * Обрабатывает очередное сообщение клиента. Первое сообщение считается запросом регистрации.
+         * Сообщение {@code leave} закрывает соединение без возможности восстановить сессию.
+         *
+         * @param request сообщение клиента;
+         */
+        void processMessage(Message request) {
+            lastActivityNanos = System.nanoTime();
+
+            if (id == null) {
+                if (!isHandshakeExpired()) {
+                    register(request);
                 }
-            } catch (SocketException | NullPointerException exception) {
-                logger.log(Level.INFO, String.format("Пользователь %s#%s потерял соединение с сервером", nickname, id));
-            } catch (IOException exception) {
-                logger.log(Level.SEVERE, "Возникла исключительная ситуация при обработке запроса:", exception);
-            } finally {
+            } else if ("pong".equals(request.key())) {
+                onPong(request.body());
+            } else if ("leave".equals(request.key())) {
+                isLeaving = true;
                 closeConnection();
+            } else {
+                long startNanos = System.nanoTime();
+                sendMessage(room.getResponse(request));
+                server.metrics.recordRequest(request.key(), System.nanoTime() - startNanos);
             }
         }
 
-        private void closeConnection() {
-            server.activeConnections.remove(id);
+        /**
+         * Регистрирует клиента в комнате и согласовывает с ним формат сообщений. Ответ на регистрацию всегда
+         * отправляется в формате JSON, все последующие сообщения — в выбранном формате.
+         * Тело запроса — объект с полями {@code nickname}, {@code codecs} и необязательными {@code room}
+         * (идентификатор комнаты) или {@code create_room}, либо никнейм в виде строки.
+         * Клиент, потерявший соединение, передаёт также поле {@code resume} с ключом сессии {@code token}
+         * и номером последнего полученного события {@code last_seq}; если сессия не найдена,
+         * клиент регистрируется заново.
+         * <p>
+         * Ответ содержит идентификатор клиента {@code id}, формат {@code codec}, комнату {@code room},
+         * номер последнего события комнаты {@code seq}, которое клиент не получит, ключ сессии
+         * {@code session_token} (если восстановление включено) и признак восстановления сессии {@code resumed}.
+         *
+         * @param registrationRequest запрос регистрации;
+         */
+        private void register(Message registrationRequest) {
+            MessageCodec codec = MessageCodecs.JSON;
+            String requestBody = registrationRequest.body();
+            JSONObject container = requestBody.startsWith("{") ? new JSONObject(requestBody) : null;
 
-            try {
-                if (clientSocket != null) {
-                    clientSocket.close();
-                }
-                if (requestReader != null) {
-                    requestReader.close();
+            JSONArray proposedCodecs = container != null ? container.optJSONArray("codecs") : null;
+            for (int index = 0; proposedCodecs != null && index < proposedCodecs.length(); index++) {
+                MessageCodec proposedCodec = MessageCodecs.find(proposedCodecs.getString(index));
+                if (proposedCodec != null) {
+                    codec = proposedCodec;
+                    break;
                 }
-                if (messageWriter != null) {
-                    messageWriter.close();
-                }
-            } catch (IOException exception) {
-                logger.log(Level.SEVERE, "Возникла исключительная ситуация при закрытии соединения:", exception);
-                throw new UncheckedIOException(exception);
             }
+
+            JSONObject resumption = container != null ? container.optJSONObject("resume") : null;
+            if (resumption != null && resume(resumption, codec)) {
+                return;
+            }
+
+            if (!server.reserveConnectionSlot()) {
+                rejectRegistration(SERVER_FULL_MESSAGE);
+                return;
+            }
+
+            Room requestedRoom = container != null ? server.resolveRoom(container) : server.defaultRoom;
+            if (requestedRoom == null) {
+                server.releaseConnectionSlot();
+                rejectRegistration(ROOM_NOT_FOUND_MESSAGE);
+                return;
+            }
+
+            nickname = container != null ? container.getString("nickname") : requestBody;
+            id = server.allocateId();
+            room = requestedRoom;
+            sessionGraceMillis = server.sessionGraceMillis;
+            sessionToken = sessionGraceMillis > 0 ? server.generateSessionToken(id) : null;
+
+            MessageCodec negotiatedCodec = codec;
+            boolean isJoined = room.join(this, lastSequence -> {
+                inboundCodec = negotiatedCodec;
+                sendMessage(new Message("registration", new JSONObject().put("id", id)
+                        .put("codec", negotiatedCodec.getName()).put("room", room.getId()).put("seq", lastSequence)
+                        .putOpt("session_token", sessionToken).put("resumed", false).toString()));
+                outboundCodec = negotiatedCodec;
+
+                server.addActiveConnection(this);
+            });
+
+            if (!isJoined) {
+                server.releaseConnectionSlot();
+                id = null;
+                sessionToken = null;
+                rejectRegistration(REGISTRATION_CLOSED_MESSAGE);
+            } else {
+                scheduleHeartbeat();
+            }
+        }
+
+        /**
+         * Восстанавливает приостановленную сессию: занимает место прежнего соединения клиента в комнате
+         * и на сервере независимо от ограничения количества соединений и повторно отправляет пропущенные события. Поле {@code replay_complete} ответа на регистрацию
+         * равно {@code false}, если часть пропущенных событий уже вытеснена из журнала комнаты,
+         * и клиенту следует заново запросить состояние комнаты.
+         *
+         * @param resumption поле {@code resume} запроса регистрации;
+         * @param codec      формат сообщений, выбранный для клиента;
+         * @return {@code false}, если сессия не найдена.
+         */
+        private boolean resume(JSONObject resumption, MessageCodec codec) {
+            ClientHandler suspendedSession = server.takeSuspendedSession(resumption.optString("token"));
+            if (suspendedSession == null) {
+                return false;
+            }
+
+            id = suspendedSession.id;
+            nickname = suspendedSession.nickname;
+            room = suspendedSession.room;
+            sessionToken = suspendedSession.sessionToken;
+            sessionGraceMillis = suspendedSession.sessionGraceMillis;
+
+            server.reservedConnectionsCount.incrementAndGet();
+            boolean isRejoined = room.rejoin(suspendedSession, this, resumption.optLong("last_seq"),
+                    isReplayComplete -> {
+                        inboundCodec = codec;
+                        sendMessage(new Message("registration", new JSONObject().put("id", id)
+                                .put("codec", codec.getName()).put("room", room.getId())
+                                .put("session_token", sessionToken).put("resumed", true)
+                                .put("replay_complete", isReplayComplete).toString()));
+                        outboundCodec = codec;
+
+                        server.addActiveConnection(this);
+                    });
+
+            if (!isRejoined) {
+                server.releaseConnectionSlot();
+                id = null;
+                nickname = null;
+                room = null;
+                sessionToken = null;
+                return false;
+            }
+
+            logger.log(Level.INFO, String.format("Пользователь %s#%s восстановил сессию.", nickname, id));
+            scheduleHeartbeat();
+            return true;
+        }
+
+        private void scheduleHeartbeat() {
+            long heartbeatIntervalMillis = server.heartbeatIntervalMillis;
+            if (heartbeatIntervalMillis > 0) {
+                heartbeatTimeout = server.heartbeatWheel.schedule(this::onHeartbeat, heartbeatIntervalMillis);
+            }
+        }
+
+        /**
+         * Разрывает соединение, от которого дольше допустимого не поступало сообщений, иначе отправляет
+         * клиенту {@code ping} с отметкой времени отправки и текущей оценкой времени приёма-передачи.
+         * Выполняется потоком колеса таймеров.
+         */
+        private void onHeartbeat() {
+            if (server.activeConnections.get(id) != this) {
+                return;
+            }
+
+            long idleNanos = System.nanoTime() - lastActivityNanos;
+            if (idleNanos >= TimeUnit.MILLISECONDS.toNanos(server.idleTimeoutMillis)) {
+                logger.log(Level.INFO, String.format("Пользователь %s#%s не отвечает, соединение разорвано.",
+                        nickname, id));
+                abortConnection();
+                return;
+            }
+
+            JSONObject ping = new JSONObject().put("timestamp", System.nanoTime());
+            if (roundTripTimeNanos >= 0) {
+                ping.put("rtt_micros", TimeUnit.NANOSECONDS.toMicros(roundTripTimeNanos));
+            }
+            enqueue("ping", EncodedMessage.of(outboundCodec.encode(new Message("ping", ping.toString()))), true);
+
+            scheduleHeartbeat();
+        }
+
+        /**
+         * Учитывает ответ на {@code ping}: сглаживает время приёма-передачи так же, как TCP (с весом 1/8).
+         *
+         * @param body тело {@code ping}, возвращённое клиентом;
+         */
+        private void onPong(String body) {
+            long sampleNanos = System.nanoTime() - new JSONObject(body).getLong("timestamp");
+            if (sampleNanos < 0) {
+                return;
+            }
+
+            long roundTripTime = roundTripTimeNanos;
+            roundTripTimeNanos = roundTripTime < 0 ? sampleNanos : roundTripTime + (sampleNanos - roundTripTime) / 8;
+        }
+
+        private void cancelTimeouts() {
+            TimerWheel.Timeout timeout = heartbeatTimeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+
+            timeout = handshakeTimeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+
+        private void rejectRegistration(String reason) {
+            server.metrics.onRegistrationRejected(reason);
+            sendMessage(new Message("registration", reason));
+            closeConnection();
+        }
+
+        /**
+         * Отправляет клиенту сообщение в согласованном формате.
+         *
+         * @param message отправляемое сообщение;
+         */
+        void sendMessage(Message message) {
+            enqueue(message.key(), EncodedMessage.of(outboundCodec.encode(message)), false);
+        }
+
+        /**
+         * Ставит закодированное сообщение в очередь отправки клиенту.
+         *
+         * @param key     ключ сообщения;
+         * @param message сообщение, закодированное в согласованном с клиентом формате;
+         * @param isEvent является ли сообщение событием, а не ответом на запрос;
+         */
+        void enqueue(String key, EncodedMessage message, boolean isEvent) {
+            if (!offer(key, message, isEvent)) {
+                abortSlowConsumer();
+            }
+        }
+
+        /**
+         * Ставит событие в очередь отправки клиенту в согласованном формате.
+         *
+         * @param event отправляемое событие;
+         * @return {@code false}, если очередь переполнена и соединение должно быть разорвано.
+         */
+        boolean offerEvent(Message event) {
+            return offer(event.key(), EncodedMessage.of(outboundCodec.encode(event)), true);
+        }
+
+        /**
+         * Ставит закодированное сообщение в очередь отправки, не разрывая соединение при её переполнении.
+         *
+         * @param key     ключ сообщения;
+         * @param message сообщение, закодированное в согласованном с клиентом формате;
+         * @param isEvent является ли сообщение событием, а не ответом на запрос;
+         * @return {@code false}, если очередь переполнена и соединение должно быть разорвано.
+         */
+        boolean offer(String key, EncodedMessage message, boolean isEvent) {
+            boolean isReplaceable = isEvent && replaceableEvents.contains(key);
+
+            if (!outboundQueue.offer(key, message, isEvent, isReplaceable)) {
+                return false;
+            }
+
+            onMessageQueued();
+            return true;
+        }
+
+        void abortSlowConsumer() {
+            logger.log(Level.WARNING, String.format(
+                    "Пользователь %s#%s не успевает принимать сообщения, соединение разорвано.", nickname, id));
+            abortConnection();
+        }
+
+        /**
+         * Уведомляет транспорт о появлении сообщений в очереди отправки.
+         */
+        abstract void onMessageQueued();
+
+        /**
+         * Освобождает ресурсы соединения после отправки сообщений, уже находящихся в очереди.
+         */
+        abstract void releaseResources();
+
+        /**
+         * Немедленно освобождает ресурсы соединения, не дожидаясь отправки сообщений.
+         */
+        abstract void abortResources();
+
+        /**
+         * Разрывает соединение, отбрасывая неотправленные сообщения.
+         */
+        void abortConnection() {
+            cancelTimeouts();
+            outboundQueue.clear();
+            if (id != null) {
+                server.unregister(this, !isLeaving);
+            }
+
+            abortResources();
+        }
+
+        void closeConnection() {
+            cancelTimeouts();
+            if (id != null) {
+                server.unregister(this, !isLeaving);
+            }
+
+            releaseResources();
         }
     }
-}
\ No newline at end of file
+}
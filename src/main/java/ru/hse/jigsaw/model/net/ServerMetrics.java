@@ -0,0 +1,123 @@
+package ru.hse.jigsaw.model.net;
+
+import ru.hse.jigsaw.model.metrics.LatencyHistograms;
+import ru.hse.jigsaw.model.metrics.LatencyStatistics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Накопитель метрик сервера. Счётчики распределены по потокам, а гистограммы не захватывают блокировок,
+ * поэтому учёт не замедляет обработку сообщений; снимки вычисляются только при чтении метрик.
+ */
+final class ServerMetrics implements ServerMetricsMXBean {
+    private final Server server;
+
+    private final LongAdder acceptedConnectionsCount = new LongAdder();
+    private final Map<String, LongAdder> registrationRejections = new ConcurrentHashMap<>();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private final LatencyHistograms requestLatencies = new LatencyHistograms();
+    private final LatencyHistograms broadcastLatencies = new LatencyHistograms();
+
+    private long lastAcceptedConnectionsCount = 0;
+    private long lastAcceptRateNanos = System.nanoTime();
+
+    ServerMetrics(Server server) {
+        this.server = server;
+    }
+
+    void onConnectionAccepted() {
+        acceptedConnectionsCount.increment();
+    }
+
+    /**
+     * @param reason тело ответа с отказом в регистрации;
+     */
+    void onRegistrationRejected(String reason) {
+        registrationRejections.computeIfAbsent(reason, ignored -> new LongAdder()).increment();
+    }
+
+    LongAdder getReceivedBytesCounter() {
+        return receivedBytes;
+    }
+
+    void onBytesSent(long bytesCount) {
+        sentBytes.add(bytesCount);
+    }
+
+    void recordRequest(String key, long nanos) {
+        requestLatencies.record(key, nanos);
+    }
+
+    void recordBroadcast(String key, long nanos) {
+        broadcastLatencies.record(key, nanos);
+    }
+
+    @Override
+    public int getActiveConnectionsCount() {
+        return server.getActiveConnectionsCount();
+    }
+
+    @Override
+    public int getSuspendedSessionsCount() {
+        return server.getSuspendedSessionsCount();
+    }
+
+    @Override
+    public int getRoomsCount() {
+        return server.getRoomsCount();
+    }
+
+    @Override
+    public long getAcceptedConnectionsCount() {
+        return acceptedConnectionsCount.sum();
+    }
+
+    @Override
+    public synchronized double getAcceptRate() {
+        long count = acceptedConnectionsCount.sum();
+        long nanos = System.nanoTime();
+        double elapsedSeconds = Math.max(nanos - lastAcceptRateNanos, 1) / (double) TimeUnit.SECONDS.toNanos(1);
+        double rate = (count - lastAcceptedConnectionsCount) / elapsedSeconds;
+
+        lastAcceptedConnectionsCount = count;
+        lastAcceptRateNanos = nanos;
+        return rate;
+    }
+
+    @Override
+    public Map<String, Long> getRegistrationRejections() {
+        Map<String, Long> rejections = new TreeMap<>();
+        registrationRejections.forEach((reason, count) -> rejections.put(reason, count.sum()));
+        return rejections;
+    }
+
+    @Override
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    @Override
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+
+    @Override
+    public long getDroppedMessagesCount() {
+        return server.getDroppedMessagesCount();
+    }
+
+    @Override
+    public Map<String, LatencyStatistics> getRequestLatencies() {
+        return requestLatencies.getStatistics();
+    }
+
+    @Override
+    public Map<String, LatencyStatistics> getBroadcastLatencies() {
+        return broadcastLatencies.getStatistics();
+    }
+}
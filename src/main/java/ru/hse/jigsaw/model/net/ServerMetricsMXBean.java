@@ -0,0 +1,44 @@
+package ru.hse.jigsaw.model.net;
+
+import ru.hse.jigsaw.model.metrics.LatencyStatistics;
+
+import java.util.Map;
+
+/**
+ * Метрики сервера, публикуемые через JMX.
+ */
+public interface ServerMetricsMXBean {
+    int getActiveConnectionsCount();
+
+    int getSuspendedSessionsCount();
+
+    int getRoomsCount();
+
+    long getAcceptedConnectionsCount();
+
+    /**
+     * @return количество принятых в секунду соединений с момента предыдущего обращения.
+     */
+    double getAcceptRate();
+
+    /**
+     * @return количество отказов в регистрации по их причинам.
+     */
+    Map<String, Long> getRegistrationRejections();
+
+    long getReceivedBytes();
+
+    long getSentBytes();
+
+    long getDroppedMessagesCount();
+
+    /**
+     * @return время обработки запросов от декодирования до постановки ответа в очередь по ключам запросов.
+     */
+    Map<String, LatencyStatistics> getRequestLatencies();
+
+    /**
+     * @return время кодирования события и постановки его в очереди всех получателей по ключам событий.
+     */
+    Map<String, LatencyStatistics> getBroadcastLatencies();
+}
@@ -0,0 +1,24 @@
+package ru.hse.jigsaw.model.net;
+
+import java.io.IOException;
+
+/**
+ * Транспорт сервера: принимает входящие соединения и обслуживает обмен сообщениями с клиентами.
+ */
+interface ServerTransport {
+    /**
+     * Запускает приём соединений.
+     *
+     * @param server сервер, обрабатывающий сообщения принятых клиентов;
+     */
+    void start(Server server);
+
+    boolean isActive();
+
+    /**
+     * Прекращает приём соединений и освобождает ресурсы транспорта.
+     *
+     * @throws IOException в случае, если не удалось закрыть серверный сокет.
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,149 @@
+package ru.hse.jigsaw.model.net;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Буфер заранее запрошенных у сервера фигур. Следующие {@link ShapePrefetcher#windowSize} фигур
+ * последовательности запрашиваются диапазонами с помощью запроса {@code get_shapes}, поэтому
+ * к моменту обращения очередная фигура, как правило, уже получена.
+ */
+public class ShapePrefetcher {
+    /**
+     * Системное свойство, задающее количество заранее запрашиваемых фигур.
+     */
+    public static final String WINDOW_SIZE_PROPERTY = "jigsaw.client.shapePrefetchWindow";
+
+    public static final int DEFAULT_WINDOW_SIZE = 8;
+
+    /**
+     * Наибольшее количество фигур, запрашиваемых одним запросом {@code get_shapes}. Сервер возвращает
+     * меньше фигур, чем запрошено, только если последовательность исчерпана.
+     */
+    public static final int MAX_RANGE_LENGTH = 64;
+
+    private final Client client;
+    private final int windowSize;
+    private final Duration timeout;
+
+    /**
+     * Запрошенные, но ещё не выданные фигуры в закодированном виде по их номерам.
+     */
+    private final Map<Integer, CompletableFuture<String>> shapes = new HashMap<>();
+    private int nextIndex;
+
+    /**
+     * Номер первой ещё не запрошенной фигуры.
+     */
+    private int requestedIndex;
+
+    /**
+     * Номер, следующий за последней фигурой последовательности, если он уже известен.
+     */
+    private int endIndex = Integer.MAX_VALUE;
+
+    /**
+     * Создаёт буфер, размер которого задаётся системным свойством {@link ShapePrefetcher#WINDOW_SIZE_PROPERTY}.
+     *
+     * @param client     клиент, подключённый к серверу;
+     * @param firstIndex номер первой фигуры;
+     * @param timeout    наибольшее время ожидания ответа сервера;
+     */
+    public ShapePrefetcher(Client client, int firstIndex, Duration timeout) {
+        this(client, firstIndex, Integer.getInteger(WINDOW_SIZE_PROPERTY, DEFAULT_WINDOW_SIZE), timeout);
+    }
+
+    /**
+     * @param client     клиент, подключённый к серверу;
+     * @param firstIndex номер первой фигуры;
+     * @param windowSize количество заранее запрашиваемых фигур;
+     * @param timeout    наибольшее время ожидания ответа сервера;
+     */
+    public ShapePrefetcher(Client client, int firstIndex, int windowSize, Duration timeout) {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("Prefetch window size must be positive");
+        }
+
+        this.client = client;
+        this.windowSize = windowSize;
+        this.timeout = timeout;
+        nextIndex = firstIndex;
+        requestedIndex = firstIndex;
+
+        fill();
+    }
+
+    /**
+     * Выдаёт очередную фигуру и дозапрашивает освободившуюся часть окна.
+     *
+     * @return фигура в закодированном виде, либо результат, завершённый исключением
+     * {@link NoSuchElementException}, если последовательность фигур сессии исчерпана.
+     */
+    public synchronized CompletableFuture<String> next() {
+        CompletableFuture<String> shape = shapes.remove(nextIndex);
+        if (shape == null) {
+            shape = CompletableFuture.failedFuture(new NoSuchElementException("No shape with index " + nextIndex));
+        }
+
+        nextIndex++;
+        fill();
+
+        return shape;
+    }
+
+    /**
+     * Запрашивает недостающие фигуры окна одним запросом. Чтобы не отправлять запрос на каждую
+     * выданную фигуру, окно пополняется, когда в нём освобождается не менее половины мест.
+     */
+    private void fill() {
+        int windowEnd = (int) Math.min(Math.min((long) nextIndex + windowSize, endIndex),
+                (long) requestedIndex + MAX_RANGE_LENGTH);
+        int missingCount = windowEnd - requestedIndex;
+        if (missingCount <= 0 || requestedIndex > nextIndex
+                && missingCount < Math.min((windowSize + 1) / 2, MAX_RANGE_LENGTH)) {
+            return;
+        }
+
+        List<CompletableFuture<String>> range = new ArrayList<>(missingCount);
+        for (int index = requestedIndex; index < windowEnd; index++) {
+            CompletableFuture<String> shape = new CompletableFuture<>();
+            shapes.put(index, shape);
+            range.add(shape);
+        }
+
+        int fromIndex = requestedIndex;
+        requestedIndex = windowEnd;
+
+        JSONObject container = new JSONObject().put("from", fromIndex).put("count", missingCount);
+        client.request("get_shapes", container.toString(), timeout).whenComplete((data, exception) ->
+                completeRange(fromIndex, range, exception == null ? data.getJSONArray("shapes") : null, exception));
+    }
+
+    private void completeRange(int fromIndex, List<CompletableFuture<String>> range,
+                               JSONArray encodedShapes, Throwable exception) {
+        if (exception == null && encodedShapes.length() < range.size()) {
+            synchronized (this) {
+                endIndex = Math.min(endIndex, fromIndex + encodedShapes.length());
+            }
+        }
+
+        for (int offset = 0; offset < range.size(); offset++) {
+            CompletableFuture<String> shape = range.get(offset);
+            if (exception != null) {
+                shape.completeExceptionally(exception);
+            } else if (offset < encodedShapes.length()) {
+                shape.complete(encodedShapes.getString(offset));
+            } else {
+                shape.completeExceptionally(new NoSuchElementException("No shape with index " + (fromIndex + offset)));
+            }
+        }
+    }
+}
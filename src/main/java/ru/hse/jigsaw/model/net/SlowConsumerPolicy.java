@@ -0,0 +1,23 @@
+package ru.hse.jigsaw.model.net;
+
+/**
+ * Поведение сервера при переполнении очереди исходящих сообщений клиента,
+ * не успевающего принимать данные.
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * Новое сообщение отбрасывается.
+     */
+    DROP,
+
+    /**
+     * Из очереди удаляется самое старое событие: каждое следующее событие описывает более актуальное
+     * состояние. Если в очереди остались только ответы на запросы, отбрасывается новое сообщение.
+     */
+    COLLAPSE,
+
+    /**
+     * Соединение с клиентом разрывается.
+     */
+    DISCONNECT
+}
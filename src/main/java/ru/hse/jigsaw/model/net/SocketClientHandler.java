@@ -0,0 +1,143 @@
+package ru.hse.jigsaw.model.net;
+
+import java.io.*;
+import java.net.ProtocolException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Соединение с клиентом, обслуживаемое блокирующим сокетом. Запросы, начиная с запроса регистрации,
+ * читаются в потоке обработчика, а очередь исходящих сообщений разбирается отдельным потоком записи.
+ * Пока очередь заполнена, следующий запрос не читается.
+ */
+final class SocketClientHandler extends Server.ClientHandler implements Runnable {
+    private static final Logger logger = Logger.getLogger(Server.class.getName());
+
+    private final Socket clientSocket;
+    private InputStream requestStream;
+    private final MessageReader requestReader;
+
+    private volatile boolean isWriterRunning = false;
+    private final AtomicBoolean isClosed = new AtomicBoolean(false);
+
+    SocketClientHandler(Socket clientSocket, Server server, Executor writerExecutor) {
+        super(server);
+        this.clientSocket = clientSocket;
+        requestReader = new MessageReader(server.metrics.getReceivedBytesCounter());
+
+        try {
+            requestStream = clientSocket.getInputStream();
+            OutputStream messageStream = new BufferedOutputStream(clientSocket.getOutputStream());
+
+            isWriterRunning = true;
+            writerExecutor.execute(() -> writeMessages(messageStream));
+        } catch (IOException exception) {
+            logger.log(Level.SEVERE, "Возникла исключительная ситуация:", exception);
+            closeConnection();
+        }
+    }
+
+    /**
+     * Читает запрос регистрации и последующие запросы клиента. Выполняется в собственном потоке соединения,
+     * а не в потоке, принимающем соединения.
+     */
+    @Override
+    public void run() {
+        if (!isClosed.get()) {
+            startHandshake();
+        }
+        processRequests();
+    }
+
+    private void processRequests() {
+        try {
+            while (!clientSocket.isClosed() && !isClosed.get()) {
+                outboundQueue.awaitCapacity();
+                processMessage(requestReader.read(requestStream, inboundCodec));
+            }
+        } catch (SocketException | EOFException exception) {
+            logger.log(Level.INFO, String.format("Пользователь %s#%s потерял соединение с сервером",
+                    getNickname(), getId()));
+        } catch (ProtocolException exception) {
+            logger.log(Level.WARNING, String.format(
+                    "Пользователь %s#%s прислал сообщение, не соответствующее протоколу: %s",
+                    getNickname(), getId(), exception.getMessage()));
+        } catch (IOException exception) {
+            logger.log(Level.SEVERE, "Возникла исключительная ситуация при обработке запроса:", exception);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeConnection();
+        }
+    }
+
+    /**
+     * Записывает сообщения из очереди в сокет. Буфер потока сбрасывается, когда очередь опустела,
+     * поэтому накопившиеся сообщения уходят в сеть вместе. Сокет закрывается после получения
+     * всех сообщений из закрытой очереди.
+     *
+     * @param messageStream буферизованный поток исходящих данных сокета;
+     */
+    private void writeMessages(OutputStream messageStream) {
+        try (messageStream) {
+            EncodedMessage message;
+            while ((message = outboundQueue.take()) != null) {
+                message.writeTo(messageStream);
+                server.metrics.onBytesSent(message.length());
+                if (outboundQueue.isEmpty()) {
+                    messageStream.flush();
+                }
+            }
+        } catch (IOException exception) {
+            logger.log(Level.INFO, String.format("Не удалось отправить сообщение пользователю %s#%s",
+                    getNickname(), getId()));
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } finally {
+            isWriterRunning = false;
+            closeSocket();
+        }
+    }
+
+    @Override
+    void onMessageQueued() {
+    }
+
+    @Override
+    void releaseResources() {
+        if (!isClosed.compareAndSet(false, true)) {
+            return;
+        }
+
+        outboundQueue.close();
+        if (isWriterRunning) {
+            try {
+                clientSocket.shutdownInput();
+            } catch (IOException exception) {
+                closeSocket();
+            }
+        } else {
+            closeSocket();
+        }
+    }
+
+    @Override
+    void abortResources() {
+        isClosed.set(true);
+        outboundQueue.close();
+        closeSocket();
+    }
+
+    private void closeSocket() {
+        try {
+            clientSocket.close();
+        } catch (IOException exception) {
+            logger.log(Level.SEVERE, "Возникла исключительная ситуация при закрытии соединения:", exception);
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
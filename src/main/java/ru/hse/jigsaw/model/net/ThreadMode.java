@@ -0,0 +1,111 @@
+package ru.hse.jigsaw.model.net;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Режим исполнения потоков, обслуживающих сетевые соединения.
+ */
+public enum ThreadMode {
+    /**
+     * Каждая задача исполняется на потоке операционной системы.
+     */
+    PLATFORM,
+
+    /**
+     * Каждая задача исполняется на виртуальном потоке JDK. Если среда исполнения не поддерживает
+     * виртуальные потоки, используются потоки операционной системы, о чём однократно сообщается в журнал.
+     */
+    VIRTUAL;
+
+    /**
+     * Системное свойство, задающее режим по умолчанию: {@code platform} или {@code virtual}.
+     */
+    public static final String THREAD_MODE_PROPERTY = "jigsaw.threads";
+
+    private static final Logger logger = Logger.getLogger(ThreadMode.class.getName());
+
+    /**
+     * Фабрика виртуальных потоков. Равна {@code null}, если среда исполнения их не поддерживает.
+     */
+    private static final ThreadFactory virtualThreadFactory = lookupVirtualThreadFactory();
+
+    /**
+     * Сообщено ли в журнал, что вместо виртуальных потоков используются потоки ОС.
+     */
+    private static final AtomicBoolean isFallbackReported = new AtomicBoolean(false);
+
+    public static ThreadMode fromSystemProperty() {
+        return "virtual".equalsIgnoreCase(System.getProperty(THREAD_MODE_PROPERTY)) ? VIRTUAL : PLATFORM;
+    }
+
+    /**
+     * @return {@code true}, если режим может быть применён в текущей среде исполнения.
+     */
+    public boolean isSupported() {
+        return this == PLATFORM || virtualThreadFactory != null;
+    }
+
+    /**
+     * Создаёт исполнитель, запускающий каждую задачу в новом потоке.
+     */
+    ExecutorService newThreadPerTaskExecutor() {
+        if (useVirtualThreads()) {
+            try {
+                Method factoryMethod = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                return (ExecutorService) factoryMethod.invoke(null, virtualThreadFactory);
+            } catch (ReflectiveOperationException exception) {
+                logger.log(Level.WARNING, "Исполнитель виртуальных потоков JDK недоступен, "
+                        + "виртуальные потоки запускаются через пул потоков.", exception);
+                return Executors.newCachedThreadPool(virtualThreadFactory);
+            }
+        }
+
+        return Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Создаёт исполнитель, последовательно выполняющий задачи в одном потоке.
+     */
+    ExecutorService newSingleThreadExecutor() {
+        if (useVirtualThreads()) {
+            return Executors.newSingleThreadExecutor(virtualThreadFactory);
+        }
+
+        return Executors.newSingleThreadExecutor();
+    }
+
+    private boolean useVirtualThreads() {
+        if (this != VIRTUAL) {
+            return false;
+        }
+
+        if (virtualThreadFactory == null) {
+            if (isFallbackReported.compareAndSet(false, true)) {
+                logger.log(Level.WARNING, String.format("Запрошен режим virtual, но Java %s не поддерживает "
+                        + "виртуальные потоки: соединения обслуживаются потоками ОС.", Runtime.version()));
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    private static ThreadFactory lookupVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, "jigsaw-virtual-", 0L);
+
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException exception) {
+            return null;
+        }
+    }
+}
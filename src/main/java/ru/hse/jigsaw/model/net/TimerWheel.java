@@ -0,0 +1,215 @@
+package ru.hse.jigsaw.model.net;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Хешированное колесо таймеров. Отложенные задачи раскладываются по ячейкам колеса по номеру такта,
+ * на котором истекает их срок, поэтому добавление и отмена задачи выполняются за постоянное время,
+ * а за такт просматривается только одна ячейка. Точность срабатывания ограничена длительностью такта,
+ * чего достаточно для проверки активности соединений.
+ * <p>
+ * Задачи выполняются единственным потоком колеса и не должны блокироваться.
+ */
+final class TimerWheel implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(Server.class.getName());
+
+    /**
+     * Отложенная задача колеса.
+     */
+    static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadlineNanos;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        /**
+         * Количество полных оборотов колеса до срабатывания. Изменяется только потоком колеса.
+         */
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout previous;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Отменяет задачу, если она ещё не выполнена. Задача удаляется из колеса при просмотре её ячейки.
+         *
+         * @return {@code true}, если задача отменена, {@code false}, если она уже выполняется или выполнена.
+         */
+        boolean cancel() {
+            return state.compareAndSet(PENDING, CANCELLED) || isCancelled();
+        }
+
+        boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+    }
+
+    /**
+     * Ячейка колеса — двусвязный список задач. Изменяется только потоком колеса.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        Timeout remove(Timeout timeout) {
+            Timeout next = timeout.next;
+            if (timeout.previous != null) {
+                timeout.previous.next = next;
+            } else {
+                head = next;
+            }
+            if (next != null) {
+                next.previous = timeout.previous;
+            } else {
+                tail = timeout.previous;
+            }
+
+            timeout.next = null;
+            timeout.previous = null;
+            return next;
+        }
+    }
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+
+    /**
+     * Задачи, добавленные другими потоками и ещё не разложенные по ячейкам.
+     */
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean isClosed = false;
+
+    /**
+     * @param tickMillis длительность такта в миллисекундах;
+     * @param wheelSize  количество ячеек колеса, округляемое вверх до степени двойки;
+     * @param threadName имя потока колеса;
+     */
+    TimerWheel(long tickMillis, int wheelSize, String threadName) {
+        if (tickMillis < 1 || wheelSize < 1) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        }
+
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+
+        wheel = new Bucket[size];
+        for (int index = 0; index < wheel.length; index++) {
+            wheel[index] = new Bucket();
+        }
+        mask = wheel.length - 1;
+
+        worker = new Thread(this::run, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Планирует выполнение задачи.
+     *
+     * @param task        задача;
+     * @param delayMillis задержка в миллисекундах;
+     * @return отложенная задача, которую можно отменить, либо {@code null}, если колесо остановлено.
+     */
+    Timeout schedule(Runnable task, long delayMillis) {
+        if (isClosed) {
+            return null;
+        }
+
+        long deadlineNanos = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        Timeout timeout = new Timeout(task, deadlineNanos);
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+        worker.interrupt();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (!isClosed) {
+            long tickDeadlineNanos = (tick + 1) * tickNanos;
+            long sleepNanos = tickDeadlineNanos - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException exception) {
+                    return;
+                }
+            }
+
+            transferPendingTimeouts(tick);
+            expireTimeouts(wheel[(int) (tick & mask)], tickDeadlineNanos);
+            tick++;
+        }
+    }
+
+    /**
+     * Раскладывает новые задачи по ячейкам. Задача, срок которой уже истёк, попадает в текущую ячейку.
+     */
+    private void transferPendingTimeouts(long tick) {
+        Timeout timeout;
+        while ((timeout = pendingTimeouts.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            long deadlineTick = Math.max(timeout.deadlineNanos / tickNanos, tick);
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+            wheel[(int) (deadlineTick & mask)].add(timeout);
+        }
+    }
+
+    private void expireTimeouts(Bucket bucket, long tickDeadlineNanos) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            if (timeout.isCancelled()) {
+                timeout = bucket.remove(timeout);
+            } else if (timeout.remainingRounds <= 0 && timeout.deadlineNanos <= tickDeadlineNanos) {
+                Timeout next = bucket.remove(timeout);
+                if (timeout.state.compareAndSet(Timeout.PENDING, Timeout.EXPIRED)) {
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException exception) {
+                        logger.log(Level.SEVERE, "Возникла исключительная ситуация при выполнении отложенной задачи:",
+                                exception);
+                    }
+                }
+                timeout = next;
+            } else {
+                timeout.remainingRounds--;
+                timeout = timeout.next;
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package ru.hse.jigsaw.model.session;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import ru.hse.jigsaw.model.journal.MatchEventType;
+import ru.hse.jigsaw.model.journal.MatchJournal;
+import ru.hse.jigsaw.model.net.Room;
+import ru.hse.jigsaw.model.net.ShapePrefetcher;
+import ru.hse.jigsaw.model.shape.ShapeCatalog;
+import ru.hse.jigsaw.model.shape.ShapeSequence;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Серверная логика сетевой игры в одной комнате: запуск игры при наборе игроков, ограничение
+ * времени сессии, выдача фигур и подведение итогов. Не зависит от JavaFX, поэтому используется
+ * как сервером, запущенным игроком, так и выделенным сервером.
+ * После окончания игры и выхода всех игроков комната снова открывается для регистрации.
+ * <p>
+ * Если задан журнал матчей, каждая игра записывается в него как отдельная сессия.
+ */
+public class GameSession implements Room.MembershipListener {
+    private static final Logger logger = Logger.getLogger(GameSession.class.getName());
+
+    private enum State {
+        WAITING_FOR_PLAYERS,
+        STARTED,
+        FINISHED
+    }
+
+    private final Room room;
+    private final int playersCount;
+    private final Duration sessionDuration;
+
+    /**
+     * Журнал матчей или {@code null}, если игры не записываются.
+     */
+    private final MatchJournal journal;
+
+    /**
+     * Идентификатор текущей игры в журнале матчей.
+     */
+    private volatile long sessionId;
+
+    /**
+     * Блокировка состояния игры. Под ней рассылаются события комнаты, поэтому используется {@link ReentrantLock},
+     * а не монитор: виртуальный поток, ожидающий под ней, не закрепляет поток-носитель.
+     */
+    private final Lock lock = new ReentrantLock();
+
+    private State state = State.WAITING_FOR_PLAYERS;
+    private ShapeSequence shapes = ShapeCatalog.createSequence(ThreadLocalRandom.current().nextLong());
+
+    /**
+     * Игроки в порядке подключения. Этот порядок совпадает с порядком участников в снимке состава комнаты.
+     */
+    private final List<PlayerRecord> players = new ArrayList<>();
+
+    /**
+     * Срок окончания текущей игры на общем планировщике сервера. Отменяется, если игра закончилась раньше.
+     */
+    private ScheduledFuture<?> sessionTimer;
+
+    /**
+     * @param room            комната, в которой проходит игра;
+     * @param playersCount    количество игроков, при наборе которого начинается игра;
+     * @param sessionDuration длительность игровой сессии;
+     */
+    public GameSession(Room room, int playersCount, Duration sessionDuration) {
+        this(room, playersCount, sessionDuration, null);
+    }
+
+    /**
+     * @param room            комната, в которой проходит игра;
+     * @param playersCount    количество игроков, при наборе которого начинается игра;
+     * @param sessionDuration длительность игровой сессии;
+     * @param journal         журнал матчей, в который записываются игры, или {@code null};
+     */
+    public GameSession(Room room, int playersCount, Duration sessionDuration, MatchJournal journal) {
+        this.room = room;
+        this.playersCount = playersCount;
+        this.sessionDuration = sessionDuration;
+        this.journal = journal;
+        sessionId = journal != null ? journal.newSessionId() : 0;
+    }
+
+    /**
+     * Регистрирует события и ответы игры в комнате и начинает отслеживать её состав.
+     */
+    public void install() {
+        room.addEvent("game_started", () -> new JSONObject()
+                .put("session_duration", sessionDuration.toString())
+                .put("shape_seed", getShapes().getSeed()));
+        room.addEvent("game_over", this::finishGame);
+        room.addEvent("players_info_changed", () -> {
+            JSONArray playersInfo = getPlayersInfo();
+            record(MatchEventType.PLAYERS_INFO_CHANGED, null, playersInfo);
+            return new JSONObject().put("players_info", playersInfo);
+        });
+
+        room.addResponse("get_shape", data -> {
+            int index = Integer.parseInt(data);
+            record(MatchEventType.SHAPE_SERVED, null, new JSONObject().put("from", index).put("count", 1));
+            return new JSONObject().put("shape", getShapes().getEncodedShape(index));
+        });
+        room.addResponse("get_shapes", data -> {
+            JSONObject container = new JSONObject(data);
+            int fromIndex = Math.max(container.getInt("from"), 0);
+            int count = Math.min(container.getInt("count"), ShapePrefetcher.MAX_RANGE_LENGTH);
+
+            record(MatchEventType.SHAPE_SERVED, null, new JSONObject().put("from", fromIndex).put("count", count));
+            ShapeSequence sessionShapes = getShapes();
+            JSONArray encodedShapes = new JSONArray();
+            for (int index = fromIndex; index < fromIndex + count; index++) {
+                encodedShapes.put(sessionShapes.getEncodedShape(index));
+            }
+            return new JSONObject().put("from", fromIndex).put("shapes", encodedShapes);
+        });
+        room.addResponse("get_game_duration", data ->
+                new JSONObject().put("game_duration", sessionDuration.toString()));
+        room.addResponse("player_finished", data -> {
+            JSONObject container = new JSONObject(data);
+            onPlayerFinished(container.getString("id"), Duration.parse(container.getString("game_duration")),
+                    container.getInt("placed_shapes_count"));
+            return new JSONObject();
+        });
+
+        room.setMembershipListener(this);
+    }
+
+    public boolean isStarted() {
+        lock.lock();
+        try {
+            return state == State.STARTED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ShapeSequence getShapes() {
+        lock.lock();
+        try {
+            return shapes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private JSONArray getPlayersInfo() {
+        lock.lock();
+        try {
+            JSONArray container = new JSONArray();
+            for (PlayerRecord player : players) {
+                container.put(player.toJson());
+            }
+
+            return container;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onMemberJoined(String id, String nickname) {
+        lock.lock();
+        try {
+            if (state != State.WAITING_FOR_PLAYERS) {
+                return;
+            }
+
+            players.add(new PlayerRecord(id, nickname));
+            record(MatchEventType.PLAYER_JOINED, id, nickname);
+            if (players.size() >= playersCount) {
+                startGame();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onMemberLeft(String id) {
+        lock.lock();
+        try {
+            switch (state) {
+                case WAITING_FOR_PLAYERS -> {
+                    if (players.removeIf(player -> player.getId().equals(id))) {
+                        record(MatchEventType.PLAYER_LEFT, id, null);
+                    }
+                }
+                case STARTED -> {
+                    record(MatchEventType.PLAYER_LEFT, id, null);
+                    PlayerRecord player = findPlayer(id);
+                    if (player != null) {
+                        player.setStatus(PlayerStatus.LEFT);
+                    }
+
+                    long remainingPlayersCount = players.stream()
+                            .filter(info -> info.getStatus() != PlayerStatus.LEFT).count();
+                    boolean isAnyonePlaying = players.stream()
+                            .anyMatch(info -> info.getStatus() == PlayerStatus.PLAYING);
+                    if (remainingPlayersCount < 2 || !isAnyonePlaying) {
+                        room.sendEvent("game_over");
+                    } else {
+                        room.sendEvent("players_info_changed");
+                    }
+                }
+                case FINISHED -> {
+                    if (room.getMembersCount() == 0) {
+                        reset();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startGame() {
+        state = State.STARTED;
+        room.closeRegistration();
+        record(MatchEventType.SESSION_STARTED, null, new JSONObject().put("room", room.getId())
+                .put("shape_seed", shapes.getSeed()).put("session_duration", sessionDuration.toString()));
+        room.sendEvent("game_started");
+
+        sessionTimer = room.getScheduler().schedule(() -> room.sendEvent("game_over"),
+                sessionDuration.toMillis(), TimeUnit.MILLISECONDS);
+        logger.log(Level.INFO, String.format("В комнате %s началась игра.", room.getId()));
+    }
+
+    private void onPlayerFinished(String id, Duration gameDuration, int placedShapesCount) {
+        lock.lock();
+        try {
+            PlayerRecord player = findPlayer(id);
+            if (player == null || player.getStatus() != PlayerStatus.PLAYING) {
+                return;
+            }
+
+            player.finish(gameDuration, placedShapesCount);
+            record(MatchEventType.PLAYER_FINISHED, id, new JSONObject().put("game_duration", gameDuration.toString())
+                    .put("placed_shapes_count", placedShapesCount));
+            if (players.stream().allMatch(info -> info.getStatus() == PlayerStatus.WAITING_FOR_RESULTS
+                    || info.getStatus() == PlayerStatus.LEFT)) {
+                room.sendEvent("game_over");
+            } else {
+                room.sendEvent("players_info_changed");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Подводит итоги игры, если все оставшиеся игроки сообщили свои результаты.
+     * Иначе событие лишь уведомляет игроков об окончании игры, и они отправляют свои результаты.
+     *
+     * @return тело события {@code game_over}.
+     */
+    private JSONObject finishGame() {
+        lock.lock();
+        try {
+            if (state != State.STARTED
+                    || players.stream().anyMatch(info -> info.getStatus() == PlayerStatus.PLAYING)) {
+                return new JSONObject();
+            }
+
+            state = State.FINISHED;
+            if (sessionTimer != null) {
+                sessionTimer.cancel(false);
+                sessionTimer = null;
+            }
+
+            players.stream().filter(info -> info.getStatus() == PlayerStatus.WAITING_FOR_RESULTS)
+                    .min(PlayerRecord.RESULTS_ORDER).ifPresent(winner -> {
+                        for (PlayerRecord player : players) {
+                            if (player.getStatus() == PlayerStatus.WAITING_FOR_RESULTS) {
+                                player.setStatus(player == winner ? PlayerStatus.WINNER : PlayerStatus.PARTICIPANT);
+                            }
+                        }
+                    });
+            room.sendEvent("players_info_changed");
+            record(MatchEventType.SESSION_FINISHED, null, getPlayersInfo());
+
+            if (room.getMembersCount() == 0) {
+                reset();
+            }
+            return new JSONObject();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Готовит комнату к следующей игре.
+     */
+    private void reset() {
+        state = State.WAITING_FOR_PLAYERS;
+        players.clear();
+        if (journal != null) {
+            sessionId = journal.newSessionId();
+        }
+        shapes = ShapeCatalog.createSequence(ThreadLocalRandom.current().nextLong());
+        room.openRegistration();
+    }
+
+    /**
+     * Записывает событие текущей игры в журнал матчей, если он задан.
+     *
+     * @param type     тип записи;
+     * @param playerId идентификатор игрока или {@code null};
+     * @param payload  полезная нагрузка или {@code null};
+     */
+    private void record(MatchEventType type, String playerId, Object payload) {
+        if (journal != null) {
+            journal.record(sessionId, type, playerId, payload);
+        }
+    }
+
+    private PlayerRecord findPlayer(String id) {
+        for (PlayerRecord player : players) {
+            if (Objects.equals(player.getId(), id)) {
+                return player;
+            }
+        }
+
+        return null;
+    }
+}
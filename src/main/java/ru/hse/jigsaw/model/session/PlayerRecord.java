@@ -0,0 +1,77 @@
+package ru.hse.jigsaw.model.session;
+
+import org.json.JSONObject;
+
+import java.time.Duration;
+import java.util.Comparator;
+
+/**
+ * Результаты игрока, которые сервер хранит на протяжении игровой сессии.
+ */
+public class PlayerRecord {
+    /**
+     * Порядок определения победителя: больше размещённых фигур, при равенстве — меньше затраченного времени.
+     */
+    public static final Comparator<PlayerRecord> RESULTS_ORDER = Comparator
+            .comparingInt(PlayerRecord::getPlacedShapesCount).reversed()
+            .thenComparing(PlayerRecord::getGameDuration);
+
+    private final String id;
+    private final String nickname;
+    private PlayerStatus status = PlayerStatus.PLAYING;
+    private Duration gameDuration = Duration.ZERO;
+    private int placedShapesCount = 0;
+
+    public PlayerRecord(String id, String nickname) {
+        this.id = id;
+        this.nickname = nickname;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getNickname() {
+        return nickname;
+    }
+
+    public PlayerStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(PlayerStatus status) {
+        this.status = status;
+    }
+
+    public Duration getGameDuration() {
+        return gameDuration;
+    }
+
+    public int getPlacedShapesCount() {
+        return placedShapesCount;
+    }
+
+    /**
+     * Фиксирует результат игрока, завершившего игру.
+     *
+     * @param gameDuration      время, затраченное игроком;
+     * @param placedShapesCount количество размещённых игроком фигур;
+     */
+    public void finish(Duration gameDuration, int placedShapesCount) {
+        this.status = PlayerStatus.WAITING_FOR_RESULTS;
+        this.gameDuration = gameDuration;
+        this.placedShapesCount = placedShapesCount;
+    }
+
+    /**
+     * @return описание игрока в формате, которым клиенты заполняют таблицу лобби.
+     */
+    public JSONObject toJson() {
+        return new JSONObject()
+                .put("id", id)
+                .put("nickname", nickname)
+                .put("status", status.getTitle())
+                .put("gameDuration", gameDuration.toString())
+                .put("placedShapesCount", placedShapesCount);
+    }
+}
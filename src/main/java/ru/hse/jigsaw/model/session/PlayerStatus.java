@@ -0,0 +1,22 @@
+package ru.hse.jigsaw.model.session;
+
+/**
+ * Состояние игрока в сетевой игре. Название состояния передаётся клиентам и отображается в лобби.
+ */
+public enum PlayerStatus {
+    PLAYING("Играет"),
+    WAITING_FOR_RESULTS("Ожидает результатов"),
+    WINNER("Победитель"),
+    PARTICIPANT("Участник"),
+    LEFT("Покинул(-а) лобби");
+
+    private final String title;
+
+    PlayerStatus(String title) {
+        this.title = title;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.hse.jigsaw.model.shape;
+
+import java.text.ParseException;
+
+/**
+ * Сеанс перетаскивания фигуры.
+ * <p>
+ * Создаётся один раз при начале перетаскивания и хранит фигуру, которая будет размещена в игровой зоне,
+ * и блок, за который её перетаскивают. Обработчики наведения и сброса берут фигуру из сеанса, поэтому после
+ * начала перетаскивания не разбирают данные перетаскивания и не создают новых блоков.
+ * <p>
+ * Одновременно возможно лишь одно перетаскивание, и все обработчики выполняются потоком JavaFX,
+ * поэтому активный сеанс хранится в статическом поле без синхронизации.
+ */
+public final class DragSession {
+    private static DragSession active;
+
+    /**
+     * Источник перетаскивания, по которому обработчики приёмника находят сеанс.
+     */
+    private final Object gestureSource;
+
+    private final Shape shape;
+    private final int originRow;
+    private final int originColumn;
+
+    private DragSession(Object gestureSource, Shape shape, int originRow, int originColumn) {
+        this.gestureSource = gestureSource;
+        this.shape = shape;
+        this.originRow = originRow;
+        this.originColumn = originColumn;
+    }
+
+    /**
+     * Начинает сеанс, заменяя предыдущий.
+     *
+     * @param gestureSource источник перетаскивания;
+     * @param shape         фигура, которая будет размещена в игровой зоне; её блоки не должны входить в другие зоны;
+     * @param originRow     строка блока, за который перетаскивается фигура;
+     * @param originColumn  столбец блока, за который перетаскивается фигура;
+     * @return новый сеанс.
+     */
+    public static DragSession start(Object gestureSource, Shape shape, int originRow, int originColumn) {
+        active = new DragSession(gestureSource, shape, originRow, originColumn);
+        return active;
+    }
+
+    /**
+     * Начинает сеанс по данным перетаскивания, если перетаскивание началось не в этом окне приложения.
+     *
+     * @param gestureSource источник перетаскивания;
+     * @param payload       данные перетаскивания в виде {@link ShapeCodec#encodeDragPayload(String, int, int)};
+     * @return новый сеанс.
+     * @throws ParseException в случае, если не удалось разобрать данные перетаскивания.
+     */
+    public static DragSession start(Object gestureSource, String payload) throws ParseException {
+        ShapeCodec.DragPayload dragPayload = ShapeCodec.decodeDragPayload(payload);
+        return start(gestureSource, Shape.parse(dragPayload.encodedShape()),
+                dragPayload.originRow(), dragPayload.originColumn());
+    }
+
+    /**
+     * @param gestureSource источник перетаскивания;
+     * @return активный сеанс этого перетаскивания или {@code null}, если он не начат.
+     */
+    public static DragSession get(Object gestureSource) {
+        DragSession session = active;
+        return session != null && session.gestureSource == gestureSource ? session : null;
+    }
+
+    /**
+     * Завершает сеанс перетаскивания, если он активен.
+     *
+     * @param gestureSource источник перетаскивания;
+     */
+    public static void finish(Object gestureSource) {
+        if (get(gestureSource) != null) {
+            active = null;
+        }
+    }
+
+    public Shape getShape() {
+        return shape;
+    }
+
+    public int getOriginRow() {
+        return originRow;
+    }
+
+    public int getOriginColumn() {
+        return originColumn;
+    }
+}
@@ -1,32 +1,30 @@
 package ru.hse.jigsaw.model.shape;
 
+import ru.hse.jigsaw.model.board.ShapeMask;
+
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.StringJoiner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Класс, описывающий фигуру в игровой зоне.
  */
 public class Shape {
     /**
-     * Паттерн поиска координат блока в строковом представлении структуры фигуры.
+     * Список блоков фигуры.
      */
-    private static final Pattern shapeDataPattern = Pattern.compile("\\((?<row>\\d);(?<column>\\d)\\)");
+    private final List<Tile> tiles;
 
     /**
-     * Паттерн поиска зашифрованной в строку фигуры.
+     * Координаты блоков фигуры в виде пар {@code {строка, столбец}} относительно её начала координат.
+     * В отличие от координат блоков, не изменяются при переносе фигуры в игровую зону.
      */
-    private static final Pattern encodedShapePattern = Pattern.compile(
-            "\\[(?<shapeData>.+)\\$(?<hexColor>.+)\\$(?<styleClass>.+)]"
-    );
+    private final int[][] cells;
 
     /**
-     * Список блоков фигуры.
+     * Маска фигуры, построенная последней, — как правило, для единственной игровой зоны.
      */
-    private final List<Tile> tiles;
+    private ShapeMask mask;
 
     /**
      * Строка-шифр, описывающая фигуру.
@@ -37,53 +35,114 @@ public class Shape {
      * HEX-код цвета всех ячеек фигуры.
      */
     private final String hexColor;
+    private final String styleClass;
+
+    /**
+     * Стиль, которым ячейки игровой зоны выделяют силуэт фигуры. Строится при первом выделении.
+     */
+    private String highlightStyle;
 
     private boolean isDraggable = false;
 
+    /**
+     * @param shapeData  строковое представление структуры фигуры вида {@code (0;2)(0;1)(1;1)};
+     * @param hexColor   HEX-код цвета ячеек фигуры;
+     * @param styleClass название класса стиля блоков фигуры;
+     * @throws IllegalArgumentException в случае, если строка не является представлением структуры фигуры.
+     */
     public Shape(String shapeData, String hexColor, String styleClass) {
-        tiles = new ArrayList<>();
-        this.hexColor = hexColor;
-
-        StringJoiner stringJoiner = new StringJoiner("$", "[", "]");
-        stringJoiner.add(shapeData).add(hexColor).add(styleClass);
-        this.encodedShape = stringJoiner.toString();
+        this(parseCells(shapeData), hexColor, styleClass);
+    }
 
-        Matcher matcher = shapeDataPattern.matcher(shapeData);
-        while (matcher.find()) {
-            int row = Integer.parseInt(matcher.group("row"));
-            int column = Integer.parseInt(matcher.group("column"));
+    /**
+     * @param cells      координаты блоков фигуры в виде пар {@code {строка, столбец}};
+     * @param hexColor   HEX-код цвета ячеек фигуры;
+     * @param styleClass название класса стиля блоков фигуры;
+     */
+    public Shape(int[][] cells, String hexColor, String styleClass) {
+        this.cells = cells;
+        this.hexColor = hexColor;
+        this.styleClass = styleClass;
+        this.encodedShape = ShapeCodec.encode(cells, hexColor, styleClass);
 
-            Tile tile = new Tile(row, column, this, styleClass);
+        tiles = new ArrayList<>(cells.length);
+        for (int[] cell : cells) {
+            Tile tile = new Tile(cell[0], cell[1], this, styleClass);
             tile.setStyle(String.format("-fx-background-color: %s", hexColor));
             tiles.add(tile);
         }
     }
 
     /**
-     * Десериализует фигуру по её строковому представлению.
+     * Шифрует фигуру в строку, не создавая её блоков.
+     *
+     * @param shapeData  строковое представление структуры фигуры;
+     * @param hexColor   HEX-код цвета ячеек фигуры;
+     * @param styleClass название класса стиля блоков фигуры;
+     * @return строка-шифр в компактном представлении {@link ShapeCodec}, пригодная для {@link Shape#parse(String)}.
+     * @throws IllegalArgumentException в случае, если строка не является представлением структуры фигуры.
+     */
+    public static String encode(String shapeData, String hexColor, String styleClass) {
+        return ShapeCodec.encode(parseCells(shapeData), hexColor, styleClass);
+    }
+
+    /**
+     * Десериализует фигуру по её строковому представлению — компактному или прежнему.
      *
      * @param encodedShape зашифрованная в строку фигура;
      * @return результат десериализации;
      * @throws ParseException в случае, если не удалось реконструировать фигуру на основе переданной строки.
      */
     public static Shape parse(String encodedShape) throws ParseException {
-        Matcher matcher = encodedShapePattern.matcher(encodedShape);
-        if (matcher.matches()) {
-            String shapeData = matcher.group("shapeData");
-            String hexColor = matcher.group("hexColor");
-            String styleClass = matcher.group("styleClass");
+        ShapeCodec.ShapeCode shapeCode = ShapeCodec.decode(encodedShape);
+        return new Shape(shapeCode.cells(), shapeCode.hexColor(), shapeCode.styleClass());
+    }
 
-            return new Shape(shapeData, hexColor, styleClass);
-        } else {
-            throw new ParseException(
-                    String.format("Impossible to parse figure from the provided string: %s", encodedShape), 0);
+    private static int[][] parseCells(String shapeData) {
+        try {
+            return ShapeCodec.parseCells(shapeData);
+        } catch (ParseException exception) {
+            throw new IllegalArgumentException(exception.getMessage(), exception);
         }
     }
 
+    /**
+     * @return новая фигура той же структуры и цвета с собственными блоками.
+     */
+    public Shape copy() {
+        return new Shape(cells, hexColor, styleClass);
+    }
+
     public List<Tile> getTiles() {
         return tiles;
     }
 
+    /**
+     * @param boardColumns количество столбцов игровой зоны;
+     * @return битовая маска фигуры для игровой зоны заданной ширины.
+     */
+    public ShapeMask getMask(int boardColumns) {
+        if (mask == null || mask.getBoardColumns() != boardColumns) {
+            mask = ShapeMask.of(cells, boardColumns);
+        }
+
+        return mask;
+    }
+
+    /**
+     * Переносит блоки фигуры так, чтобы её начало координат оказалось в заданной ячейке игровой зоны.
+     *
+     * @param row    строка ячейки;
+     * @param column столбец ячейки;
+     */
+    public void moveTo(int row, int column) {
+        for (int index = 0; index < cells.length; index++) {
+            Tile tile = tiles.get(index);
+            tile.setRow(row + cells[index][0]);
+            tile.setColumn(column + cells[index][1]);
+        }
+    }
+
     public String getEncodedShape() {
         return encodedShape;
     }
@@ -92,6 +151,17 @@ public class Shape {
         return hexColor;
     }
 
+    /**
+     * @return стиль ячейки игровой зоны, выделяющий силуэт фигуры: цвет границы ячейки совпадает с цветом фигуры.
+     */
+    public String getHighlightStyle() {
+        if (highlightStyle == null) {
+            highlightStyle = String.format("-fx-border-color: %s", hexColor);
+        }
+
+        return highlightStyle;
+    }
+
     public boolean isDraggable() {
         return isDraggable;
     }
@@ -107,10 +177,12 @@ public class Shape {
         if (draggable) {
             for (Tile tile : getTiles()) {
                 tile.setOnDragDetected(tile::onDragDetected);
+                tile.setOnDragDone(tile::onDragDone);
             }
         } else {
             for (Tile tile : getTiles()) {
                 tile.setOnDragDetected(null);
+                tile.setOnDragDone(null);
             }
         }
     }
@@ -0,0 +1,403 @@
+package ru.hse.jigsaw.model.shape;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * Неизменяемый набор паттернов конструирования фигур с весами, определяющими частоту их выдачи.
+ * Набор загружается и проверяется один раз; блоки паттернов хранятся в упакованном виде,
+ * поэтому выбор фигуры не требует ни разбора строк, ни выделения памяти.
+ * Не зависит от JavaFX и может использоваться выделенным сервером.
+ * <p>
+ * Файл набора — JSON-массив, элементы которого либо строки с паттерном вида {@code (0;0)(0;1)(1;1)},
+ * либо объекты {@code {"data": "(0;0)(0;1)(1;1)", "weight": 3}}. Вес строки-паттерна равен единице.
+ * <p>
+ * Последовательности фигур вычисляются по зерну и набору, поэтому сервер и клиенты одной игры
+ * должны использовать одинаковые наборы.
+ */
+public final class ShapeCatalog {
+    private static final String SHAPES_RESOURCE_PATH = "/ru/hse/jigsaw/shapes.json";
+
+    /**
+     * Название класса стиля строительного блока фигуры в игровой зоне.
+     */
+    public static final String GAME_BLOCK_STYLE_CLASS = "game-block";
+
+    /**
+     * Системное свойство, задающее набор фигур по умолчанию: название встроенного набора
+     * или путь к файлу набора.
+     */
+    public static final String SHAPE_SET_PROPERTY = "jigsaw.shapeSet";
+
+    /**
+     * Набор всех фигур из ресурса {@code shapes.json}.
+     */
+    public static final String ALL_SHAPE_SET = "all";
+
+    /**
+     * Фигуры из четырёх блоков.
+     */
+    public static final String TETROMINO_SHAPE_SET = "tetromino";
+
+    /**
+     * Фигуры из пяти блоков.
+     */
+    public static final String PENTOMINO_SHAPE_SET = "pentomino";
+
+    private final String name;
+    private final List<String> shapesData;
+
+    /**
+     * Начала компактных представлений фигур, не зависящие от их цвета и стиля.
+     */
+    private final String[] geometries;
+
+    /**
+     * Блоки всех паттернов подряд: строка в старших восьми битах, столбец — в младших.
+     */
+    private final short[] cells;
+
+    /**
+     * Номер первого блока каждого паттерна в {@link ShapeCatalog#cells}; последний элемент — общее число блоков.
+     */
+    private final int[] cellsOffsets;
+
+    /**
+     * Накопленные веса паттернов: {@code cumulativeWeights[i]} — сумма весов паттернов с номерами до {@code i}
+     * включительно.
+     */
+    private final long[] cumulativeWeights;
+
+    private ShapeCatalog(String name, List<String> shapesData, String[] geometries, short[] cells,
+                         int[] cellsOffsets, long[] cumulativeWeights) {
+        this.name = name;
+        this.shapesData = shapesData;
+        this.geometries = geometries;
+        this.cells = cells;
+        this.cellsOffsets = cellsOffsets;
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    /**
+     * @return набор, заданный системным свойством {@link ShapeCatalog#SHAPE_SET_PROPERTY},
+     * либо набор всех фигур. Загружается при первом обращении.
+     * @throws UncheckedIOException в случае, если не удалось загрузить паттерны конструирования фигур.
+     */
+    public static ShapeCatalog getDefault() throws UncheckedIOException {
+        return DefaultCatalogHolder.catalog;
+    }
+
+    /**
+     * @param shapeSet название встроенного набора или путь к файлу набора;
+     * @return набор фигур.
+     * @throws UncheckedIOException в случае, если не удалось загрузить паттерны конструирования фигур.
+     */
+    public static ShapeCatalog forName(String shapeSet) throws UncheckedIOException {
+        return switch (shapeSet) {
+            case ALL_SHAPE_SET -> BuiltInCatalogHolder.catalog;
+            case TETROMINO_SHAPE_SET -> BuiltInCatalogHolder.catalog.select(TETROMINO_SHAPE_SET, count -> count == 4);
+            case PENTOMINO_SHAPE_SET -> BuiltInCatalogHolder.catalog.select(PENTOMINO_SHAPE_SET, count -> count == 5);
+            default -> {
+                try {
+                    yield load(Path.of(shapeSet));
+                } catch (IOException exception) {
+                    throw new UncheckedIOException(exception);
+                }
+            }
+        };
+    }
+
+    /**
+     * @param path путь к файлу набора;
+     * @return набор фигур, названный по имени файла.
+     * @throws IOException в случае, если не удалось прочитать файл.
+     */
+    public static ShapeCatalog load(Path path) throws IOException {
+        try (InputStream shapesStream = Files.newInputStream(path)) {
+            return parse(path.getFileName().toString(), shapesStream);
+        }
+    }
+
+    /**
+     * @return строковые представления структур всех фигур набора по умолчанию.
+     * @throws UncheckedIOException в случае, если не удалось загрузить паттерны конструирования фигур.
+     */
+    public static List<String> getShapesData() throws UncheckedIOException {
+        return getDefault().shapesData;
+    }
+
+    /**
+     * Создаёт детерминированную последовательность фигур из набора по умолчанию и всех доступных цветов.
+     *
+     * @param seed зерно последовательности;
+     * @return последовательность фигур, одинаковая для всех вызовов с тем же зерном.
+     */
+    public static ShapeSequence createSequence(long seed) {
+        return getDefault().newSequence(seed);
+    }
+
+    /**
+     * Создаёт детерминированную последовательность фигур этого набора и всех доступных цветов.
+     *
+     * @param seed зерно последовательности;
+     * @return последовательность фигур, одинаковая для всех вызовов с тем же зерном.
+     */
+    public ShapeSequence newSequence(long seed) {
+        List<String> hexColors = Arrays.stream(ShapeColor.values()).map(ShapeColor::getHexColor).toList();
+
+        return new ShapeSequence(seed, this, hexColors, GAME_BLOCK_STYLE_CLASS);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return количество паттернов в наборе.
+     */
+    public int size() {
+        return shapesData.size();
+    }
+
+    /**
+     * @param index номер паттерна;
+     * @return строковое представление структуры фигуры.
+     */
+    public String getShapeData(int index) {
+        return shapesData.get(index);
+    }
+
+    /**
+     * @param index номер паттерна;
+     * @return количество блоков фигуры.
+     */
+    public int getCellsCount(int index) {
+        return cellsOffsets[index + 1] - cellsOffsets[index];
+    }
+
+    /**
+     * @param index номер паттерна;
+     * @param cell  номер блока фигуры;
+     * @return строка блока.
+     */
+    public int getCellRow(int index, int cell) {
+        return (cells[cellsOffsets[index] + cell] & 0xffff) >>> 8;
+    }
+
+    /**
+     * @param index номер паттерна;
+     * @param cell  номер блока фигуры;
+     * @return столбец блока.
+     */
+    public int getCellColumn(int index, int cell) {
+        return cells[cellsOffsets[index] + cell] & 0xff;
+    }
+
+    /**
+     * @param index номер паттерна;
+     * @return координаты блоков фигуры в виде пар {@code {строка, столбец}}.
+     */
+    public int[][] getCells(int index) {
+        int[][] shapeCells = new int[getCellsCount(index)][];
+        for (int cell = 0; cell < shapeCells.length; cell++) {
+            shapeCells[cell] = new int[]{getCellRow(index, cell), getCellColumn(index, cell)};
+        }
+
+        return shapeCells;
+    }
+
+    /**
+     * @param index      номер паттерна;
+     * @param hexColor   HEX-код цвета блоков;
+     * @param styleClass название класса стиля блоков;
+     * @return фигура в компактном представлении {@link ShapeCodec}.
+     */
+    public String encode(int index, String hexColor, String styleClass) {
+        return ShapeCodec.encode(geometries[index], hexColor, styleClass);
+    }
+
+    /**
+     * @param index номер паттерна;
+     * @return вес паттерна.
+     */
+    public long getWeight(int index) {
+        return cumulativeWeights[index] - (index > 0 ? cumulativeWeights[index - 1] : 0);
+    }
+
+    /**
+     * Выбирает паттерн с вероятностью, пропорциональной его весу.
+     *
+     * @param randomValue равномерно распределённое случайное число;
+     * @return номер паттерна. При единичных весах совпадает с остатком от деления числа на размер набора.
+     */
+    public int pick(long randomValue) {
+        long target = Math.floorMod(randomValue, cumulativeWeights[cumulativeWeights.length - 1]);
+
+        int index = Arrays.binarySearch(cumulativeWeights, target);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * @param name      название нового набора;
+     * @param condition условие на количество блоков фигуры;
+     * @return набор паттернов, удовлетворяющих условию, с прежними весами.
+     */
+    private ShapeCatalog select(String name, IntPredicate condition) {
+        Builder builder = new Builder(name);
+        for (int index = 0; index < size(); index++) {
+            if (condition.test(getCellsCount(index))) {
+                builder.add(shapesData.get(index), getWeight(index));
+            }
+        }
+
+        return builder.build();
+    }
+
+    private static ShapeCatalog parse(String name, InputStream shapesStream) {
+        JSONArray entries;
+        try {
+            entries = new JSONArray(new JSONTokener(shapesStream));
+        } catch (JSONException exception) {
+            throw new IllegalArgumentException(String.format("Shape set %s is not a JSON array", name), exception);
+        }
+
+        Builder builder = new Builder(name);
+        for (int index = 0; index < entries.length(); index++) {
+            Object entry = entries.get(index);
+            if (entry instanceof JSONObject weightedEntry) {
+                builder.add(weightedEntry.getString("data"), weightedEntry.optLong("weight", 1));
+            } else if (entry instanceof String shapeData) {
+                builder.add(shapeData, 1);
+            } else {
+                throw new IllegalArgumentException(String.format(
+                        "Shape set %s contains an entry of unsupported type at index %d", name, index));
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Накапливает проверенные паттерны набора.
+     */
+    private static final class Builder {
+        private final String name;
+        private final List<String> shapesData = new ArrayList<>();
+        private final List<String> geometries = new ArrayList<>();
+        private short[] cells = new short[64];
+        private int cellsCount = 0;
+        private int[] cellsOffsets = new int[16];
+        private long[] cumulativeWeights = new long[16];
+
+        Builder(String name) {
+            this.name = name;
+        }
+
+        void add(String shapeData, long weight) {
+            int index = shapesData.size();
+            if (weight < 1) {
+                throw new IllegalArgumentException(String.format(
+                        "Shape %d of set %s has non-positive weight %d", index, name, weight));
+            }
+
+            if (index + 2 > cellsOffsets.length) {
+                cellsOffsets = Arrays.copyOf(cellsOffsets, cellsOffsets.length * 2);
+                cumulativeWeights = Arrays.copyOf(cumulativeWeights, cumulativeWeights.length * 2);
+            }
+
+            cellsOffsets[index] = cellsCount;
+            parseCells(index, shapeData);
+            cellsOffsets[index + 1] = cellsCount;
+            cumulativeWeights[index] = Math.addExact(index > 0 ? cumulativeWeights[index - 1] : 0, weight);
+            shapesData.add(shapeData);
+            geometries.add(ShapeCodec.encodeGeometry(getCells(index)));
+        }
+
+        ShapeCatalog build() {
+            if (shapesData.isEmpty()) {
+                throw new IllegalArgumentException(String.format("Shape set %s is empty", name));
+            }
+
+            return new ShapeCatalog(name, List.copyOf(shapesData), geometries.toArray(String[]::new),
+                    Arrays.copyOf(cells, cellsCount),
+                    Arrays.copyOf(cellsOffsets, shapesData.size() + 1),
+                    Arrays.copyOf(cumulativeWeights, shapesData.size()));
+        }
+
+        /**
+         * Разбирает паттерн вида {@code (0;0)(0;1)} и проверяет, что он не пуст, а его блоки не повторяются.
+         */
+        private void parseCells(int index, String shapeData) {
+            int[][] shapeCells;
+            try {
+                shapeCells = ShapeCodec.parseCells(shapeData);
+            } catch (ParseException exception) {
+                throw invalidShape(index, shapeData);
+            }
+
+            int firstCell = cellsCount;
+            for (int[] shapeCell : shapeCells) {
+                short cell = (short) (shapeCell[0] << 8 | shapeCell[1]);
+                for (int previous = firstCell; previous < cellsCount; previous++) {
+                    if (cells[previous] == cell) {
+                        throw invalidShape(index, shapeData);
+                    }
+                }
+
+                if (cellsCount == cells.length) {
+                    cells = Arrays.copyOf(cells, cells.length * 2);
+                }
+                cells[cellsCount++] = cell;
+            }
+        }
+
+        private int[][] getCells(int index) {
+            int[][] shapeCells = new int[cellsOffsets[index + 1] - cellsOffsets[index]][];
+            for (int cell = 0; cell < shapeCells.length; cell++) {
+                int packedCell = cells[cellsOffsets[index] + cell] & 0xffff;
+                shapeCells[cell] = new int[]{packedCell >>> 8, packedCell & 0xff};
+            }
+
+            return shapeCells;
+        }
+
+        private IllegalArgumentException invalidShape(int index, String shapeData) {
+            return new IllegalArgumentException(String.format(
+                    "Shape %d of set %s is invalid: %s", index, name, shapeData));
+        }
+    }
+
+    /**
+     * Встроенный набор загружается при первом обращении.
+     */
+    private static final class BuiltInCatalogHolder {
+        private static final ShapeCatalog catalog = load();
+
+        private static ShapeCatalog load() {
+            try (InputStream shapesStream = Objects.requireNonNull(
+                    ShapeCatalog.class.getResourceAsStream(SHAPES_RESOURCE_PATH))) {
+                return parse(ALL_SHAPE_SET, shapesStream);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+
+    private static final class DefaultCatalogHolder {
+        private static final ShapeCatalog catalog = forName(System.getProperty(SHAPE_SET_PROPERTY, ALL_SHAPE_SET));
+    }
+}
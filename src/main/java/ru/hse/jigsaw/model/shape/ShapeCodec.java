@@ -0,0 +1,338 @@
+package ru.hse.jigsaw.model.shape;
+
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * Строковые представления фигур и данных их перетаскивания.
+ * <p>
+ * Фигура кодируется в компактном виде {@code 1:<высота>x<ширина>:<маска>:<цвет>[:<класс стиля>]}, где
+ * {@code 1} — версия представления, высота и ширина — размеры прямоугольника с углом в начале координат фигуры,
+ * содержащего все её блоки, маска — шестнадцатеричная запись числа, бит {@code row * ширина + column}
+ * которого установлен для каждого блока, цвет — номер в {@link ShapeColor} либо HEX-код, а класс стиля
+ * опускается, если совпадает с {@link ShapeCatalog#GAME_BLOCK_STYLE_CLASS}. Например, фигура
+ * {@code (0;1)(1;1)(2;1)(1;0)} голубого цвета кодируется строкой {@code 1:3x2:2e:0}.
+ * <p>
+ * Для обратной совместимости принимается и прежнее представление {@code [(0;1)(1;1)$#00ffff$game-block]}.
+ * Разбор обоих представлений не использует регулярных выражений, а координаты блоков могут быть многозначными.
+ */
+public final class ShapeCodec {
+    /**
+     * Версия компактного представления.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Наибольшая координата блока фигуры.
+     */
+    public static final int MAX_COORDINATE = 255;
+
+    private static final char FIELDS_SEPARATOR = ':';
+    private static final char DRAG_PAYLOAD_SEPARATOR = '|';
+    private static final String VERSION_PREFIX = VERSION + String.valueOf(FIELDS_SEPARATOR);
+
+    private static final ShapeColor[] palette = ShapeColor.values();
+
+    /**
+     * Фигура, восстановленная из строкового представления.
+     *
+     * @param cells      координаты блоков в виде пар {@code {строка, столбец}};
+     * @param hexColor   HEX-код цвета блоков;
+     * @param styleClass название класса стиля блоков;
+     */
+    public record ShapeCode(int[][] cells, String hexColor, String styleClass) {
+    }
+
+    /**
+     * Данные перетаскивания фигуры.
+     *
+     * @param encodedShape перетаскиваемая фигура в закодированном виде;
+     * @param originRow    строка блока, за который перетаскивается фигура;
+     * @param originColumn столбец блока, за который перетаскивается фигура;
+     */
+    public record DragPayload(String encodedShape, int originRow, int originColumn) {
+    }
+
+    private ShapeCodec() {
+    }
+
+    /**
+     * @param cells      координаты блоков в виде пар {@code {строка, столбец}};
+     * @param hexColor   HEX-код цвета блоков;
+     * @param styleClass название класса стиля блоков;
+     * @return фигура в компактном представлении.
+     */
+    public static String encode(int[][] cells, String hexColor, String styleClass) {
+        return encode(encodeGeometry(cells), hexColor, styleClass);
+    }
+
+    /**
+     * @param cells координаты блоков в виде пар {@code {строка, столбец}};
+     * @return начало компактного представления фигуры, не зависящее от её цвета и стиля.
+     */
+    static String encodeGeometry(int[][] cells) {
+        int height = 0;
+        int width = 0;
+        for (int[] cell : cells) {
+            height = Math.max(height, cell[0] + 1);
+            width = Math.max(width, cell[1] + 1);
+        }
+
+        char[] mask = new char[(height * width + 3) / 4];
+        Arrays.fill(mask, '0');
+        for (int[] cell : cells) {
+            int bit = cell[0] * width + cell[1];
+            int digit = mask.length - 1 - bit / 4;
+            mask[digit] = Character.forDigit(Character.digit(mask[digit], 16) | 1 << (bit % 4), 16);
+        }
+
+        int firstDigit = 0;
+        while (firstDigit < mask.length - 1 && mask[firstDigit] == '0') {
+            firstDigit++;
+        }
+
+        return VERSION_PREFIX + height + 'x' + width + FIELDS_SEPARATOR
+                + new String(mask, firstDigit, mask.length - firstDigit);
+    }
+
+    /**
+     * @param geometry   результат {@link ShapeCodec#encodeGeometry(int[][])};
+     * @param hexColor   HEX-код цвета блоков;
+     * @param styleClass название класса стиля блоков;
+     * @return фигура в компактном представлении.
+     */
+    static String encode(String geometry, String hexColor, String styleClass) {
+        StringBuilder builder = new StringBuilder(geometry.length() + 24).append(geometry).append(FIELDS_SEPARATOR);
+
+        int colorIndex = getColorIndex(hexColor);
+        if (colorIndex >= 0) {
+            builder.append(colorIndex);
+        } else {
+            builder.append(hexColor);
+        }
+
+        if (!ShapeCatalog.GAME_BLOCK_STYLE_CLASS.equals(styleClass)) {
+            builder.append(FIELDS_SEPARATOR).append(styleClass);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Восстанавливает фигуру из компактного или прежнего представления.
+     *
+     * @param encodedShape зашифрованная в строку фигура;
+     * @return блоки, цвет и стиль фигуры.
+     * @throws ParseException в случае, если строка не является представлением фигуры.
+     */
+    public static ShapeCode decode(String encodedShape) throws ParseException {
+        if (encodedShape.startsWith("[")) {
+            return decodeLegacy(encodedShape);
+        }
+
+        int versionEnd = encodedShape.indexOf(FIELDS_SEPARATOR);
+        int version = versionEnd > 0 ? parseNumber(encodedShape, 0, versionEnd) : -1;
+        if (version != VERSION) {
+            throw invalidShape(encodedShape, 0);
+        }
+
+        int heightEnd = encodedShape.indexOf('x', versionEnd + 1);
+        int widthEnd = heightEnd < 0 ? -1 : encodedShape.indexOf(FIELDS_SEPARATOR, heightEnd + 1);
+        int maskEnd = widthEnd < 0 ? -1 : encodedShape.indexOf(FIELDS_SEPARATOR, widthEnd + 1);
+        if (maskEnd < 0) {
+            throw invalidShape(encodedShape, versionEnd + 1);
+        }
+
+        int height = parseNumber(encodedShape, versionEnd + 1, heightEnd);
+        int width = parseNumber(encodedShape, heightEnd + 1, widthEnd);
+        if (height < 1 || width < 1 || height > MAX_COORDINATE + 1 || width > MAX_COORDINATE + 1) {
+            throw invalidShape(encodedShape, versionEnd + 1);
+        }
+        int[][] cells = decodeMask(encodedShape, widthEnd + 1, maskEnd, width, height * width);
+
+        int colorEnd = encodedShape.indexOf(FIELDS_SEPARATOR, maskEnd + 1);
+        if (colorEnd < 0) {
+            colorEnd = encodedShape.length();
+        }
+        String hexColor = decodeColor(encodedShape, maskEnd + 1, colorEnd);
+
+        String styleClass = colorEnd == encodedShape.length()
+                ? ShapeCatalog.GAME_BLOCK_STYLE_CLASS : encodedShape.substring(colorEnd + 1);
+        if (styleClass.isEmpty()) {
+            throw invalidShape(encodedShape, colorEnd + 1);
+        }
+
+        return new ShapeCode(cells, hexColor, styleClass);
+    }
+
+    /**
+     * Разбирает строковое представление структуры фигуры вида {@code (0;2)(0;1)(1;1)}.
+     *
+     * @param shapeData строковое представление структуры фигуры;
+     * @return координаты блоков в виде пар {@code {строка, столбец}} в порядке их перечисления.
+     * @throws ParseException в случае, если строка не является представлением структуры фигуры.
+     */
+    public static int[][] parseCells(String shapeData) throws ParseException {
+        int cellsCount = 0;
+        for (int position = 0; position < shapeData.length(); position++) {
+            if (shapeData.charAt(position) == '(') {
+                cellsCount++;
+            }
+        }
+
+        int[][] cells = new int[cellsCount][];
+        int position = 0;
+        for (int index = 0; index < cellsCount; index++) {
+            int separator = shapeData.indexOf(';', position);
+            int end = separator < 0 ? -1 : shapeData.indexOf(')', separator);
+            if (shapeData.charAt(position) != '(' || end < 0) {
+                throw invalidShape(shapeData, position);
+            }
+
+            int row = parseCoordinate(shapeData, position + 1, separator);
+            int column = parseCoordinate(shapeData, separator + 1, end);
+            cells[index] = new int[]{row, column};
+            position = end + 1;
+        }
+
+        if (cellsCount == 0 || position != shapeData.length()) {
+            throw invalidShape(shapeData, position);
+        }
+
+        return cells;
+    }
+
+    /**
+     * @param encodedShape перетаскиваемая фигура в закодированном виде;
+     * @param originRow    строка блока, за который перетаскивается фигура;
+     * @param originColumn столбец блока, за который перетаскивается фигура;
+     * @return данные перетаскивания в строковом виде.
+     */
+    public static String encodeDragPayload(String encodedShape, int originRow, int originColumn) {
+        return encodedShape + DRAG_PAYLOAD_SEPARATOR + originRow + DRAG_PAYLOAD_SEPARATOR + originColumn;
+    }
+
+    /**
+     * @param payload данные перетаскивания в строковом виде;
+     * @return данные перетаскивания.
+     * @throws ParseException в случае, если строка не является данными перетаскивания фигуры.
+     */
+    public static DragPayload decodeDragPayload(String payload) throws ParseException {
+        int columnStart = payload.lastIndexOf(DRAG_PAYLOAD_SEPARATOR) + 1;
+        int rowStart = columnStart > 1 ? payload.lastIndexOf(DRAG_PAYLOAD_SEPARATOR, columnStart - 2) + 1 : 0;
+        if (rowStart < 2) {
+            throw new ParseException("Impossible to parse data from the clipboard", 0);
+        }
+
+        int originRow = parseCoordinate(payload, rowStart, columnStart - 1);
+        int originColumn = parseCoordinate(payload, columnStart, payload.length());
+        return new DragPayload(payload.substring(0, rowStart - 1), originRow, originColumn);
+    }
+
+    private static ShapeCode decodeLegacy(String encodedShape) throws ParseException {
+        int dataEnd = encodedShape.indexOf('$');
+        int colorEnd = encodedShape.lastIndexOf('$');
+        if (!encodedShape.endsWith("]") || dataEnd <= 1 || colorEnd <= dataEnd + 1
+                || colorEnd >= encodedShape.length() - 2) {
+            throw invalidShape(encodedShape, 0);
+        }
+
+        int[][] cells = parseCells(encodedShape.substring(1, dataEnd));
+        return new ShapeCode(cells, encodedShape.substring(dataEnd + 1, colorEnd),
+                encodedShape.substring(colorEnd + 1, encodedShape.length() - 1));
+    }
+
+    private static int[][] decodeMask(String encodedShape, int start, int end, int width, int bitsCount)
+            throws ParseException {
+        if (start == end || (end - start - 1) * 4 >= bitsCount) {
+            throw invalidShape(encodedShape, start);
+        }
+
+        int cellsCount = 0;
+        for (int position = start; position < end; position++) {
+            int digit = Character.digit(encodedShape.charAt(position), 16);
+            if (digit < 0) {
+                throw invalidShape(encodedShape, position);
+            }
+            cellsCount += Integer.bitCount(digit);
+        }
+        if (cellsCount == 0) {
+            throw invalidShape(encodedShape, start);
+        }
+
+        int[][] cells = new int[cellsCount][];
+        int index = 0;
+        for (int position = start; position < end; position++) {
+            int digit = Character.digit(encodedShape.charAt(position), 16);
+            int firstBit = (end - 1 - position) * 4;
+            for (int bit = 3; bit >= 0; bit--) {
+                if ((digit & 1 << bit) != 0) {
+                    if (firstBit + bit >= bitsCount) {
+                        throw invalidShape(encodedShape, position);
+                    }
+                    cells[index++] = new int[]{(firstBit + bit) / width, (firstBit + bit) % width};
+                }
+            }
+        }
+
+        return cells;
+    }
+
+    private static String decodeColor(String encodedShape, int start, int end) throws ParseException {
+        if (start < end && encodedShape.charAt(start) == '#') {
+            return encodedShape.substring(start, end);
+        }
+
+        int colorIndex = start < end ? parseNumber(encodedShape, start, end) : -1;
+        if (colorIndex < 0 || colorIndex >= palette.length) {
+            throw invalidShape(encodedShape, start);
+        }
+
+        return palette[colorIndex].getHexColor();
+    }
+
+    private static int getColorIndex(String hexColor) {
+        for (int index = 0; index < palette.length; index++) {
+            if (palette[index].getHexColor().equalsIgnoreCase(hexColor)) {
+                return index;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int parseCoordinate(String source, int start, int end) throws ParseException {
+        int coordinate = parseNumber(source, start, end);
+        if (coordinate < 0 || coordinate > MAX_COORDINATE) {
+            throw invalidShape(source, start);
+        }
+
+        return coordinate;
+    }
+
+    /**
+     * @return неотрицательное десятичное число из не более чем девяти цифр либо {@code -1},
+     * если подстрока не является таким числом.
+     */
+    private static int parseNumber(String source, int start, int end) {
+        if (start >= end || end - start > 9) {
+            return -1;
+        }
+
+        int number = 0;
+        for (int position = start; position < end; position++) {
+            char symbol = source.charAt(position);
+            if (symbol < '0' || symbol > '9') {
+                return -1;
+            }
+            number = number * 10 + (symbol - '0');
+        }
+
+        return number;
+    }
+
+    private static ParseException invalidShape(String source, int position) {
+        return new ParseException(String.format("Impossible to parse figure from the provided string: %s", source),
+                position);
+    }
+}
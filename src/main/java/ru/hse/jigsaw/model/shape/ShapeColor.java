@@ -0,0 +1,25 @@
+package ru.hse.jigsaw.model.shape;
+
+/**
+ * Поддерживаемые цвета генерируемых фигур. Каждому цвету соответствует HEX-код.
+ */
+public enum ShapeColor {
+    CYAN("#00ffff"),
+    YELLOW("#ffff00"),
+    PURPLE("#800080"),
+    GREEN("#00ff00"),
+    RED("#ff0000"),
+    BLUE("#0000ff"),
+    ORANGE("#ff7f00"),
+    GREY("#7f7f7f");
+
+    private final String hexColor;
+
+    ShapeColor(String hexColor) {
+        this.hexColor = hexColor;
+    }
+
+    public String getHexColor() {
+        return hexColor;
+    }
+}
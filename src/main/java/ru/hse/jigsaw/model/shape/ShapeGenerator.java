@@ -0,0 +1,59 @@
+package ru.hse.jigsaw.model.shape;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Генератор случайных фигур одиночной игры.
+ * <p>
+ * Фигуры выбираются из набора с учётом весов паттернов. Состояние генератора — зерно и номер следующей фигуры,
+ * который увеличивается атомарно, поэтому генератор потокобезопасен, не выделяет памяти на выбор фигуры
+ * и при одном и том же зерне выдаёт одни и те же фигуры.
+ */
+public final class ShapeGenerator {
+    /**
+     * Системное свойство, задающее зерно генератора по умолчанию. Если оно не задано, зерно выбирается случайно.
+     */
+    public static final String SEED_PROPERTY = "jigsaw.shapeSeed";
+
+    private final ShapeSequence sequence;
+    private final AtomicLong nextIndex = new AtomicLong();
+
+    /**
+     * @param catalog набор паттернов;
+     * @param seed    зерно генератора;
+     */
+    public ShapeGenerator(ShapeCatalog catalog, long seed) {
+        sequence = catalog.newSequence(seed);
+    }
+
+    /**
+     * @return генератор по набору {@link ShapeCatalog#getDefault()}, создаваемый при первом обращении.
+     */
+    public static ShapeGenerator getDefault() {
+        return DefaultGeneratorHolder.generator;
+    }
+
+    public long getSeed() {
+        return sequence.getSeed();
+    }
+
+    /**
+     * @return новая случайная фигура.
+     */
+    public Shape nextShape() {
+        return sequence.getShape(nextIndex.getAndIncrement());
+    }
+
+    /**
+     * @return случайная фигура в закодированном виде, пригодном для {@link Shape#parse(String)}.
+     */
+    public String nextEncodedShape() {
+        return sequence.getEncodedShape(nextIndex.getAndIncrement());
+    }
+
+    private static final class DefaultGeneratorHolder {
+        private static final ShapeGenerator generator = new ShapeGenerator(ShapeCatalog.getDefault(),
+                Long.getLong(SEED_PROPERTY, ThreadLocalRandom.current().nextLong()));
+    }
+}
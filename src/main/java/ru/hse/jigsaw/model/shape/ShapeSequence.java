@@ -0,0 +1,102 @@
+package ru.hse.jigsaw.model.shape;
+
+import java.util.List;
+
+/**
+ * Бесконечная детерминированная последовательность фигур игровой сессии.
+ * Фигура с любым номером вычисляется по зерну последовательности и самому номеру,
+ * поэтому последовательность не хранит сгенерированных фигур, а сервер и клиенты,
+ * получившие одно и то же зерно, получают одинаковые фигуры.
+ */
+public class ShapeSequence {
+    /**
+     * Приращение генератора SplitMix64.
+     */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final long seed;
+
+    /**
+     * Набор паттернов, из которого выбираются фигуры.
+     */
+    private final ShapeCatalog catalog;
+
+    /**
+     * HEX-коды доступных цветов фигур.
+     */
+    private final List<String> hexColors;
+    private final String styleClass;
+
+    /**
+     * @param seed       зерно последовательности;
+     * @param catalog    набор паттернов; фигуры выбираются с учётом их весов;
+     * @param hexColors  HEX-коды доступных цветов фигур;
+     * @param styleClass название класса стиля блоков фигур;
+     */
+    public ShapeSequence(long seed, ShapeCatalog catalog, List<String> hexColors, String styleClass) {
+        if (hexColors.isEmpty()) {
+            throw new IllegalArgumentException("Shape colors must not be empty");
+        }
+
+        this.seed = seed;
+        this.catalog = catalog;
+        this.hexColors = List.copyOf(hexColors);
+        this.styleClass = styleClass;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Вычисляет фигуру с заданным номером без создания её блоков.
+     *
+     * @param index неотрицательный номер фигуры в последовательности;
+     * @return фигура в закодированном виде, пригодном для {@link Shape#parse(String)}.
+     */
+    public String getEncodedShape(long index) {
+        long state = getState(index);
+        return catalog.encode(getPatternIndex(state), getHexColor(state), styleClass);
+    }
+
+    /**
+     * Создаёт фигуру с заданным номером.
+     *
+     * @param index неотрицательный номер фигуры в последовательности;
+     * @return новая фигура.
+     */
+    public Shape getShape(long index) {
+        long state = getState(index);
+        return new Shape(catalog.getCells(getPatternIndex(state)), getHexColor(state), styleClass);
+    }
+
+    private long getState(long index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Negative shape index: " + index);
+        }
+
+        return seed + (2 * index + 1) * GOLDEN_GAMMA;
+    }
+
+    private int getPatternIndex(long state) {
+        return catalog.pick(mix(state));
+    }
+
+    private String getHexColor(long state) {
+        return hexColors.get(bound(mix(state + GOLDEN_GAMMA), hexColors.size()));
+    }
+
+    /**
+     * Функция перемешивания SplitMix64. Реализована явно, чтобы последовательность
+     * не зависела от версии стандартной библиотеки на сервере и клиентах.
+     */
+    static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private static int bound(long value, int size) {
+        return (int) Math.floorMod(value, (long) size);
+    }
+}
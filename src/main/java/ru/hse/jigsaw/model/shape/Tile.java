@@ -1,14 +1,14 @@
 package ru.hse.jigsaw.model.shape;
 
-import javafx.scene.Node;
 import javafx.scene.input.*;
 import javafx.scene.layout.Pane;
 import javafx.scene.layout.GridPane;
+import ru.hse.jigsaw.model.board.Board;
+import ru.hse.jigsaw.model.board.PlacementIndex;
+import ru.hse.jigsaw.model.board.ShapeMask;
 import ru.hse.jigsaw.utils.LayoutDesigner;
 
 import java.text.ParseException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Класс, описывающий ячейку в игровой области.
@@ -23,13 +23,6 @@ public class Tile extends Pane {
      */
     private final Shape parentShape;
 
-    /**
-     * Паттерн поиска данных в {@link ClipboardContent}.
-     */
-    private static final Pattern draggableDataPattern = Pattern.compile(
-            "(?<encodedShape>.+)\\|(?<originRow>\\d+)\\|(?<originColumn>\\d+)"
-    );
-
     public Tile(int row, int column, Shape parent, String styleClass) {
         this.row = row;
         this.column = column;
@@ -59,18 +52,31 @@ public class Tile extends Pane {
 
     /**
      * Обработчик события инициализации перетаскивания фигуры.
-     * Ячейка выступает в роли источника.
+     * Ячейка выступает в роли источника. Начинает сеанс перетаскивания с копией фигуры,
+     * которая будет размещена в игровой зоне.
      *
      * @param event событие {@link MouseEvent#DRAG_DETECTED};
      */
     public void onDragDetected(MouseEvent event) {
         Dragboard dragboard = startDragAndDrop(TransferMode.MOVE);
         ClipboardContent content = new ClipboardContent();
-        content.putString(String.format("%s|%d|%d", parentShape.getEncodedShape(), row, column));
+        content.putString(ShapeCodec.encodeDragPayload(parentShape.getEncodedShape(), row, column));
         dragboard.setContent(content);
+
+        DragSession.start(this, parentShape.copy(), row, column);
         event.consume();
     }
 
+    /**
+     * Обработчик события завершения перетаскивания фигуры, в том числе отменённого.
+     * Ячейка выступает в роли источника.
+     *
+     * @param event событие {@link DragEvent#DRAG_DONE};
+     */
+    public void onDragDone(DragEvent event) {
+        DragSession.finish(this);
+    }
+
     /**
      * Обработчик события наведения курсора мыши на ячейку при перетаскивании фигуры.
      * Ячейка выступает в роли приёмника.
@@ -80,55 +86,66 @@ public class Tile extends Pane {
     public void onDragOver(DragEvent event) {
         if (getStyleClass().contains(LayoutDesigner.EMPTY_CELL_STYLE_CLASS)
                 && getStyleClass().size() == 1
-                && event.getGestureSource().getClass() == Tile.class
-                && event.getDragboard().hasString()) {
-
-            Matcher matcher = draggableDataPattern.matcher(event.getDragboard().getString());
-            if (matcher.matches()) {
-                Shape shape;
-                try {
-                    shape = Shape.parse(matcher.group("encodedShape"));
-                } catch (ParseException exception) {
-                    throw new RuntimeException(exception);
-                }
-
-                int originRow = Integer.parseInt(matcher.group("originRow"));
-                int originColumn = Integer.parseInt(matcher.group("originColumn"));
-
-                GridPane parentGrid = (GridPane) this.getParent();
-                for (Tile shapeTile : shape.getTiles()) {
-                    int mainGridRow = this.row + (shapeTile.row - originRow);
-                    int mainGridColumn = this.column + (shapeTile.column - originColumn);
-
-                    if (mainGridRow < 0 || mainGridRow >= parentGrid.getRowCount()
-                            || mainGridColumn < 0 || mainGridColumn >= parentGrid.getColumnCount()) {
-                        return;
-                    }
-
-                    for (Node node : parentGrid.getChildren()) {
-                        if (node instanceof Tile mainGridTile) {
-                            if (GridPane.getRowIndex(mainGridTile) == mainGridRow
-                                    && GridPane.getColumnIndex(mainGridTile) == mainGridColumn) {
-                                if (mainGridTile.getStyleClass().contains(LayoutDesigner.EMPTY_CELL_STYLE_CLASS)
-                                        && mainGridTile.getStyleClass().size() == 1) {
-                                    shapeTile.row = mainGridRow;
-                                    shapeTile.column = mainGridColumn;
-                                } else {
-                                    return;
-                                }
-                            }
-                        }
-                    }
-                }
-                LayoutDesigner.highlightShapePosition(shape, parentGrid);
+                && event.getGestureSource() != null
+                && event.getGestureSource().getClass() == Tile.class) {
 
+            DragSession session = getDragSession(event);
+            if (session != null && dragOver(session)) {
                 event.acceptTransferModes(TransferMode.MOVE);
-            } else {
-                throw new RuntimeException(new ParseException("Impossible to parse data from the clipboard", 0));
             }
         }
     }
 
+    /**
+     * Проверяет, может ли перетаскиваемая фигура быть размещена так, чтобы блок, за который её перетаскивают,
+     * оказался в этой ячейке, и если может — выделяет её силуэт.
+     *
+     * @param session сеанс перетаскивания;
+     * @return {@code true}, если фигура может быть размещена.
+     */
+    public boolean dragOver(DragSession session) {
+        Shape shape = session.getShape();
+        if (!moveToDropPosition(shape, session.getOriginRow(), session.getOriginColumn())) {
+            return false;
+        }
+
+        LayoutDesigner.highlightShapePosition(shape, (GridPane) this.getParent());
+        return true;
+    }
+
+    /**
+     * Переносит блоки фигуры в координаты игровой зоны так, чтобы блок, за который фигура перетаскивается,
+     * оказался в этой ячейке, и проверяет по модели игровой зоны, что все блоки попадают на свободные ячейки.
+     * Если для фигуры построен индекс размещений, проверка сводится к поиску в нём.
+     *
+     * @param shape        перетаскиваемая фигура;
+     * @param originRow    строка блока, за который перетаскивается фигура;
+     * @param originColumn столбец блока, за который перетаскивается фигура;
+     * @return {@code true}, если фигура может быть размещена.
+     */
+    public boolean moveToDropPosition(Shape shape, int originRow, int originColumn) {
+        GridPane parentGrid = (GridPane) this.getParent();
+        Board board = LayoutDesigner.getBoard(parentGrid);
+        if (board == null) {
+            return false;
+        }
+
+        int shapeRow = this.row - originRow;
+        int shapeColumn = this.column - originColumn;
+        ShapeMask mask = shape.getMask(board.getColumns());
+
+        PlacementIndex placementIndex = LayoutDesigner.getPlacementIndex(parentGrid);
+        boolean isLegal = placementIndex != null && placementIndex.getMask().equals(mask)
+                ? placementIndex.isLegal(shapeRow, shapeColumn)
+                : board.canPlace(mask, shapeRow, shapeColumn);
+        if (!isLegal) {
+            return false;
+        }
+
+        shape.moveTo(shapeRow, shapeColumn);
+        return true;
+    }
+
     /**
      * Обработчик события отвода курсора мыши с ячейки-приёмника при перетаскивании фигуры в случае,
      * если не произошло событие {@link DragEvent#DRAG_DROPPED}.
@@ -147,38 +164,39 @@ public class Tile extends Pane {
      * @param event событие {@link DragEvent#DRAG_DROPPED};
      */
    public void onDragDropped(DragEvent event) {
-        Dragboard dragboard = event.getDragboard();
-
         boolean success = false;
-        if (dragboard.hasString()) {
-            Matcher matcher = draggableDataPattern.matcher(event.getDragboard().getString());
-            if (matcher.matches()) {
-                Shape shape;
-                try {
-                    shape = Shape.parse(matcher.group("encodedShape"));
-                } catch (ParseException exception) {
-                    throw new RuntimeException(exception);
-                }
-
-                shape.setDraggable(false);
-                int originRow = Integer.parseInt(matcher.group("originRow"));
-                int originColumn = Integer.parseInt(matcher.group("originColumn"));
-
-                GridPane parentGrid = (GridPane) this.getParent();
-
-                for (Tile shapeTile : shape.getTiles()) {
-                    shapeTile.row = this.row + (shapeTile.row - originRow);
-                    shapeTile.column = this.column + (shapeTile.column - originColumn);
-                }
-                LayoutDesigner.placeShape(shape, parentGrid);
-
-                success = true;
+        DragSession session = getDragSession(event);
+        if (session != null) {
+            Shape shape = session.getShape();
+            shape.setDraggable(false);
+
+            GridPane parentGrid = (GridPane) this.getParent();
+            success = LayoutDesigner.placeShape(shape, parentGrid, this.row - session.getOriginRow(),
+                    this.column - session.getOriginColumn());
 
+            if (success) {
+                DragSession.finish(event.getGestureSource());
                 getOnDragDone().handle(event);
-            } else {
-                throw new RuntimeException(new ParseException("Impossible to parse data from the clipboard", 0));
             }
         }
         event.setDropCompleted(success);
     }
+
+    /**
+     * @param event событие перетаскивания;
+     * @return сеанс перетаскивания, начатый источником события, либо сеанс, начатый по данным перетаскивания,
+     * если источник находится в другом окне приложения, либо {@code null}, если данных перетаскивания нет.
+     */
+    private static DragSession getDragSession(DragEvent event) {
+        DragSession session = DragSession.get(event.getGestureSource());
+        if (session != null || !event.getDragboard().hasString()) {
+            return session;
+        }
+
+        try {
+            return DragSession.start(event.getGestureSource(), event.getDragboard().getString());
+        } catch (ParseException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
 }
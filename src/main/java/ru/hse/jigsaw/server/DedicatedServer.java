@@ -0,0 +1,142 @@
+package ru.hse.jigsaw.server;
+
+import ru.hse.jigsaw.model.journal.MatchJournal;
+import ru.hse.jigsaw.model.net.Server;
+import ru.hse.jigsaw.model.session.GameSession;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Выделенный сервер, не требующий JavaFX. Запускается на обычной JVM, например:
+ * {@code java -cp jigsaw.jar:json.jar ru.hse.jigsaw.server.DedicatedServer --config=server.properties --port=5000}.
+ * <p>
+ * Параметры читаются из файла свойств, указанного аргументом {@code --config}, и переопределяются
+ * аргументами командной строки вида {@code --ключ=значение}:
+ * <ul>
+ *     <li>{@code port} — порт сервера;</li>
+ *     <li>{@code maxPlayers} — количество игроков, при наборе которого в комнате начинается игра;</li>
+ *     <li>{@code sessionDuration} — длительность игровой сессии в секундах либо в формате ISO-8601;</li>
+ *     <li>{@code backlog} — длина очереди ещё не принятых соединений, 0 — значение по умолчанию;</li>
+ *     <li>{@code maxConnections} — наибольшее количество одновременно подключённых клиентов;</li>
+ *     <li>{@code matchLog} — каталог журнала матчей, в который записываются все игры; без него игры
+ *     не записываются.</li>
+ * </ul>
+ * В каждой комнате сервера, включая комнату по умолчанию, проходит своя игровая сессия.
+ */
+public final class DedicatedServer {
+    private static final Logger logger = Logger.getLogger(DedicatedServer.class.getName());
+
+    private static final String CONFIG_ARGUMENT = "config";
+
+    private static final int DEFAULT_PORT = 5000;
+    private static final int DEFAULT_MAX_PLAYERS = 2;
+    private static final Duration DEFAULT_SESSION_DURATION = Duration.ofMinutes(5);
+
+    private DedicatedServer() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Properties configuration = readConfiguration(args);
+
+        int port = getInt(configuration, "port", DEFAULT_PORT);
+        int playersCount = getInt(configuration, "maxPlayers", DEFAULT_MAX_PLAYERS);
+        Duration sessionDuration = getDuration(configuration, "sessionDuration", DEFAULT_SESSION_DURATION);
+        int backlog = getInt(configuration, "backlog", 0);
+        int maxConnectionsCount = getInt(configuration, "maxConnections", Integer.MAX_VALUE);
+        if (playersCount < 1 || sessionDuration.isNegative() || sessionDuration.isZero()) {
+            throw new IllegalArgumentException("Players count and session duration must be positive");
+        }
+
+        String matchLogPath = configuration.getProperty("matchLog");
+        MatchJournal journal = matchLogPath != null ? MatchJournal.open(Path.of(matchLogPath.trim())) : null;
+
+        Server server = Server.open(port, backlog);
+        server.setMaxConnectionsCount(maxConnectionsCount);
+        new GameSession(server.getDefaultRoom(), playersCount, sessionDuration, journal).install();
+        server.setRoomInitializer(room -> new GameSession(room, playersCount, sessionDuration, journal).install());
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (server.isActive()) {
+                server.shutdown();
+            }
+            if (journal != null) {
+                journal.close();
+            }
+            stopped.countDown();
+        }, "dedicated-server-shutdown"));
+
+        server.run();
+        logger.log(Level.INFO, String.format("Выделенный сервер запущен на порту %d: игроков в сессии — %d, "
+                + "длительность сессии — %s.", port, playersCount, sessionDuration));
+
+        stopped.await();
+    }
+
+    /**
+     * Читает параметры из файла, указанного аргументом {@code --config}, и аргументов командной строки.
+     *
+     * @param args аргументы командной строки вида {@code --ключ=значение};
+     * @return параметры сервера.
+     * @throws IOException в случае, если не удалось прочитать файл параметров.
+     */
+    private static Properties readConfiguration(String[] args) throws IOException {
+        Properties arguments = new Properties();
+        for (String argument : args) {
+            int separatorIndex = argument.indexOf('=');
+            if (!argument.startsWith("--") || separatorIndex < 0) {
+                throw new IllegalArgumentException("Expected argument in --key=value form: " + argument);
+            }
+
+            arguments.setProperty(argument.substring(2, separatorIndex), argument.substring(separatorIndex + 1));
+        }
+
+        Properties configuration = new Properties();
+        String configPath = arguments.getProperty(CONFIG_ARGUMENT);
+        if (configPath != null) {
+            try (Reader reader = Files.newBufferedReader(Path.of(configPath))) {
+                configuration.load(reader);
+            }
+        }
+
+        configuration.putAll(arguments);
+        return configuration;
+    }
+
+    private static int getInt(Properties configuration, String key, int defaultValue) {
+        String value = configuration.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("Invalid integer value of " + key + ": " + value, exception);
+        }
+    }
+
+    private static Duration getDuration(Properties configuration, String key, Duration defaultValue) {
+        String value = configuration.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+
+        value = value.trim();
+        try {
+            return value.startsWith("P") || value.startsWith("p")
+                    ? Duration.parse(value) : Duration.ofSeconds(Long.parseLong(value));
+        } catch (DateTimeParseException | NumberFormatException exception) {
+            throw new IllegalArgumentException("Invalid duration value of " + key + ": " + value, exception);
+        }
+    }
+}
@@ -1,23 +1,25 @@
 package ru.hse.jigsaw.utils;
 
 import javafx.fxml.FXMLLoader;
-import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.image.Image;
 import javafx.scene.layout.GridPane;
 import javafx.stage.Stage;
-import org.json.JSONArray;
 import ru.hse.jigsaw.App;
+import ru.hse.jigsaw.model.board.Board;
+import ru.hse.jigsaw.model.board.PlacementIndex;
+import ru.hse.jigsaw.model.board.ShapeMask;
 import ru.hse.jigsaw.model.shape.Shape;
+import ru.hse.jigsaw.model.shape.ShapeCatalog;
+import ru.hse.jigsaw.model.shape.ShapeColor;
+import ru.hse.jigsaw.model.shape.ShapeGenerator;
+import ru.hse.jigsaw.model.shape.ShapeSequence;
 import ru.hse.jigsaw.model.shape.Tile;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.UncheckedIOException;
-import java.net.URL;
+import java.util.List;
 import java.util.Objects;
-import java.util.Random;
 
 
 public class LayoutDesigner {
@@ -28,20 +30,6 @@ public class LayoutDesigner {
         DARK_STYLE
     }
 
-    /**
-     * Поддерживаемые цвета генерируемых фигур. Каждому цвету соответствует HEX-код.
-     */
-    public enum ShapeColor {
-        CYAN,
-        YELLOW,
-        PURPLE,
-        GREEN,
-        RED,
-        BLUE,
-        ORANGE,
-        GREY
-    }
-
     /**
      * Название класса стиля пустой ячейки в игровой зоне.
      * В соответствии с этим названием производится поиск представления ячейки в CSS-файле применённого стиля.
@@ -52,7 +40,27 @@ public class LayoutDesigner {
      * Название класса стиля строительного блока фигуры в игровой зоне.
      * В соответствии с этим названием производится поиск представления блока в CSS-файле применённого стиля.
      */
-    public static final String GAME_BLOCK_STYLE_CLASS = "game-block";
+    public static final String GAME_BLOCK_STYLE_CLASS = ShapeCatalog.GAME_BLOCK_STYLE_CLASS;
+
+    /**
+     * Ключ, под которым в свойствах игровой зоны хранится её модель.
+     */
+    private static final Object BOARD_PROPERTY_KEY = Board.class;
+
+    /**
+     * Ключ, под которым в свойствах игровой зоны хранится индекс размещений перетаскиваемой фигуры.
+     */
+    private static final Object PLACEMENT_INDEX_PROPERTY_KEY = PlacementIndex.class;
+
+    /**
+     * Ключ, под которым в свойствах игровой зоны хранятся её ячейки, упорядоченные по координатам модели.
+     */
+    private static final Object CELLS_PROPERTY_KEY = BoardCells.class;
+
+    /**
+     * Стиль ячейки игровой зоны, не выделенной силуэтом фигуры.
+     */
+    private static final String DEFAULT_CELL_STYLE = "-fx-border-color: transparent";
 
     /**
      * Считывает FXML-файл представления сцены, записывает в поля класса сцену и соответствующий ей объект-контроллер.
@@ -99,88 +107,202 @@ public class LayoutDesigner {
     /**
      * Фабричный метод, генерирующий фигуры по запросу.
      *
-     * @return фигура, сгенерированная по случайно полученному паттерну.
-     * Цвет фигуры также выбирается рандомайзером из перечисления доступных цветов {@link ShapeColor}.
+     * @return фигура, сгенерированная по случайно выбранному с учётом весов паттерну набора по умолчанию.
+     * Цвет фигуры также выбирается генератором из перечисления доступных цветов {@link ShapeColor}.
      * @throws UncheckedIOException в случае, если не удалось загрузить паттерны конструирования фигур из JSON-файла.
      */
     public static Shape generateShape() throws UncheckedIOException {
-        Random generator = new Random();
+        return ShapeGenerator.getDefault().nextShape();
+    }
+
+    /**
+     * Создаёт детерминированную последовательность фигур из паттернов и цветов, доступных генератору
+     * {@link LayoutDesigner#generateShape()}.
+     *
+     * @param seed зерно последовательности;
+     * @return последовательность фигур, одинаковая для всех вызовов с тем же зерном.
+     * @throws UncheckedIOException в случае, если не удалось загрузить паттерны конструирования фигур из JSON-файла.
+     */
+    public static ShapeSequence createShapeSequence(long seed) throws UncheckedIOException {
+        return ShapeCatalog.createSequence(seed);
+    }
 
-        URL shapesUrl = App.class.getResource("shapes.json");
-        assert shapesUrl != null;
+    /**
+     * Связывает игровую зону с моделью, по которой проверяется размещение фигур.
+     * Игровая зона при этом служит лишь её представлением; её ячейки добавляются
+     * методом {@link LayoutDesigner#addCell(GridPane, Tile)}.
+     *
+     * @param gridPane игровая зона;
+     * @param board    модель игровой зоны;
+     */
+    public static void setBoard(GridPane gridPane, Board board) {
+        gridPane.getProperties().put(BOARD_PROPERTY_KEY, board);
+        gridPane.getProperties().put(CELLS_PROPERTY_KEY, new BoardCells(board.getRows(), board.getColumns()));
+        gridPane.getProperties().remove(PLACEMENT_INDEX_PROPERTY_KEY);
+    }
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(shapesUrl.openStream()))) {
-            StringBuilder builder = new StringBuilder();
+    /**
+     * Добавляет в игровую зону ячейку, представляющую ячейку модели с теми же координатами.
+     * По таким ячейкам выделяется силуэт перетаскиваемой фигуры.
+     *
+     * @param gridPane игровая зона, связанная с моделью;
+     * @param cell     ячейка с координатами в пределах модели;
+     */
+    public static void addCell(GridPane gridPane, Tile cell) {
+        gridPane.add(cell, cell.getColumn(), cell.getRow());
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                builder.append(line);
-            }
+        BoardCells boardCells = (BoardCells) gridPane.getProperties().get(CELLS_PROPERTY_KEY);
+        if (boardCells != null) {
+            boardCells.cells[cell.getRow()][cell.getColumn()] = cell;
+        }
+    }
 
-            JSONArray shapesData = new JSONArray(builder.toString());
-            String shapeData = shapesData.getString(generator.nextInt(shapesData.length()));
-
-            /* Каждому цвету из перечисления сопоставляется HEX-код. */
-            String hexColor = switch (ShapeColor.values()[generator.nextInt(ShapeColor.values().length)]) {
-                case CYAN -> "#00ffff";
-                case YELLOW -> "#ffff00";
-                case PURPLE -> "#800080";
-                case GREEN -> "#00ff00";
-                case RED -> "#ff0000";
-                case BLUE -> "#0000ff";
-                case ORANGE -> "#ff7f00";
-                case GREY -> "#7f7f7f";
-            };
-
-            return new Shape(shapeData, hexColor, GAME_BLOCK_STYLE_CLASS);
-        } catch (IOException exception) {
-            throw new UncheckedIOException(exception);
+    /**
+     * @param gridPane игровая зона;
+     * @return модель игровой зоны или {@code null}, если зона не связана с моделью.
+     */
+    public static Board getBoard(GridPane gridPane) {
+        return (Board) gridPane.getProperties().get(BOARD_PROPERTY_KEY);
+    }
+
+    /**
+     * Строит по модели игровой зоны индекс допустимых размещений фигуры, которая будет перетаскиваться в зону.
+     *
+     * @param gridPane игровая зона, связанная с моделью;
+     * @param shape    фигура;
+     */
+    public static void indexPlacements(GridPane gridPane, Shape shape) {
+        Board board = getBoard(gridPane);
+        if (board != null) {
+            gridPane.getProperties().put(PLACEMENT_INDEX_PROPERTY_KEY,
+                    new PlacementIndex(board, shape.getMask(board.getColumns())));
         }
     }
 
+    /**
+     * @param gridPane игровая зона;
+     * @return индекс размещений перетаскиваемой фигуры или {@code null}, если он не построен.
+     */
+    public static PlacementIndex getPlacementIndex(GridPane gridPane) {
+        return (PlacementIndex) gridPane.getProperties().get(PLACEMENT_INDEX_PROPERTY_KEY);
+    }
+
     /**
      * Располагает фигуру в игровой зоне. Расположение соответсвует относительным координатам блоков фигуры.
      *
      * @param shape    размещаемая фигура;
      * @param gridPane место привязки;
+     * @return {@code true}, если фигура размещена.
      */
-    public static void placeShape(Shape shape, GridPane gridPane) {
+    public static boolean placeShape(Shape shape, GridPane gridPane) {
+        return placeShape(shape, gridPane, 0, 0);
+    }
+
+    /**
+     * Располагает фигуру в игровой зоне так, чтобы её начало координат оказалось в заданной ячейке,
+     * и отмечает занятые ячейки в модели зоны, если зона с ней связана.
+     *
+     * @param shape    размещаемая фигура;
+     * @param gridPane место привязки;
+     * @param row      строка ячейки, в которую попадает начало координат фигуры;
+     * @param column   столбец ячейки, в которую попадает начало координат фигуры;
+     * @return {@code true}, если фигура размещена; {@code false}, если модель зоны отвергла размещение.
+     */
+    public static boolean placeShape(Shape shape, GridPane gridPane, int row, int column) {
+        Board board = getBoard(gridPane);
+        if (board != null) {
+            ShapeMask mask = shape.getMask(board.getColumns());
+            if (!board.place(mask, row, column)) {
+                return false;
+            }
+
+            PlacementIndex placementIndex = getPlacementIndex(gridPane);
+            if (placementIndex != null) {
+                placementIndex.onPlaced(mask, row, column);
+            }
+        }
+
+        shape.moveTo(row, column);
         for (Tile tile : shape.getTiles()) {
             gridPane.add(tile, tile.getColumn(), tile.getRow());
         }
+
+        return true;
     }
 
     /**
-     * Выделяет на игровой зоне силуэт переданной фигуры по координатам ячеек её блоков.
+     * Выделяет на игровой зоне силуэт переданной фигуры по координатам ячеек её блоков,
+     * сбрасывая предыдущее выделение. Затрагивает только ячейки под блоками фигуры.
      *
      * @param shape    фигура, силуэт которой необходимо отобразить на сетке;
-     * @param gridPane игровая зона, в которой предположительно находится фигура;
+     * @param gridPane игровая зона, связанная с моделью, в которой предположительно находится фигура;
      */
     public static void highlightShapePosition(Shape shape, GridPane gridPane) {
-        for (Tile shapeTile : shape.getTiles()) {
-            for (Node mainGridTile : gridPane.getChildren()) {
-                if (GridPane.getRowIndex(mainGridTile) == shapeTile.getRow()
-                        && GridPane.getColumnIndex(mainGridTile) == shapeTile.getColumn()) {
-                    // Цвет границы ячейки совпадает с цветом фигуры.
-                    mainGridTile.setStyle(String.format("-fx-border-color: %s", shape.getHexColor()));
-                    break;
-                }
-            }
+        BoardCells boardCells = (BoardCells) gridPane.getProperties().get(CELLS_PROPERTY_KEY);
+        if (boardCells == null) {
+            return;
+        }
+
+        boardCells.clearHighlight();
+        String highlightStyle = shape.getHighlightStyle();
+        List<Tile> shapeTiles = shape.getTiles();
+        for (int index = 0; index < shapeTiles.size(); index++) {
+            Tile shapeTile = shapeTiles.get(index);
+            boardCells.highlight(shapeTile.getRow(), shapeTile.getColumn(), highlightStyle);
         }
     }
 
     /**
-     * Сбрасывает в переданной игровой зоне все выделения,
-     * полученные при помощи метода {@link LayoutDesigner#highlightShapePosition(Shape, GridPane)}.
+     * Сбрасывает в переданной игровой зоне выделение,
+     * полученное при помощи метода {@link LayoutDesigner#highlightShapePosition(Shape, GridPane)}.
      *
      * @param gridPane игровая зона, выделения в которой необходимо сбросить;
      */
     public static void deHighlightGrid(GridPane gridPane) {
-        for (Node mainGridTile : gridPane.getChildren()) {
-            if (mainGridTile.getStyleClass().contains(EMPTY_CELL_STYLE_CLASS)
-                    && mainGridTile.getStyleClass().size() == 1) {
-                mainGridTile.setStyle("-fx-border-color: transparent");
+        BoardCells boardCells = (BoardCells) gridPane.getProperties().get(CELLS_PROPERTY_KEY);
+        if (boardCells != null) {
+            boardCells.clearHighlight();
+        }
+    }
+
+    /**
+     * Ячейки игровой зоны, упорядоченные по координатам её модели, и ячейки, выделенные силуэтом фигуры.
+     * Позволяют выделять и сбрасывать силуэт за время, пропорциональное количеству блоков фигуры,
+     * без обхода всех дочерних узлов зоны.
+     */
+    private static final class BoardCells {
+        private final Tile[][] cells;
+
+        /**
+         * Выделенные ячейки; силуэт одной фигуры не содержит повторяющихся ячеек,
+         * поэтому их не больше, чем ячеек в зоне.
+         */
+        private final Tile[] highlightedCells;
+        private int highlightedCount;
+
+        BoardCells(int rows, int columns) {
+            cells = new Tile[rows][columns];
+            highlightedCells = new Tile[rows * columns];
+        }
+
+        void highlight(int row, int column, String style) {
+            if (row < 0 || row >= cells.length || column < 0 || column >= cells[row].length) {
+                return;
+            }
+
+            Tile cell = cells[row][column];
+            if (cell != null) {
+                cell.setStyle(style);
+                highlightedCells[highlightedCount++] = cell;
+            }
+        }
+
+        void clearHighlight() {
+            for (int index = 0; index < highlightedCount; index++) {
+                highlightedCells[index].setStyle(DEFAULT_CELL_STYLE);
+                highlightedCells[index] = null;
             }
+            highlightedCount = 0;
         }
     }
 }
@@ -0,0 +1,123 @@
+package ru.hse.jigsaw.model.net;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Соединения, не приславшие запрос регистрации, не задерживают регистрацию других клиентов
+ * и разрываются сервером по истечении времени ожидания регистрации.
+ */
+class HandshakeTimeoutTest {
+    private static final long HANDSHAKE_TIMEOUT_MILLIS = 3000;
+
+    /**
+     * Время, за которое должны зарегистрироваться клиенты; меньше времени ожидания регистрации,
+     * чтобы тест не проходил за счёт разрыва молчащих соединений.
+     */
+    private static final long REGISTRATION_DEADLINE_MILLIS = 2000;
+
+    private static final int SILENT_SOCKETS_COUNT = 64;
+
+    private static final int CLIENTS_COUNT = 16;
+
+    private final List<Socket> silentSockets = new ArrayList<>();
+    private final List<Client> clients = new ArrayList<>();
+    private Server server;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Client client : clients) {
+            client.closeConnection();
+        }
+        for (Socket socket : silentSockets) {
+            socket.close();
+        }
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @ParameterizedTest(name = "nio = {0}")
+    @ValueSource(booleans = {false, true})
+    void silentSocketsDoNotDelayRegistrationAndAreClosedAfterTimeout(boolean isNio) throws Exception {
+        int port = openServer(isNio);
+        server.setHandshakeTimeoutMillis(HANDSHAKE_TIMEOUT_MILLIS);
+        server.run();
+
+        long silentOpenedNanos = System.nanoTime();
+        for (int index = 0; index < SILENT_SOCKETS_COUNT; index++) {
+            silentSockets.add(new Socket("localhost", port));
+        }
+
+        long registrationStartNanos = System.nanoTime();
+        for (int index = 0; index < CLIENTS_COUNT; index++) {
+            Client client = new Client(new Socket("localhost", port), "player" + index);
+            clients.add(client);
+            client.register();
+        }
+        for (Client client : clients) {
+            while (client.getId() == null) {
+                assertTrue(elapsedMillis(registrationStartNanos) < REGISTRATION_DEADLINE_MILLIS,
+                        "Clients were not registered while silent sockets were open");
+                Thread.sleep(1);
+            }
+        }
+
+        for (Socket socket : silentSockets) {
+            long remainingMillis = 2 * HANDSHAKE_TIMEOUT_MILLIS - elapsedMillis(silentOpenedNanos);
+            assertTrue(isClosedByServer(socket, Math.max(remainingMillis, 1)),
+                    "Silent socket was not closed after the handshake timeout");
+        }
+        assertTrue(elapsedMillis(silentOpenedNanos) >= HANDSHAKE_TIMEOUT_MILLIS,
+                "Silent sockets were closed before the handshake timeout");
+        assertEquals(CLIENTS_COUNT, server.getActiveConnectionsCount());
+    }
+
+    private int openServer(boolean isNio) throws IOException {
+        if (isNio) {
+            ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(0), SILENT_SOCKETS_COUNT + CLIENTS_COUNT);
+            server = new Server(serverChannel, 2);
+            return serverChannel.socket().getLocalPort();
+        }
+
+        ServerSocket serverSocket = new ServerSocket(0, SILENT_SOCKETS_COUNT + CLIENTS_COUNT);
+        server = new Server(serverSocket);
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @param socket        соединение, не отправлявшее данных;
+     * @param timeoutMillis время ожидания разрыва в миллисекундах;
+     * @return true, если сервер разорвал соединение за отведённое время.
+     */
+    private static boolean isClosedByServer(Socket socket, long timeoutMillis) throws IOException {
+        socket.setSoTimeout((int) timeoutMillis);
+        try {
+            InputStream input = socket.getInputStream();
+            return input.read() == -1;
+        } catch (SocketTimeoutException exception) {
+            return false;
+        } catch (SocketException exception) {
+            return true;
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,152 @@
+package ru.hse.jigsaw.model.shape;
+
+import javafx.scene.layout.ColumnConstraints;
+import javafx.scene.layout.GridPane;
+import javafx.scene.layout.RowConstraints;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.hse.jigsaw.model.board.Board;
+import ru.hse.jigsaw.model.board.ShapeMask;
+import ru.hse.jigsaw.utils.LayoutDesigner;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Наведение перетаскиваемой фигуры на ячейки игровой зоны работает с фигурой сеанса,
+ * не создаёт новых фигур, блоков и масок и не выделяет память.
+ */
+class DragSessionTest {
+    private static final int BOARD_SIZE = 9;
+
+    private static final int HOVER_ROUNDS_COUNT = 3;
+
+    /**
+     * Количество наведений, выполняемых до измерения, чтобы обработка наведения была скомпилирована.
+     */
+    private static final int WARMUP_HOVERS_COUNT = 200_000;
+
+    private static final int MEASURED_HOVERS_COUNT = 100_000;
+
+    /**
+     * Допустимый объём памяти, выделенной за все измеряемые наведения: в среднем меньше четверти байта на наведение.
+     * Разбор данных перетаскивания при каждом наведении выделял более 11 КБ на каждое.
+     */
+    private static final long ALLOCATED_BYTES_LIMIT = MEASURED_HOVERS_COUNT / 4;
+
+    private GridPane grid;
+    private List<Tile> cells;
+    private Tile source;
+
+    @BeforeEach
+    void setUp() {
+        grid = new GridPane();
+        for (int line = 0; line < BOARD_SIZE; line++) {
+            grid.getRowConstraints().add(new RowConstraints());
+            grid.getColumnConstraints().add(new ColumnConstraints());
+        }
+        Board board = new Board(BOARD_SIZE, BOARD_SIZE);
+        LayoutDesigner.setBoard(grid, board);
+
+        cells = new ArrayList<>();
+        for (int row = 0; row < BOARD_SIZE; row++) {
+            for (int column = 0; column < BOARD_SIZE; column++) {
+                Tile tile = new Tile(row, column, null, LayoutDesigner.EMPTY_CELL_STYLE_CLASS);
+                LayoutDesigner.addCell(grid, tile);
+                cells.add(tile);
+            }
+        }
+
+        Shape nestShape = ShapeCatalog.createSequence(42).getShape(0);
+        LayoutDesigner.indexPlacements(grid, nestShape);
+        source = nestShape.getTiles().get(0);
+        DragSession.start(source, nestShape.copy(), source.getRow(), source.getColumn());
+    }
+
+    @AfterEach
+    void tearDown() {
+        DragSession.finish(source);
+    }
+
+    @Test
+    void hoverKeepsSessionShapeAndTiles() {
+        DragSession session = DragSession.get(source);
+        assertNotNull(session);
+        Shape shape = session.getShape();
+        List<Tile> tiles = List.copyOf(shape.getTiles());
+        ShapeMask mask = shape.getMask(BOARD_SIZE);
+
+        int acceptedCount = 0;
+        for (int round = 0; round < HOVER_ROUNDS_COUNT; round++) {
+            for (Tile target : cells) {
+                DragSession hoverSession = DragSession.get(source);
+                assertSame(session, hoverSession);
+                if (target.dragOver(hoverSession)) {
+                    acceptedCount++;
+                }
+                LayoutDesigner.deHighlightGrid(grid);
+
+                assertSame(shape, hoverSession.getShape());
+                assertSame(mask, shape.getMask(BOARD_SIZE));
+                assertEquals(tiles.size(), shape.getTiles().size());
+                for (int index = 0; index < tiles.size(); index++) {
+                    assertSame(tiles.get(index), shape.getTiles().get(index));
+                }
+            }
+        }
+
+        assertTrue(acceptedCount > 0, "No hover was accepted");
+    }
+
+    @Test
+    void hoverDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+
+        DragSession session = DragSession.get(source);
+        Tile[] targets = cells.toArray(Tile[]::new);
+        hover(session, targets, WARMUP_HOVERS_COUNT);
+
+        long allocatedBefore = threadBean.getCurrentThreadAllocatedBytes();
+        int acceptedCount = hover(session, targets, MEASURED_HOVERS_COUNT);
+        long allocatedBytes = threadBean.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        assertTrue(acceptedCount > 0, "No hover was accepted");
+        assertTrue(allocatedBytes < ALLOCATED_BYTES_LIMIT, String.format(
+                "%d hovers allocated %d bytes", MEASURED_HOVERS_COUNT, allocatedBytes));
+    }
+
+    @Test
+    void hoverMovesSessionTilesToTarget() {
+        DragSession session = DragSession.get(source);
+        Shape shape = session.getShape();
+        Tile target = cells.get(BOARD_SIZE * (BOARD_SIZE / 2) + BOARD_SIZE / 2);
+
+        assertTrue(target.dragOver(session));
+        assertTrue(shape.getTiles().stream().anyMatch(tile ->
+                tile.getRow() == target.getRow() && tile.getColumn() == target.getColumn()));
+    }
+
+    /**
+     * Наводит фигуру сеанса на ячейки по очереди, сбрасывая выделение после каждого наведения.
+     *
+     * @return количество наведений, при которых фигура могла быть размещена.
+     */
+    private int hover(DragSession session, Tile[] targets, int hoversCount) {
+        int acceptedCount = 0;
+        for (int index = 0; index < hoversCount; index++) {
+            if (targets[index % targets.length].dragOver(session)) {
+                acceptedCount++;
+            }
+            LayoutDesigner.deHighlightGrid(grid);
+        }
+
+        return acceptedCount;
+    }
+}